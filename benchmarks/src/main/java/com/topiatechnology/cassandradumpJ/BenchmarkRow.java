@@ -0,0 +1,74 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.AbstractGettableData;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Token;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/*
+A row of serialized values already in memory, as a page of results would hold them. The driver's own rows extend the same
+AbstractGettableData, so the typed getters the encoders call decode the values exactly as they would for a fetched row.
+Nothing the encoders don't read is there - no column definitions or tokens.
+ */
+final class BenchmarkRow extends AbstractGettableData implements Row {
+
+    private final ExportColumns _columns;
+    private final List<ByteBuffer> _values;
+
+    BenchmarkRow(ExportColumns columns, ProtocolVersion protocolVersion, List<ByteBuffer> values) {
+        super(protocolVersion);
+        _columns = columns;
+        _values = values;
+    }
+
+    @Override
+    protected DataType getType(int i) {
+        return _columns.types.get(i);
+    }
+
+    @Override
+    protected String getName(int i) {
+        return _columns.names.get(i);
+    }
+
+    @Override
+    protected ByteBuffer getValue(int i) {
+        return _values.get(i);
+    }
+
+    @Override
+    protected CodecRegistry getCodecRegistry() {
+        return CodecRegistry.DEFAULT_INSTANCE;
+    }
+
+    @Override
+    protected int getIndexOf(String name) {
+        return _columns.names.indexOf(name);
+    }
+
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Token getToken(int i) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Token getToken(String name) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Token getPartitionKeyToken() {
+        throw new UnsupportedOperationException();
+    }
+}
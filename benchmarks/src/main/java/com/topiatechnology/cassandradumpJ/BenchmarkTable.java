@@ -0,0 +1,172 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+The shapes of table the benchmarks export and import, and rows to fill them with:
+    narrow        a uuid key and three small columns, like most of the tables in the integration tests
+    wide          an int key and 60 text, int and double columns
+    collections   a set<text>, a map<text, int> and a list<double> of up to 20 elements each
+    blob          a 4KiB blob per row
+    counter       two counters, which export as UPDATEs instead of INSERTs
+A tenth of the plain values are null. Rows are generated from a fixed seed, so every run encodes the same data.
+ */
+final class BenchmarkTable {
+
+    static final String KEYSPACE = "bench";
+    static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.V4;
+
+    final String name;
+    final ExportColumns columns;
+
+    private BenchmarkTable(String name, List<String> names, List<DataType> types) {
+        this.name = name;
+        columns = ExportColumns.of(names, types);
+    }
+
+    static BenchmarkTable named(String shape) {
+        List<String> names = new ArrayList<>();
+        List<DataType> types = new ArrayList<>();
+        switch (shape) {
+            case "narrow":
+                add(names, types, "id", DataType.uuid());
+                add(names, types, "string", DataType.text());
+                add(names, types, "integer", DataType.cint());
+                add(names, types, "long", DataType.bigint());
+                break;
+            case "wide":
+                add(names, types, "id", DataType.cint());
+                for(int i = 0; i < 20; i++) {
+                    add(names, types, "text_" + i, DataType.text());
+                    add(names, types, "int_" + i, DataType.cint());
+                    add(names, types, "double_" + i, DataType.cdouble());
+                }
+                break;
+            case "collections":
+                add(names, types, "id", DataType.cint());
+                add(names, types, "tags", DataType.set(DataType.text()));
+                add(names, types, "attributes", DataType.map(DataType.text(), DataType.cint()));
+                add(names, types, "scores", DataType.list(DataType.cdouble()));
+                break;
+            case "blob":
+                add(names, types, "id", DataType.cint());
+                add(names, types, "data", DataType.blob());
+                break;
+            case "counter":
+                add(names, types, "id", DataType.uuid());
+                add(names, types, "hits", DataType.counter());
+                add(names, types, "misses", DataType.counter());
+                break;
+            default:
+                throw new IllegalArgumentException("No such table shape: " + shape);
+        }
+        return new BenchmarkTable(shape, names, types);
+    }
+
+    /**
+     * count rows, decoded from their serialized values just as they would be from a page of results.
+     */
+    List<Row> rows(int count) {
+        Random random = new Random(42);
+        List<Row> rows = new ArrayList<>(count);
+        for(int r = 0; r < count; r++) {
+            List<ByteBuffer> values = new ArrayList<>(columns.size());
+            for(int i = 0; i < columns.size(); i++) {
+                Object value = i == 0 ? key(columns.types.get(0), r, random) : value(columns.types.get(i), random);
+                values.add(value == null ? null : CodecRegistry.DEFAULT_INSTANCE.codecFor(columns.types.get(i)).serialize(value, PROTOCOL_VERSION));
+            }
+            rows.add(new BenchmarkRow(columns, PROTOCOL_VERSION, values));
+        }
+        return rows;
+    }
+
+    /**
+     * The rows as a CQL dump, as --export-file would write them - the table's CONSISTENCY line first.
+     */
+    String dump(int count) {
+        RowEncoder encoder = new RowEncoder(KEYSPACE, name, columns, CodecRegistry.DEFAULT_INSTANCE);
+        StringBuilder cql = new StringBuilder("CONSISTENCY ONE;\n");
+        for(Row row : rows(count)) {
+            encoder.encode(row, cql);
+        }
+        return cql.toString();
+    }
+
+    private static void add(List<String> names, List<DataType> types, String name, DataType type) {
+        names.add(name);
+        types.add(type);
+    }
+
+    private static Object key(DataType type, int r, Random random) {
+        return type.equals(DataType.uuid()) ? new UUID(random.nextLong(), random.nextLong()) : r;
+    }
+
+    private static Object value(DataType type, Random random) {
+        if(type.equals(DataType.counter())) {
+            return (long) random.nextInt(1000000);
+        }
+        //A tenth of the values that aren't keys, counters or collections are null, which the encoders leave out
+        if(!type.isCollection() && random.nextInt(10) == 0) {
+            return null;
+        }
+        switch (type.getName()) {
+            case TEXT:
+            case VARCHAR:
+                return text(random, 8 + random.nextInt(40));
+            case INT:
+                return random.nextInt();
+            case BIGINT:
+                return random.nextLong();
+            case DOUBLE:
+                return random.nextDouble() * 1000;
+            case BLOB:
+                byte[] bytes = new byte[4096];
+                random.nextBytes(bytes);
+                return ByteBuffer.wrap(bytes);
+            case SET:
+                Set<String> set = new LinkedHashSet<>();
+                for(int i = random.nextInt(20); i > 0; i--) {
+                    set.add(text(random, 4 + random.nextInt(12)));
+                }
+                return set;
+            case MAP:
+                Map<String, Integer> map = new HashMap<>();
+                for(int i = random.nextInt(20); i > 0; i--) {
+                    map.put(text(random, 4 + random.nextInt(12)), random.nextInt());
+                }
+                return map;
+            case LIST:
+                Double[] list = new Double[random.nextInt(20)];
+                for(int i = 0; i < list.length; i++) {
+                    list[i] = random.nextDouble();
+                }
+                return Arrays.asList(list);
+            default:
+                throw new IllegalArgumentException("No values for " + type);
+        }
+    }
+
+    //Mostly plain letters, with the odd quote (which has to be escaped) and accented letter (which is two bytes of UTF-8)
+    private static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for(int i = 0; i < length; i++) {
+            int c = random.nextInt(40);
+            text.append(c == 0 ? '\'' : c == 1 ? '\u00e9' : (char) ('a' + c % 26));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.topiatechnology.cassandradumpJ;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/*
+The main class of benchmarks.jar. It takes the same arguments as JMH's own (a benchmark name regex, -p to pick params,
+-f, -wi and so on), but always adds -prof gc - so every run reports the allocation rate (gc.alloc.rate.norm is bytes
+per row or statement) alongside the throughput.
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        Runner runner = new Runner(new OptionsBuilder().parent(options).addProfiler(GCProfiler.class).build());
+        if(options.shouldHelp()) {
+            options.showHelp();
+        } else if(options.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
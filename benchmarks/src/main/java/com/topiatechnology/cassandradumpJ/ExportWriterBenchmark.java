@@ -0,0 +1,80 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.Row;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+Chunks written per second to an export file through a ChannelExportSink - UTF-8 encoding into the sink's buffer, and
+compression on its own thread when there is any. A chunk is 1000 already encoded rows of the given table. The file is
+started over every iteration, so it doesn't grow without end.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportWriterBenchmark {
+
+    @Param({"narrow", "blob"})
+    public String table;
+
+    @Param({"none", "gzip", "lz4", "zstd"})
+    public String compression;
+
+    //--export-buffer-size's default
+    @Param({"1048576"})
+    public int bufferSize;
+
+    private TableEncoder.Chunk _chunk;
+    private File _file;
+    private ChannelExportSink _sink;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkTable shape = BenchmarkTable.named(table);
+        _chunk = new RowEncoder(BenchmarkTable.KEYSPACE, shape.name, shape.columns, CodecRegistry.DEFAULT_INSTANCE).newChunk();
+        for(Row row : shape.rows(RowEncodingBenchmark.ROWS)) {
+            _chunk.add(row);
+        }
+        _file = File.createTempFile("cassandradumpJ-bench", ".cql");
+        _file.deleteOnExit();
+    }
+
+    @Setup(Level.Iteration)
+    public void open() throws IOException {
+        _sink = ChannelExportSink.open(_file, bufferSize, Compression.fromName(compression));
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws IOException {
+        _sink.close();
+    }
+
+    @TearDown
+    public void delete() {
+        _file.delete();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        _chunk.writeTo(_sink);
+    }
+}
@@ -0,0 +1,71 @@
+package com.topiatechnology.cassandradumpJ;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/*
+Statements imported per second from a CQL dump, end to end but for the cluster: split by the CqlStatementSplitter,
+positioned for the import journal, routed, and sent through the AsyncStatementExecutor (or one at a time, with
+--sync) to a StubSession that answers everything at once. What's left is the import's own overhead per statement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImportPipelineBenchmark {
+
+    static final int STATEMENTS = 10000;
+
+    @Param({"narrow", "wide", "counter"})
+    public String table;
+
+    @Param({"false", "true"})
+    public boolean sync;
+
+    @Param({"100"})
+    public int concurrency;
+
+    private String _dump;
+    private StubSession _session;
+    private Throttle _unthrottled;
+
+    @Setup
+    public void setup() {
+        _dump = BenchmarkTable.named(table).dump(STATEMENTS - 1);
+        _session = new StubSession();
+        _unthrottled = new Throttle(0, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        _session.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENTS)
+    public long importDump() throws IOException, InterruptedException {
+        DumpMetrics metrics = new DumpMetrics();
+        StatementImporter importer = new StatementImporter(_session, sync, concurrency, Math.max(1, concurrency / 2), false, 0,
+                1, 0, _unthrottled, false, null, metrics, metrics.table("bench"), message -> { }, Integer.MAX_VALUE);
+        importer.executeAll(new CqlStatementSplitter(new StringReader(_dump)), 0);
+        importer.finish();
+        return importer.count();
+    }
+}
@@ -0,0 +1,84 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.Row;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+Rows encoded per second, the way tableToCQLFile (and every worker of a token range export) does it: a page of rows
+added one after another to a chunk of the table's encoder, which is cleared and reused once it has been written out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowEncodingBenchmark {
+
+    static final int ROWS = 1000;
+
+    @Param({"narrow", "wide", "collections", "blob", "counter"})
+    public String table;
+
+    @Param({"cql", "binary"})
+    public String format;
+
+    private List<Row> _rows;
+    private TableEncoder.Chunk _chunk;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkTable shape = BenchmarkTable.named(table);
+        _rows = shape.rows(ROWS);
+        DumpFormat dumpFormat = format.equals("binary") ? new BinaryDumpFormat(BenchmarkTable.PROTOCOL_VERSION) : new TextDumpFormat();
+        _chunk = dumpFormat.beginTable(new DiscardingSink(), BenchmarkTable.KEYSPACE, shape.name, shape.columns,
+                CodecRegistry.DEFAULT_INSTANCE).newChunk();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int encode() {
+        _chunk.clear();
+        for(Row row : _rows) {
+            _chunk.add(row);
+        }
+        return _chunk.size();
+    }
+
+    //Only the table's header is written to it
+    static class DiscardingSink implements ExportSink {
+        @Override
+        public void write(CharSequence text) {
+        }
+
+        @Override
+        public void write(ByteBuffer bytes) {
+            bytes.position(bytes.limit());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
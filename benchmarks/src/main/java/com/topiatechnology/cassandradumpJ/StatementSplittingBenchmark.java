@@ -0,0 +1,59 @@
+package com.topiatechnology.cassandradumpJ;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/*
+Statements split per second from a CQL dump, the way importData reads one: through a CqlStatementSplitter, looking at
+each statement's kind and where it ends (which is what the import journal records), without copying it out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementSplittingBenchmark {
+
+    static final int STATEMENTS = 10000;
+
+    @Param({"narrow", "wide", "collections", "blob", "counter"})
+    public String table;
+
+    @Param({"" + CqlStatementSplitter.DEFAULT_BUFFER_CHARS, "65536"})
+    public int bufferChars;
+
+    private String _dump;
+
+    @Setup
+    public void setup() {
+        _dump = BenchmarkTable.named(table).dump(STATEMENTS - 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENTS)
+    public long split() throws IOException {
+        CqlStatementSplitter splitter = new CqlStatementSplitter(new StringReader(_dump), bufferChars);
+        long writes = 0;
+        while(splitter.next()) {
+            if(splitter.kind().isWrite()) {
+                writes++;
+            }
+        }
+        return writes + splitter.offset();
+    }
+}
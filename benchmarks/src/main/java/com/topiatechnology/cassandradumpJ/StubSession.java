@@ -0,0 +1,126 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.AbstractSession;
+import com.datastax.driver.core.CloseFuture;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+A Session that every statement succeeds against straight away, so an import benchmark measures nothing but the import.
+Responses still come back on a thread of their own, the way the driver's I/O threads would hand them over.
+Nothing can be prepared, and the cluster never connects and has no metadata - so writes are sent as the CQL text they
+were read as, without a routing key.
+ */
+class StubSession extends AbstractSession {
+
+    private final Cluster _cluster = new Cluster(Cluster.builder().addContactPoint("127.0.0.1").withProtocolVersion(BenchmarkTable.PROTOCOL_VERSION)) {
+        //The real one would connect to find out
+        @Override
+        public Metadata getMetadata() {
+            return null;
+        }
+    };
+    private final ExecutorService _io = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stub-session-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong _executed = new AtomicLong();
+
+    long executed() {
+        return _executed.get();
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(Statement statement) {
+        _executed.incrementAndGet();
+        final Response response = new Response();
+        _io.execute(() -> response.set(null));
+        return response;
+    }
+
+    @Override
+    protected ListenableFuture<PreparedStatement> prepareAsync(String query, Map<String, ByteBuffer> customPayload) {
+        return Futures.immediateFailedFuture(new UnsupportedOperationException("The stub session can't prepare " + query));
+    }
+
+    @Override
+    public String getLoggedKeyspace() {
+        return null;
+    }
+
+    @Override
+    public Session init() {
+        return this;
+    }
+
+    @Override
+    public ListenableFuture<Session> initAsync() {
+        return Futures.<Session>immediateFuture(this);
+    }
+
+    @Override
+    public CloseFuture closeAsync() {
+        _io.shutdown();
+        //Never initialized, so there's nothing for it to wait on
+        return _cluster.closeAsync();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return _io.isShutdown();
+    }
+
+    @Override
+    public Cluster getCluster() {
+        return _cluster;
+    }
+
+    @Override
+    public State getState() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static class Response extends AbstractFuture<ResultSet> implements ResultSetFuture {
+        @Override
+        protected boolean set(ResultSet value) {
+            return super.set(value);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            try {
+                return Uninterruptibles.getUninterruptibly(this);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) throws TimeoutException {
+            try {
+                return Uninterruptibles.getUninterruptibly(this, timeout, unit);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+
+/*
+--adaptive. A fixed --concurrency (or --workers) is either too timid for an idle cluster or too much for a busy one.
+This is an AIMD limit, the same idea TCP uses for its congestion window: it starts at the configured maximum, and
+every time the cluster pushes back - a read or write timeout, an overloaded coordinator, or responses coming back much
+slower than they were - it's halved. Once a whole window (a limit's worth of requests) has gone by without any of
+that, it grows by one again, up to the maximum. So it settles just under what the cluster can take, and follows it
+as other load comes and goes.
+
+"Much slower" is measured against the quickest the responses have been: a moving average of latency that goes over
+LATENCY_FACTOR times its lowest value counts as pushback. That lowest value creeps up a little every window, so a
+lasting change (like moving on to a table with bigger rows) doesn't keep the limit pinned down forever.
+
+Thread safe - responses are reported from the driver's I/O threads.
+ */
+class AdaptiveConcurrency {
+
+    private static final double LATENCY_FACTOR = 2.0;
+    private static final double LATENCY_SMOOTHING = 0.1;
+    private static final double BASELINE_DRIFT = 1.01;
+
+    private final int _max;
+    private int _limit;
+    private int _inUse = 0;
+    private int _sinceIncrease = 0;
+    private long _sinceDecrease = Long.MAX_VALUE / 2;
+    private double _latency = -1;
+    private double _baseline = -1;
+    private long _decreases = 0;
+
+    AdaptiveConcurrency(int max) {
+        if(max < 1) {
+            throw new IllegalArgumentException("max must be at least 1, but got " + max);
+        }
+        _max = max;
+        _limit = max;
+    }
+
+    /**
+     * Whether err is the cluster telling us to back off - and so worth retrying once we have.
+     */
+    static boolean isOverload(Throwable err) {
+        return err instanceof OverloadedException || err instanceof WriteTimeoutException || err instanceof ReadTimeoutException;
+    }
+
+    synchronized int limit() {
+        return _limit;
+    }
+
+    synchronized long decreases() {
+        return _decreases;
+    }
+
+    /**
+     * For callers that run a blocking request per thread: waits until there's room under the limit.
+     * Every acquire() has to be followed by a release().
+     */
+    synchronized void acquire() throws InterruptedException {
+        while(_inUse >= _limit) {
+            wait();
+        }
+        _inUse++;
+    }
+
+    synchronized void release() {
+        _inUse--;
+        notifyAll();
+    }
+
+    synchronized void onSuccess(long latencyNanos) {
+        _sinceDecrease++;
+        _latency = _latency < 0 ? latencyNanos : _latency + LATENCY_SMOOTHING * (latencyNanos - _latency);
+        if(_baseline < 0 || _latency < _baseline) {
+            _baseline = _latency;
+        }
+        if(_latency > LATENCY_FACTOR * _baseline) {
+            decrease();
+            return;
+        }
+        _sinceIncrease++;
+        if(_sinceIncrease >= _limit) {
+            _sinceIncrease = 0;
+            _baseline *= BASELINE_DRIFT;
+            if(_limit < _max) {
+                _limit++;
+                notifyAll();
+            }
+        }
+    }
+
+    synchronized void onOverload() {
+        _sinceDecrease++;
+        decrease();
+    }
+
+    private void decrease() {
+        //Everything that was already in flight when we backed off will report the same trouble -
+        //only back off again once a window has gone by since the last time
+        if(_sinceDecrease < _limit) {
+            return;
+        }
+        _limit = Math.max(1, _limit / 2);
+        _sinceDecrease = 0;
+        _sinceIncrease = 0;
+        _decreases++;
+    }
+}
@@ -0,0 +1,361 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.BootstrappingException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+The Python version leaned on the driver's execute_concurrent() helper, which the Java driver doesn't have.
+This is the stand-in for it: statements go out through Session.executeAsync(), and no more than maxInFlight of them
+are outstanding at any one time. Once the cap is reached, submit() blocks until a response comes back, so a huge
+import file never gets queued up in memory (or dumped on the cluster) all at once.
+
+Statements can also be submitted to a lane - the import uses one per replica set - and each lane has an in-flight
+limit of its own. A lane that's at its limit holds on to what's submitted to it and sends it as its own responses come
+back, while the other lanes carry on; so one slow or overloaded node only holds up the writes it owns, until the
+reader has got maxInFlight statements ahead of it. Lanes with work waiting are served in turn.
+
+With --adaptive, the overall limit is an AdaptiveConcurrency that every response is reported to.
+
+A write that fails for what's probably a passing reason - a timeout, an unavailable or overloaded replica - goes into
+the retry queue, and back into its lane once it has waited out a backoff that doubles with every attempt. Only writes
+that are safe to send twice are retried after a timeout, since they may have been applied anyway; so counter updates
+are only retried when the cluster says it never got as far as trying them.
+
+Failures don't throw from submit() - they are collected per-statement and handed back by takeFailures() or drain(),
+which also waits for everything in flight to finish. The caller decides what to do about them. A statement counts as
+completed once it has succeeded, or failed for good; whatever was submitted with it to run on completion runs for a
+success straight away, and for a failure is handed back with it, for the caller to run once it's dealt with it.
+
+Response times, the number of statements in flight, retries, failures and the time submit() spends blocked all go into
+the run's DumpMetrics.
+ */
+class AsyncStatementExecutor {
+
+    static class Failure {
+        final String statement;
+        final Throwable cause;
+        final Statement request;
+        final Runnable onCompleted; //Null if nothing was submitted with the statement
+
+        Failure(String statement, Throwable cause, Statement request, Runnable onCompleted) {
+            this.statement = statement;
+            this.cause = cause;
+            this.request = request;
+            this.onCompleted = onCompleted;
+        }
+    }
+
+    private static class Pending {
+        final Statement statement;
+        final String description;
+        final Lane lane;
+        final Runnable onCompleted;
+        int attempts = 0;
+        long sentAt;
+
+        Pending(Statement statement, String description, Lane lane, Runnable onCompleted) {
+            this.statement = statement;
+            this.description = description;
+            this.lane = lane;
+            this.onCompleted = onCompleted;
+        }
+    }
+
+    private static class Lane {
+        final Object key;
+        final int limit;
+        final Queue<Pending> queue = new ArrayDeque<>();
+        int inFlight = 0;
+        int retrying = 0; //Waiting out a backoff, to go back in the queue
+        boolean waiting = false;
+
+        Lane(Object key, int limit) {
+            this.key = key;
+            this.limit = limit;
+        }
+    }
+
+    //Statements submitted without a lane all share this one, which is only bound by maxInFlight
+    private static final Object NO_LANE = new Object();
+
+    static final int MAX_ATTEMPTS = 10;
+    private static final long MAX_BACKOFF_MILLIS = 10000;
+
+    //Holds on to the writes that are waiting to be retried, for every executor there is
+    private static final ScheduledExecutorService RETRY_QUEUE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cassandradumpJ-retry-queue");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Session _session;
+    private final int _maxInFlight;
+    private final int _maxInFlightPerLane;
+    private final AdaptiveConcurrency _adaptive; //Null unless --adaptive
+    private final DumpMetrics _metrics;
+    //Every statement that has been submitted but hasn't completed yet, whether it has been sent or is waiting in its lane
+    private final int _maxAccepted;
+    private final Semaphore _accepted;
+    private final Queue<Failure> _failures = new ConcurrentLinkedQueue<>();
+
+    //Everything below is guarded by _lanes
+    private final Map<Object, Lane> _lanes = new HashMap<>();
+    private final Queue<Lane> _waiting = new ArrayDeque<>();
+    private int _inFlight = 0;
+
+    AsyncStatementExecutor(Session session, int maxInFlight) {
+        this(session, maxInFlight, maxInFlight, null, new DumpMetrics());
+    }
+
+    AsyncStatementExecutor(Session session, int maxInFlight, int maxInFlightPerLane, AdaptiveConcurrency adaptive, DumpMetrics metrics) {
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, but got " + maxInFlight);
+        }
+        if(maxInFlightPerLane < 1) {
+            throw new IllegalArgumentException("maxInFlightPerLane must be at least 1, but got " + maxInFlightPerLane);
+        }
+        _session = session;
+        _maxInFlight = maxInFlight;
+        _maxInFlightPerLane = Math.min(maxInFlightPerLane, maxInFlight);
+        _adaptive = adaptive;
+        _metrics = metrics;
+        //With no limit below the overall one, nothing ever waits in a lane, and this is just the in-flight limit
+        _maxAccepted = _maxInFlightPerLane < maxInFlight || adaptive != null ? 2 * maxInFlight : maxInFlight;
+        _accepted = new Semaphore(_maxAccepted);
+    }
+
+    /**
+     * Sends the statement asynchronously, blocking first if the in-flight limit has been reached.
+     * The description is what gets reported back by drain() if the statement fails.
+     */
+    void submit(Statement statement, String description) throws InterruptedException {
+        submit(statement, description, null);
+    }
+
+    /**
+     * Like submit(statement, description), but counts the statement against the given lane's limit as well. If the
+     * lane is at its limit, the statement waits its turn without holding up the caller. A null lane means no lane.
+     */
+    void submit(Statement statement, String description, Object laneKey) throws InterruptedException {
+        submit(statement, description, laneKey, null);
+    }
+
+    /**
+     * Like submit(statement, description, laneKey), with something to run once the statement has completed - see above.
+     */
+    void submit(Statement statement, String description, Object laneKey, Runnable onCompleted) throws InterruptedException {
+        long start = System.nanoTime();
+        _accepted.acquire();
+        _metrics.waited(System.nanoTime() - start);
+        List<Pending> ready = new ArrayList<>();
+        synchronized (_lanes) {
+            Object key = laneKey == null ? NO_LANE : laneKey;
+            Lane lane = _lanes.get(key);
+            if(lane == null) {
+                lane = new Lane(key, key == NO_LANE ? _maxInFlight : _maxInFlightPerLane);
+                _lanes.put(key, lane);
+            }
+            lane.queue.add(new Pending(statement, description, lane, onCompleted));
+            if(!lane.waiting) {
+                lane.waiting = true;
+                _waiting.add(lane);
+            }
+            dispatch(ready);
+        }
+        send(ready);
+    }
+
+    boolean hasFailures() {
+        return !_failures.isEmpty();
+    }
+
+    int inFlight() {
+        return _maxAccepted - _accepted.availablePermits();
+    }
+
+    /**
+     * Whether a statement that failed with err is worth sending again: the failure has to be one that might not happen
+     * next time, and the statement has to be safe to send twice, unless the cluster didn't try to apply it at all.
+     */
+    static boolean isRetryable(Statement statement, Throwable err) {
+        if(err instanceof UnavailableException || err instanceof OverloadedException || err instanceof BootstrappingException
+                || err instanceof NoHostAvailableException) {
+            return true;
+        }
+        return (err instanceof WriteTimeoutException || err instanceof ReadTimeoutException || err instanceof OperationTimedOutException)
+                && Boolean.TRUE.equals(statement.isIdempotent());
+    }
+
+    /**
+     * How long to wait before the given attempt (counting from 1) at a statement.
+     */
+    static long backoffMillis(int attempts) {
+        return Math.min(MAX_BACKOFF_MILLIS, 100L << Math.min(attempts, 16));
+    }
+
+    /**
+     * Waits until every submitted statement has completed, then returns (and forgets) the failures seen so far.
+     */
+    List<Failure> drain() throws InterruptedException {
+        _accepted.acquire(_maxAccepted);
+        _accepted.release(_maxAccepted);
+        return takeFailures();
+    }
+
+    /**
+     * Returns (and forgets) the failures seen so far, without waiting for anything.
+     */
+    List<Failure> takeFailures() {
+        List<Failure> failures = new ArrayList<>();
+        Failure failure = _failures.poll();
+        while(failure != null) {
+            failures.add(failure);
+            failure = _failures.poll();
+        }
+        return failures;
+    }
+
+    //Takes one statement from each waiting lane in turn, for as long as there's room to send them. Caller holds _lanes.
+    private void dispatch(List<Pending> ready) {
+        int limit = _adaptive == null ? _maxInFlight : _adaptive.limit();
+        boolean progress = true;
+        while(progress && _inFlight < limit) {
+            progress = false;
+            for(int i = _waiting.size(); i > 0 && _inFlight < limit; i--) {
+                Lane lane = _waiting.poll();
+                if(lane.inFlight < lane.limit) {
+                    ready.add(lane.queue.poll());
+                    lane.inFlight++;
+                    _inFlight++;
+                    progress = true;
+                }
+                if(lane.queue.isEmpty()) {
+                    lane.waiting = false;
+                } else {
+                    _waiting.add(lane);
+                }
+            }
+        }
+    }
+
+    private void send(List<Pending> ready) {
+        for(final Pending pending : ready) {
+            ResultSetFuture future;
+            pending.sentAt = System.nanoTime();
+            _metrics.inFlight.inc();
+            try {
+                future = _session.executeAsync(pending.statement);
+            } catch (RuntimeException e) {
+                _metrics.inFlight.dec();
+                _metrics.failed(e, false);
+                failed(pending, e);
+                continue;
+            }
+            //The callback runs on a driver I/O thread, so it must stay cheap - hence the direct executor
+            Futures.addCallback(future, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet result) {
+                    long latency = System.nanoTime() - pending.sentAt;
+                    _metrics.inFlight.dec();
+                    _metrics.wrote(latency);
+                    if(_adaptive != null) {
+                        _adaptive.onSuccess(latency);
+                    }
+                    if(pending.onCompleted != null) {
+                        pending.onCompleted.run();
+                    }
+                    completed(pending.lane);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    _metrics.inFlight.dec();
+                    if(_adaptive != null && AdaptiveConcurrency.isOverload(t)) {
+                        _adaptive.onOverload();
+                    }
+                    if(isRetryable(pending.statement, t) && ++pending.attempts < MAX_ATTEMPTS) {
+                        _metrics.failed(t, true);
+                        retryLater(pending);
+                        return;
+                    }
+                    _metrics.failed(t, false);
+                    failed(pending, t);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+    }
+
+    private void failed(Pending pending, Throwable cause) {
+        _failures.add(new Failure(pending.description, cause, pending.statement, pending.onCompleted));
+        completed(pending.lane);
+    }
+
+    //Takes a statement out of flight and into the retry queue. It's still accepted, so the caller of submit() doesn't get
+    //its room back - and its lane stays, so it goes back into the same one.
+    private void retryLater(final Pending pending) {
+        List<Pending> ready = new ArrayList<>();
+        synchronized (_lanes) {
+            pending.lane.inFlight--;
+            pending.lane.retrying++;
+            _inFlight--;
+            dispatch(ready);
+        }
+        send(ready);
+        RETRY_QUEUE.schedule(() -> retry(pending), backoffMillis(pending.attempts), TimeUnit.MILLISECONDS);
+    }
+
+    //Puts a statement back at the end of its lane, once it has waited long enough
+    private void retry(Pending pending) {
+        List<Pending> ready = new ArrayList<>();
+        synchronized (_lanes) {
+            Lane lane = pending.lane;
+            lane.retrying--;
+            lane.queue.add(pending);
+            if(!lane.waiting) {
+                lane.waiting = true;
+                _waiting.add(lane);
+            }
+            dispatch(ready);
+        }
+        send(ready);
+    }
+
+    private void completed(Lane lane) {
+        List<Pending> ready = new ArrayList<>();
+        synchronized (_lanes) {
+            lane.inFlight--;
+            _inFlight--;
+            if(lane.inFlight == 0 && lane.retrying == 0 && !lane.waiting) {
+                _lanes.remove(lane.key);
+            }
+            dispatch(ready);
+        }
+        //Whatever was waiting for room goes out before the caller of submit() gets to add any more
+        send(ready);
+        _accepted.release();
+    }
+}
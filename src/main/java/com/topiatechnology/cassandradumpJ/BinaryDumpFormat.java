@@ -0,0 +1,188 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+--format binary. Instead of formatting every value into a CQL literal (and parsing it back on import), each value is
+written as the exact bytes Cassandra sent us for it - the driver's own TypeCodec.serialize() form, straight from
+Row.getBytesUnsafe() - and on import those bytes are bound as they are to a prepared statement (see BinaryDumpReader).
+Blobs stay blobs instead of doubling as hex, and timestamps and UUIDs are 8 and 16 bytes instead of quoted strings.
+
+The file is
+    "CDJB", int format version, int protocol version of the export
+followed by records, each starting with a single type byte:
+    'Q' string                              CQL text, exactly as the CQL format would have it (schema, CONSISTENCY)
+    'T' int id, string keyspace, string table, int column count, (string name, string type)*
+                                            the columns of the rows that follow, from the table's metadata
+    'R' int table id, (int length, bytes)*  one row - a length of -1 is a null
+Strings are an int length and that many bytes of UTF-8. Everything is big-endian (DataOutputStream order).
+ */
+class BinaryDumpFormat implements DumpFormat {
+
+    static final byte[] MAGIC = {'C', 'D', 'J', 'B'};
+    static final int VERSION = 1;
+
+    static final byte STATEMENTS = 'Q';
+    static final byte TABLE = 'T';
+    static final byte ROW = 'R';
+
+    private final ProtocolVersion _protocolVersion;
+    private int _nextTableId = 0;
+
+    BinaryDumpFormat(ProtocolVersion protocolVersion) {
+        _protocolVersion = protocolVersion;
+    }
+
+    /**
+     * Whether the stream holds a binary dump. The stream has to support mark/reset, and is left positioned back at the start.
+     */
+    static boolean isBinary(InputStream in) throws IOException {
+        byte[] head = new byte[MAGIC.length];
+        in.mark(MAGIC.length);
+        int read = 0;
+        try {
+            while(read < head.length) {
+                int n = in.read(head, read, head.length - read);
+                if(n < 0) {
+                    break;
+                }
+                read += n;
+            }
+        } finally {
+            in.reset();
+        }
+        return read == MAGIC.length && Arrays.equals(head, MAGIC);
+    }
+
+    @Override
+    public void begin(ExportSink sink) throws IOException {
+        RecordBuffer header = new RecordBuffer(16);
+        header.out.write(MAGIC);
+        header.out.writeInt(VERSION);
+        header.out.writeInt(_protocolVersion.toInt());
+        header.writeTo(sink);
+    }
+
+    @Override
+    public void statements(ExportSink sink, String cql) throws IOException {
+        RecordBuffer record = new RecordBuffer(cql.length() + 8);
+        record.out.writeByte(STATEMENTS);
+        record.writeString(cql);
+        record.writeTo(sink);
+    }
+
+    @Override
+    public TableEncoder beginTable(ExportSink sink, String keyspace, String table, ExportColumns columns, CodecRegistry codecRegistry) throws IOException {
+        statements(sink, "CONSISTENCY ONE;\n");
+        final int tableId = _nextTableId++;
+        RecordBuffer record = new RecordBuffer(256);
+        record.out.writeByte(TABLE);
+        record.out.writeInt(tableId);
+        record.writeString(keyspace);
+        record.writeString(table);
+        record.out.writeInt(columns.size());
+        for(int i = 0; i < columns.size(); i++) {
+            record.writeString(columns.names.get(i));
+            record.writeString(columns.types.get(i).toString());
+        }
+        record.writeTo(sink);
+
+        final int columnCount = columns.size();
+        return new TableEncoder() {
+            @Override
+            public Chunk newChunk() {
+                return new RowChunk(tableId, columnCount);
+            }
+        };
+    }
+
+    private static class RowChunk implements TableEncoder.Chunk {
+        private final int _tableId;
+        private final int _columnCount;
+        private final RecordBuffer _buffer = new RecordBuffer(1024);
+
+        RowChunk(int tableId, int columnCount) {
+            _tableId = tableId;
+            _columnCount = columnCount;
+        }
+
+        @Override
+        public boolean add(Row row) {
+            try {
+                _buffer.out.writeByte(ROW);
+                _buffer.out.writeInt(_tableId);
+                for(int i = 0; i < _columnCount; i++) {
+                    ByteBuffer value = row.getBytesUnsafe(i);
+                    if(value == null) {
+                        _buffer.out.writeInt(-1);
+                    } else {
+                        _buffer.out.writeInt(value.remaining());
+                        _buffer.write(value);
+                    }
+                }
+            } catch (IOException e) {
+                //Only ever writing to memory
+                throw new IllegalStateException(e);
+            }
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return _buffer.size();
+        }
+
+        @Override
+        public void writeTo(ExportSink sink) throws IOException {
+            sink.write(_buffer.asByteBuffer());
+        }
+
+        @Override
+        public void clear() {
+            _buffer.reset();
+        }
+    }
+
+    //A ByteArrayOutputStream that hands out its contents without copying them
+    private static class RecordBuffer extends ByteArrayOutputStream {
+        final DataOutputStream out = new DataOutputStream(this);
+
+        RecordBuffer(int size) {
+            super(size);
+        }
+
+        void writeString(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        void write(ByteBuffer value) {
+            if(value.hasArray()) {
+                write(value.array(), value.arrayOffset() + value.position(), value.remaining());
+            } else {
+                byte[] bytes = new byte[value.remaining()];
+                value.duplicate().get(bytes);
+                write(bytes, 0, bytes.length);
+            }
+        }
+
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        void writeTo(ExportSink sink) throws IOException {
+            sink.write(asByteBuffer());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Session;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+The import side of BinaryDumpFormat. CQL records are split into statements and go through the StatementImporter, just as they
+would from a CQL dump. Each table record is turned into a TableInsert, and every row after it is bound to that table's
+statement straight from the bytes in the file - nothing is formatted or parsed along the way.
+
+Every record is positioned in the import journal by where it ends. A resumed import can't seek straight to its
+checkpoint, since the table records before it are what the rows after it are bound with - so it reads its way there
+instead, preparing the tables as it goes and skipping over everything else.
+ */
+class BinaryDumpReader {
+
+    private final StatementImporter _importer;
+    private final Session _session;
+    private final Map<Integer, TableInsert> _tables = new HashMap<>();
+
+    BinaryDumpReader(StatementImporter importer) {
+        _importer = importer;
+        _session = importer.session();
+    }
+    /**
+     * Imports the dump, from the record that starts at resumeAt (0 for all of it).
+     */
+    void read(InputStream input, long resumeAt) throws IOException, InterruptedException {
+        CountingInputStream counting = new CountingInputStream(input);
+        DataInputStream in = new DataInputStream(counting);
+        byte[] magic = new byte[BinaryDumpFormat.MAGIC.length];
+        in.readFully(magic);
+        if(!Arrays.equals(magic, BinaryDumpFormat.MAGIC)) {
+            throw new IOException("Not a binary dump");
+        }
+        int version = in.readInt();
+        if(version != BinaryDumpFormat.VERSION) {
+            throw new IOException("Unsupported binary dump version " + version);
+        }
+        //Collections were serialized differently before protocol v3, so dumps can't cross that line
+        int exportProtocol = in.readInt();
+        if((exportProtocol < 3) != (protocolVersion().toInt() < 3)) {
+            throw new IOException("The dump was exported with protocol version " + exportProtocol
+                    + ", which serializes values incompatibly with this connection's " + protocolVersion());
+        }
+
+        while(true) {
+            boolean skip = counting.getCount() < resumeAt;
+            int type = in.read();
+            if(type < 0) {
+                break;
+            }
+            try {
+                switch (type) {
+                    case BinaryDumpFormat.STATEMENTS:
+                        String cql = readString(in);
+                        if(!skip) {
+                            _importer.position(counting.getCount());
+                            _importer.executeAll(new CqlStatementSplitter(new StringReader(cql), cql.length() + 1));
+                        }
+                        break;
+                    case BinaryDumpFormat.TABLE:
+                        readTable(in);
+                        break;
+                    case BinaryDumpFormat.ROW:
+                        readRow(in, skip ? null : counting);
+                        break;
+                    default:
+                        throw new IOException("Corrupt binary dump: unknown record type " + type);
+                }
+            } catch (EOFException e) {
+                throw new IOException("Binary dump ends in the middle of a record", e);
+            }
+        }
+    }
+
+    private void readTable(DataInputStream in) throws IOException {
+        int tableId = in.readInt();
+        String keyspace = readString(in);
+        String table = readString(in);
+        int columnCount = in.readInt();
+        String[] names = new String[columnCount];
+        String[] types = new String[columnCount];
+        for(int i = 0; i < columnCount; i++) {
+            names[i] = readString(in);
+            types[i] = readString(in);
+        }
+        _tables.put(tableId, TableInsert.prepare(_session, keyspace, table, names, types));
+    }
+
+    //Skips the row if there's no counting stream to say where it ends
+    private void readRow(DataInputStream in, CountingInputStream counting) throws IOException, InterruptedException {
+        int tableId = in.readInt();
+        TableInsert plan = _tables.get(tableId);
+        if(plan == null) {
+            throw new IOException("Corrupt binary dump: row for unknown table " + tableId);
+        }
+        if(counting == null) {
+            for(int i = 0; i < plan.columnCount(); i++) {
+                int length = in.readInt();
+                if(length > 0) {
+                    ByteStreams.skipFully(in, length);
+                }
+            }
+            return;
+        }
+        ByteBuffer[] values = new ByteBuffer[plan.columnCount()];
+        for(int i = 0; i < values.length; i++) {
+            int length = in.readInt();
+            if(length >= 0) {
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                values[i] = ByteBuffer.wrap(bytes);
+            }
+        }
+        BoundStatement bound = plan.bind(values);
+        if(bound == null) {
+            return;
+        }
+        _importer.position(counting.getCount());
+        _importer.write(bound, "row of " + plan.name);
+    }
+
+    private ProtocolVersion protocolVersion() {
+        return _session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -7,46 +7,98 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import com.codahale.metrics.JmxReporter;
 import com.datastax.driver.core.*;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.google.common.io.ByteStreams;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class CassandraDumpJ {
 
     //Values used in the Python script, which I will also use
-    private static final int TIMEOUT_SEC = 120;
-    private static final int FETCH_SIZE = 100; //TODO - what am I for?
+    private static final int TIMEOUT_SEC = 120; //The Python's session timeout - here, the driver's read timeout (--read-timeout)
+    //The Python set 100 as the session's page size. That's a round trip every 100 rows, so by default we stick with the
+    //Java driver's own default of 5000 instead - see --fetch-size
+    private static final int DEFAULT_FETCH_SIZE = 5000;
     private static final int DOT_EVERY = 1000;
-    private static final int CONCURRENT_BATCH_SIZE = 1000;
+    private static final int DEFAULT_EXPORT_BUFFER_SIZE = 1024 * 1024;
+    private static final int DEFAULT_CONCURRENCY = 100; //The Python driver's default for execute_concurrent
+    private static final int PREPARED_CACHE_SIZE = 500;
+    private static final int DEFAULT_TABLE_WORKERS = 4;
+    private static final int DEFAULT_IMPORT_WORKERS = 4;
+    //Comfortably under Cassandra's default batch_size_fail_threshold of 50KiB
+    private static final int DEFAULT_BATCH_BYTES = 40 * 1024;
+    private static final int DEFAULT_METRICS_INTERVAL = 10;
+    private static final int DEFAULT_COPY_QUEUE_ROWS = 10000;
+    private static final String JMX_DOMAIN = "cassandradumpJ";
+    //--bulk. The driver's defaults are one connection per node with 1024 requests each - protocol v3 and up allow 32768
+    private static final int BULK_CONNECTIONS_PER_HOST = 2;
+    private static final int BULK_MAX_REQUESTS_PER_CONNECTION = 2048;
+    private static final int BULK_EXPORT_WORKERS_PER_HOST = 2;
+    private static final int BULK_MAX_EXPORT_WORKERS = 64;
+    private static final int BULK_CONCURRENCY_PER_HOST = 256;
+    private static final int BULK_MAX_CONCURRENCY = 4096;
+    //How far behind the start of an incremental export its watermarks are kept, for writes that were already on their
+    //way when a range was scanned, and for clock skew between the clients that wrote them
+    private static final long WATERMARK_MARGIN_MICROS = TimeUnit.MINUTES.toMicros(1);
 
     //========= ARGS =============
     int CONNECT_TIMEOUT = 5;
     String[] CF = new String[0];
     File EXPORT_FILE = null;
     String[] FILTER = new String[0];
-    String HOST = "localhost";
+    String[] HOST = {"localhost"};
     int PORT = 9042;
+    String LOCAL_DC = null; //The contact points' datacenter unless given
+    int CONNECTIONS_PER_HOST = 0; //The driver's default unless given
+    int MAX_REQUESTS_PER_CONNECTION = 0; //The driver's default unless given
+    int READ_TIMEOUT = TIMEOUT_SEC;
+    int IO_THREADS = 0; //The driver's default unless given
+    boolean BULK = false;
     File IMPORT_FILE = null;
+    String[] COPY_TO = null;
+    int COPY_TO_PORT = 0; //--port unless given
+    String COPY_TO_LOCAL_DC = null; //The --copy-to contact points' datacenter unless given
+    int COPY_QUEUE_ROWS = DEFAULT_COPY_QUEUE_ROWS;
     String[] KEYSPACE = new String[0];
     String[] EXCLUDE_CF = new String[0];
     boolean NO_CREATE = false;
@@ -55,27 +107,105 @@ public class CassandraDumpJ {
     int PROTOCOL_VERSION = -1;
     boolean QUIET = false;
     boolean SYNC = false;
+    int CONCURRENCY = DEFAULT_CONCURRENCY;
+    int REPLICA_CONCURRENCY = -1; //Half of CONCURRENCY unless given
+    boolean PREPARED = false;
+    int FETCH_SIZE = DEFAULT_FETCH_SIZE;
+    int EXPORT_WORKERS = 1;
+    int EXPORT_BUFFER_SIZE = DEFAULT_EXPORT_BUFFER_SIZE;
+    Compression COMPRESS = Compression.NONE;
+    int SPLITS_PER_RANGE = 1;
+    boolean BINARY_FORMAT = false;
+    boolean WRITE_TIMES = false;
+    File INCREMENTAL = null;
+    boolean SEGMENTED = false;
+    boolean RESUME = false;
+    File DEAD_LETTER_FILE = null;
+    int MAX_ROWS_PER_SEC = 0;
+    double MAX_MB_PER_SEC = 0;
+    boolean ADAPTIVE = false;
+    int TABLE_WORKERS = DEFAULT_TABLE_WORKERS;
+    int IMPORT_WORKERS = DEFAULT_IMPORT_WORKERS;
+    int BATCH_ROWS = 1;
+    int BATCH_BYTES = DEFAULT_BATCH_BYTES;
+    int METRICS_INTERVAL = 0; //Seconds - no reports unless given, or --metrics-json is
+    File METRICS_JSON = null;
     String USERNAME = null;
     int LIMIT = 0;
+    double SAMPLE = 1; //The fraction of each table to export
+    String TOKEN_RANGE = null; //start:end
+    Map<String, Set<String>> INCLUDE_COLUMNS = new HashMap<>(); //By keyspace.table
+    Map<String, Set<String>> EXCLUDE_COLUMNS = new HashMap<>();
+    List<RowTransformer> TRANSFORMERS = new ArrayList<>(); //In the order they're applied
     boolean SSL = false;
     File CERTFILE = null;
     File USERKEY = null;
     File USERCERT = null;
     //======= END ARGS ===========
 
+    //Set by ExportJob and ImportJob, in place of EXPORT_FILE or IMPORT_FILE
+    RowSink ROW_SINK = null;
+    RowSource ROW_SOURCE = null;
+
     private Cluster _cluster = null;
     private Session _session = null;
+    private TokenRangeExporter _rangeExporter = null;
+    private DumpFormat _format = null;
+    private SegmentedExport _segments = null;
+    private Throttle _throttle = null;
+    private AdaptiveConcurrency _exportAdaptive = null;
+    private ImportJournal _importJournal = null;
+    private DeadLetterFile _deadLetters = null;
+    private final DumpMetrics _metrics = new DumpMetrics();
+    private JmxReporter _jmxReporter = null;
+    private MetricsReporter _metricsReporter = null;
+    private PrintStream _metricsOut = null;
+    private Consumer<String> _log = System.out::print;
+    private IncrementalManifest _incremental = null;
+    private final Map<String, Long> _watermarks = new ConcurrentHashMap<>(); //This run's, of every table it exported
+    private long _exportStartMicros = 0;
+    private Set<String> _givenOptions = Collections.emptySet(); //So --bulk knows what's been chosen already
 
     private static final Options cli_parser = constructParserArgs();
 
+    CassandraDumpJ() {
+    }
+
+    /**
+     * For ExportJob and ImportJob: runs against a session somebody else opened, and will close. Nothing is logged
+     * unless it's given somewhere to go - not even what went wrong, which the job's exception has anyway.
+     */
+    CassandraDumpJ(Session session) {
+        _cluster = session.getCluster();
+        _session = session;
+        _log = message -> { };
+        QUIET = true;
+    }
+
+    void log(Consumer<String> log) {
+        _log = log;
+        QUIET = false;
+    }
+
+    DumpMetrics metrics() {
+        return _metrics;
+    }
+
     public static void main(String[] args) {
         CassandraDumpJ instance = parseCommandLineOptionsToInstance(args);
+        if(instance.EXPORT_FILE != null && StreamFiles.isStandard(instance.EXPORT_FILE)) {
+            //stdout is the export
+            instance._log = System.err::print;
+        }
 
         try {
             instance.setupCluster();
+            instance.startMetrics();
 
             if(instance.IMPORT_FILE != null) {
                 instance.importData();
+            } else if(instance.COPY_TO != null) {
+                instance.copyData();
             } else if(instance.EXPORT_FILE != null) {
                 instance.exportData();
             }
@@ -90,14 +220,51 @@ public class CassandraDumpJ {
             e.printStackTrace();
             System.exit(4);
         } finally {
+            instance.stopMetrics();
             instance.cleanupCluster();
         }
     }
 
     private void setupCluster() throws ExecutionException, InterruptedException, TimeoutException {
+        _cluster = newCluster(HOST, PORT, LOCAL_DC);
+        _session = _cluster.connectAsync().get(CONNECT_TIMEOUT, TimeUnit.SECONDS);
+        if(BULK) {
+            applyBulkPreset();
+        }
+    }
+
+    //Every connection option but where the cluster is applies to the source and the target of a copy alike
+    private Cluster newCluster(String[] hosts, int port, String localDc) {
+        DCAwareRoundRobinPolicy.Builder dcAware = DCAwareRoundRobinPolicy.builder();
+        if(localDc != null) {
+            dcAware.withLocalDc(localDc);
+        }
+        PoolingOptions pooling = new PoolingOptions();
+        if(CONNECTIONS_PER_HOST > 0) {
+            pooling.setConnectionsPerHost(HostDistance.LOCAL, CONNECTIONS_PER_HOST, CONNECTIONS_PER_HOST);
+        }
+        if(MAX_REQUESTS_PER_CONNECTION > 0) {
+            pooling.setMaxRequestsPerConnection(HostDistance.LOCAL, MAX_REQUESTS_PER_CONNECTION);
+            pooling.setMaxRequestsPerConnection(HostDistance.REMOTE, MAX_REQUESTS_PER_CONNECTION);
+        }
         Cluster.Builder builder = Cluster.builder()
-                .addContactPoint(HOST)
-                .withPort(PORT);
+                .addContactPoints(hosts)
+                .withPort(port)
+                //Writes that carry a routing key go straight to a replica that owns them, instead of via a coordinator
+                .withLoadBalancingPolicy(new TokenAwarePolicy(dcAware.build()))
+                .withPoolingOptions(pooling)
+                //A page of a big partition, or a write queued behind thousands of others, can easily take longer than the
+                //driver's default of 12 seconds
+                .withSocketOptions(new SocketOptions().setReadTimeoutMillis(READ_TIMEOUT * 1000));
+        if(IO_THREADS > 0) {
+            final int ioThreads = IO_THREADS;
+            builder.withNettyOptions(new NettyOptions() {
+                @Override
+                public EventLoopGroup eventLoopGroup(ThreadFactory threadFactory) {
+                    return new NioEventLoopGroup(ioThreads, threadFactory);
+                }
+            });
+        }
 
         //Unimplemented. Java SSL is a bit of a nightmare.
         //If you're reading this and you're trying to do SSL, I apologize, but _this_ is a rat's nest.
@@ -129,8 +296,33 @@ public class CassandraDumpJ {
                 builder.withAuthProvider(new PlainTextAuthProvider(USERNAME, PASSWORD));
             }
         }
-        _cluster = builder.build();
-        _session = _cluster.connectAsync().get(CONNECT_TIMEOUT, TimeUnit.SECONDS);
+        return builder.build();
+    }
+
+    //Now that we know how many nodes there are, --bulk sizes whatever wasn't given for them. The export preset scans a
+    //couple of token ranges per node in the local datacenter at once, and the import preset keeps a few hundred writes
+    //in flight per node - but never more at one set of replicas than one node's share, so the rest of the cluster isn't
+    //left idle while one coordinator drowns.
+    private void applyBulkPreset() {
+        LoadBalancingPolicy policy = _cluster.getConfiguration().getPolicies().getLoadBalancingPolicy();
+        int localHosts = 0;
+        for(Host host : _cluster.getMetadata().getAllHosts()) {
+            if(host.isUp() && policy.distance(host) == HostDistance.LOCAL) {
+                localHosts++;
+            }
+        }
+        localHosts = Math.max(1, localHosts);
+        if(!_givenOptions.contains("export-workers")) {
+            EXPORT_WORKERS = Math.min(BULK_MAX_EXPORT_WORKERS, localHosts * BULK_EXPORT_WORKERS_PER_HOST);
+        }
+        if(!_givenOptions.contains("concurrency")) {
+            CONCURRENCY = Math.min(BULK_MAX_CONCURRENCY, localHosts * BULK_CONCURRENCY_PER_HOST);
+        }
+        if(!_givenOptions.contains("replica-concurrency")) {
+            REPLICA_CONCURRENCY = Math.min(CONCURRENCY, BULK_CONCURRENCY_PER_HOST);
+        }
+        logQuiet("Bulk preset for " + localHosts + " local node(s): " + EXPORT_WORKERS + " export workers, " + CONCURRENCY
+                + " writes in flight, " + replicaConcurrency() + " per replica set\n");
     }
 
     private void cleanupCluster() {
@@ -144,17 +336,53 @@ public class CassandraDumpJ {
         }
     }
 
+    //The run's metrics are always published over JMX. The driver's are too, under a domain of its own, so they're only
+    //added to ours for --metrics-json's sake.
+    private void startMetrics() throws IOException {
+        _metrics.include(_cluster);
+        _jmxReporter = JmxReporter.forRegistry(_metrics.registry())
+                .inDomain(JMX_DOMAIN)
+                .filter((name, metric) -> !name.startsWith(DumpMetrics.DRIVER_PREFIX + "."))
+                .build();
+        _jmxReporter.start();
+        if(METRICS_JSON != null) {
+            _metricsOut = new PrintStream(new FileOutputStream(METRICS_JSON), false, StandardCharsets.UTF_8.name());
+            _metricsReporter = MetricsReporter.json(_metrics, _metricsOut);
+        } else if(METRICS_INTERVAL > 0) {
+            _metricsReporter = MetricsReporter.text(_metrics, System.err);
+        }
+        if(_metricsReporter != null) {
+            _metricsReporter.start(METRICS_INTERVAL > 0 ? METRICS_INTERVAL : DEFAULT_METRICS_INTERVAL, TimeUnit.SECONDS);
+        }
+    }
+
+    private void stopMetrics() {
+        if(_metricsReporter != null) {
+            //However the run ended, the last report says where it got to
+            _metricsReporter.report();
+            _metricsReporter.stop();
+            _metricsReporter = null;
+        }
+        if(_metricsOut != null) {
+            _metricsOut.close();
+            _metricsOut = null;
+        }
+        if(_jmxReporter != null) {
+            _jmxReporter.stop();
+            _jmxReporter = null;
+        }
+    }
+
     private void logQuiet(String msg) {
         if(!QUIET) {
-            System.out.print(msg);
+            _log.accept(msg);
         }
     }
 
     private KeyspaceMetadata getKeyspaceOrFail(String keyname) {
         KeyspaceMetadata km = _cluster.getMetadata().getKeyspace(keyname);
         if(km == null) {
-            System.err.println("Can't find keyspace " + keyname);
-            throw new RuntimeException();
+            throw new IllegalArgumentException("Can't find keyspace " + keyname);
         }
         return km;
     }
@@ -163,102 +391,233 @@ public class CassandraDumpJ {
         TableMetadata tableval = keyspace.getTable(tablename);
 
         if (tableval == null) {
-            System.err.println("Can't find table \"" + tablename + "\"\n");
-            throw new RuntimeException();
+            throw new IllegalArgumentException("Can't find table \"" + tablename + "\" in keyspace " + keyspace.getName());
         }
 
         return tableval;
     }
 
-    private void tableToCQLFile(String keyspace, String tablename, String flt, TableMetadata tableval, FileWriter filep) throws IOException {
+    private void tableToCQLFile(String keyspace, String tablename, String flt, TableMetadata tableval, DumpFormat format, ExportSink filep,
+                                ExportJournal.Checkpoints checkpoints) throws IOException, InterruptedException {
+        /*
+        As far as I know, there is no distinctly clean way to straight port this code into Java.
+        To the best of my ability, I am going to try to essentially translate it, rewriting it to maintain
+        all of the original behavior, but in a Java style.
+
+        The Python's make_row_encoder (and friends) live on in RowEncoder (or the binary format's encoder) - it works out
+        how to turn a row of this table into the dump once, up front, and then we just feed it rows.
+         */
+        CodecRegistry codecRegistry = _cluster.getConfiguration().getCodecRegistry();
+        //Without a filter, we know exactly what we're selecting, so the encoder can be built from the table itself. Write
+        //times have to be asked for column by column, and so do the columns of a table that's been narrowed down, so with
+        //either of those we choose the columns even for a filter.
+        boolean writeTimes = WRITE_TIMES || _incremental != null;
+        Set<String> included = INCLUDE_COLUMNS.get(keyspace + "." + tablename);
+        Set<String> excluded = EXCLUDE_COLUMNS.get(keyspace + "." + tablename);
+        ExportColumns columns = flt == null || writeTimes || included != null || excluded != null
+                ? ExportColumns.of(tableval, writeTimes, included, excluded) : null;
+        ProtocolVersion protocolVersion = _cluster.getConfiguration().getProtocolOptions().getProtocolVersion();
+        //A resumed segment already has the table's header in it
+        ExportSink headerSink = checkpoints == null ? filep : checkpoints.headerSink();
+        DumpMetrics.Table tableMetrics = _metrics.table(keyspace + "." + tablename);
+        //Only a whole table can be expected to come out at anything like its estimated size
+        if(flt == null && LIMIT <= 0 && TOKEN_RANGE == null) {
+            long estimate = DumpMetrics.estimatedPartitions(_session, keyspace, tablename);
+            //-1 is no estimate at all, which a --sample would otherwise turn into an estimate of 0
+            if(estimate >= 0) {
+                tableMetrics.expectRows((long) (estimate * SAMPLE));
+            }
+        }
+
+        //A --filter or --limit only makes sense as a single query, so those always take the one-query path
+        if(_rangeExporter != null && flt == null && LIMIT <= 0) {
+            TableEncoder encoder = format.beginTable(headerSink, keyspace, tablename, columns, codecRegistry);
+            encoder = TransformingEncoder.of(encoder, keyspace, tablename, columns, TRANSFORMERS, protocolVersion, codecRegistry);
+            WatermarkFilter watermark = null;
+            if(_incremental != null) {
+                encoder = watermark = newWatermarkFilter(keyspace + "." + tablename, encoder, columns);
+            }
+            final int[] dots = {0};
+            long rowCount = _rangeExporter.export(tableval, columns.columnList(), encoder, filep, rows -> {
+                dots[0] += rows;
+                while(dots[0] >= DOT_EVERY) {
+                    dots[0] -= DOT_EVERY;
+                    logQuiet(".");
+                }
+            }, checkpoints, tableMetrics);
+            if (rowCount > DOT_EVERY) {
+                logQuiet("\n");
+            }
+            if(watermark != null) {
+                watermarkReached(keyspace + "." + tablename, watermark);
+            }
+            return;
+        }
+
         String query;
         if(flt == null) {
-            query = "SELECT * FROM \"" + keyspace + "\".\"" + tablename + "\"";
+            query = "SELECT " + columns.columnList() + " FROM \"" + keyspace + "\".\"" + tablename + "\"";
         } else {
-            query = "SELECT * FROM " + flt;
+            query = "SELECT " + (columns == null ? "*" : columns.columnList()) + " FROM " + flt;
         }
         if(LIMIT > 0) {
             query += " LIMIT " + LIMIT;
         }
 
-        ResultSet rows = _session.execute(query);
+        //As far as checkpoints go, the one query is a single range
+        if(checkpoints != null) {
+            checkpoints.begin(1);
+            if(checkpoints.isFinished(0)) {
+                return;
+            }
+        }
+        Statement statement = new SimpleStatement(query).setFetchSize(FETCH_SIZE);
+        if(checkpoints != null && checkpoints.resumeFrom(0) != null) {
+            statement.setPagingState(checkpoints.resumeFrom(0));
+        }
+        PrefetchingRows rows = new PrefetchingRows(_session, statement, _exportAdaptive, _metrics);
+        if(columns == null) {
+            columns = ExportColumns.of(rows.getColumnDefinitions());
+        }
+        TableEncoder encoder = format.beginTable(headerSink, keyspace, tablename, columns, codecRegistry);
+        encoder = TransformingEncoder.of(encoder, keyspace, tablename, columns, TRANSFORMERS, protocolVersion, codecRegistry);
+        WatermarkFilter watermark = null;
+        if(_incremental != null) {
+            encoder = watermark = newWatermarkFilter(keyspace + "." + tablename, encoder, columns);
+        }
 
         int cnt = 0;
-
-        /*
-        As far as I know, there is no distinctly clean way to straight port this code into Java.
-        To the best of my ability, I am going to try to essentially translate it, rewriting it to maintain
-        all of the original behavior, but in a Java style.
-
-        I will try my best to explain what (I think) the Python is doing, and what I am doing to emulate that behavior
-         */
-
-        filep.write("CONSISTENCY ONE;\n");
+        //Every row is encoded into the same reused chunk and handed straight to the sink, which does its own buffering
+        TableEncoder.Chunk line = encoder.newChunk();
         for (Row row : rows) {
-            ColumnDefinitions columnDefinitions = row.getColumnDefinitions();
-            //In the python make_row_encoder, the code is deciding how to handle a row based on whether or not
-            //It contains a column of type "counter".
-            //We will scan the columns now to see if a "counter" column exists
-            //
-            //The defs for make_value_encoders, make_value_encoder, and make_non_null_value_encoder are tasked with
-            //Coming up with the mechanism by which a datatype can be converted into a utf8 String.
-            //In this code, we will be converting and pushing those values onto these Maps instead.
-            //The python kept the counters separate from the non-counters, so we will do the same.
-            //The standard DataStax mechanism for converting types to CQL String literals is via the
-            //TypeCodec.format() function, for which there are many TypeCodecs.
-            //The mechanism by which you convert to/from a DataType to/from a TypeCodec is using the CodecRegistry
-            //which you can ask the cluster for, like so
-            CodecRegistry codecRegistry = _cluster.getConfiguration().getCodecRegistry();
-            Map<String, String> encodedColumnCounterValues = new HashMap<>();
-            Map<String, String> encodedColumnNonCounterValues = new HashMap<>();
-            for(ColumnDefinitions.Definition columnDefinition : columnDefinitions) {
-                Object value = row.getObject(columnDefinition.getName());
-                String encodedValue = codecRegistry.codecFor(columnDefinition.getType()).format(value);
-                if(columnDefinition.getType().equals(DataType.counter())) {
-                    encodedColumnCounterValues.put(columnDefinition.getName(), encodedValue);
-                } else {
-                    encodedColumnNonCounterValues.put(columnDefinition.getName(), encodedValue);
-                }
-            }
-            String lineToAdd;
-            if(!encodedColumnCounterValues.isEmpty()) {
-                String setClause = encodedColumnCounterValues.entrySet()
-                        .stream()
-                        .map((e -> e.getKey() + " = " + e.getKey() + " + " + e.getValue()))
-                        .collect(Collectors.joining(", "));
-                String whereClause = encodedColumnNonCounterValues.entrySet()
-                        .stream()
-                        .map((e -> e.getKey() + " = " + e.getValue()))
-                        .collect(Collectors.joining(" AND "));
-                lineToAdd = "UPDATE \""+keyspace+"\".\""+tablename+"\" SET " + setClause + " WHERE " + whereClause;
-            } else {
-                String columns = encodedColumnNonCounterValues.entrySet()
-                        .stream()
-                        .filter(e -> e.getValue() != null)
-                        .map(e -> "\"" + e.getKey() + "\"")
-                        .collect(Collectors.joining(", "));
-                String values = encodedColumnNonCounterValues.entrySet()
-                        .stream()
-                        .filter(e -> e.getValue() != null)
-                        .map(e -> e.getValue())
-                        .collect(Collectors.joining(", "));
-                lineToAdd = "INSERT INTO \""+keyspace+"\".\""+tablename+"\" ("+columns+") VALUES ("+values+")";
-            }
-            filep.write(lineToAdd + ";\n");
+            line.clear();
+            long start = System.nanoTime();
+            boolean added = line.add(row);
+            _metrics.encoded(System.nanoTime() - start);
+            if(added) {
+                _throttle.acquire(1, line.size());
+                line.writeTo(filep);
+                _metrics.rows.mark();
+                _metrics.bytes.mark(line.size());
+                tableMetrics.rows.mark();
+                tableMetrics.bytes.mark(line.size());
 
-            cnt++;
+                cnt++;
 
-            if (cnt % DOT_EVERY == 0) {
-                logQuiet(".");
+                if (cnt % DOT_EVERY == 0) {
+                    logQuiet(".");
+                }
+            }
+            if(checkpoints != null && rows.endOfPage() && rows.pagingState() != null) {
+                checkpoints.pageWritten(0, rows.pagingState());
             }
         }
+        if(checkpoints != null) {
+            checkpoints.pageWritten(0, null);
+        }
 
         if (cnt > DOT_EVERY) {
             logQuiet("\n");
         }
+        if(watermark != null) {
+            watermarkReached(keyspace + "." + tablename, watermark);
+        }
+    }
+
+    //The table's rows written since its last watermark - or all of them, if this is its first run
+    private WatermarkFilter newWatermarkFilter(String table, TableEncoder encoder, ExportColumns columns) {
+        Long previous = _incremental.watermark(table);
+        return new WatermarkFilter(encoder, columns, previous == null ? Long.MIN_VALUE : previous);
     }
 
-    private void exportData() throws IOException {
+    //The next run carries on from the newest write this one saw - unless that's so recent that writes older than it
+    //could still have been on their way to a range that was already scanned, in which case the next run goes back a bit
+    //further. A row written in that gap is exported twice, which is harmless. A table exported more than once in the run
+    //carries on from the furthest behind of them.
+    private void watermarkReached(String table, WatermarkFilter filter) {
+        Long previous = _incremental.watermark(table);
+        if(filter.skipped() > 0) {
+            logQuiet("Skipped " + filter.skipped() + " row(s) of " + table + " that haven't changed\n");
+        }
+        if(filter.newest() == Long.MIN_VALUE && previous == null) {
+            //Nothing to go by yet
+            return;
+        }
+        long watermark = Math.min(filter.newest(), _exportStartMicros - WATERMARK_MARGIN_MICROS);
+        if(previous != null) {
+            watermark = Math.max(watermark, previous);
+        }
+        _watermarks.merge(table, watermark, Math::min);
+    }
+
+    //A delta leaves the schema to the base - except for a table that's new since the last run, which the delta's rows
+    //can't go into until it's been created. Nothing is dropped, since the rest of the chain is already in there. Counter
+    //tables never have a watermark, but they're left out of deltas anyway.
+    private void newTableSchema(KeyspaceMetadata keyspace, TableMetadata tableval, ExportSink f) throws IOException {
+        if(_incremental == null || _incremental.isEmpty() || NO_CREATE || hasCounters(tableval)
+                || _incremental.watermark(keyspace.getName() + "." + tableval.getName()) != null) {
+            return;
+        }
+        logQuiet("Exporting schema for new column family " + keyspace.getName() + "." + tableval.getName() + "\n");
+        _format.statements(f, "CONSISTENCY ALL;\n");
+        _format.statements(f, ifNotExists(keyspace.asCQLQuery(), "CREATE KEYSPACE ") + "\n");
+        _format.statements(f, ifNotExists(tableval.asCQLQuery(), "CREATE TABLE ") + "\n");
+    }
+
+    private static String ifNotExists(String create, String prefix) {
+        String statement = create.trim();
+        if(!statement.endsWith(";")) {
+            statement += ";";
+        }
+        return statement.startsWith(prefix) ? prefix + "IF NOT EXISTS " + statement.substring(prefix.length()) : statement;
+    }
+
+    //With --segmented, the table is handed off to be exported into a segment of its own. Otherwise it's written into the
+    //export file right away, in turn.
+    private void exportTable(final String keyspace, final String tablename, final String flt, final TableMetadata tableval, ExportSink filep) throws IOException, InterruptedException {
+        //Counters have no write times to go by, and a delta of them would be added on top of the base when it's replayed
+        if(_incremental != null && !_incremental.isEmpty() && hasCounters(tableval)) {
+            logQuiet("Skipping counter table " + keyspace + "." + tablename + " - only the base of an incremental export has counters\n");
+            return;
+        }
+        if(_segments == null) {
+            tableToCQLFile(keyspace, tablename, flt, tableval, _format, filep, null);
+        } else {
+            _segments.submit(keyspace, tablename, (format, sink, checkpoints) -> tableToCQLFile(keyspace, tablename, flt, tableval, format, sink, checkpoints));
+        }
+    }
+
+    private static boolean hasCounters(TableMetadata tableval) {
+        for(ColumnMetadata column : tableval.getColumns()) {
+            if(column.getType().getName() == DataType.Name.COUNTER) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //The --token-range slice of the ring, in the cluster's own tokens - or null for all of it
+    private TokenRange tokenRange() {
+        if(TOKEN_RANGE == null) {
+            return null;
+        }
+        String[] bounds = TOKEN_RANGE.split(":", 2);
+        Metadata metadata = _cluster.getMetadata();
+        try {
+            return metadata.newTokenRange(metadata.newToken(bounds[0]), metadata.newToken(bounds[1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("--token-range '" + TOKEN_RANGE + "' isn't a range of tokens of the cluster's partitioner", e);
+        }
+    }
+
+    private DumpFormat newDumpFormat() {
+        if(BINARY_FORMAT) {
+            return new BinaryDumpFormat(_cluster.getConfiguration().getProtocolOptions().getProtocolVersion());
+        }
+        return new TextDumpFormat(WRITE_TIMES);
+    }
+
+    void exportData() throws IOException, InterruptedException {
         int selection_options = 0;
 
         if (KEYSPACE.length > 0) {
@@ -274,17 +633,60 @@ public class CassandraDumpJ {
         }
 
         if (selection_options > 1) {
-            System.err.println("--cf, --keyspace and --filter can't be combined");
-            throw new RuntimeException();
+            throw new IllegalArgumentException("--cf, --keyspace and --filter can't be combined");
+        }
+
+        //A delta's schema would drop the keyspaces it was replayed into, along with the base and every delta before it
+        boolean createSchema = !NO_CREATE;
+        if(INCREMENTAL != null) {
+            _incremental = IncrementalManifest.open(INCREMENTAL);
+            if(_incremental.contains(EXPORT_FILE)) {
+                throw new IOException(EXPORT_FILE + " is already part of " + INCREMENTAL + " - every run needs an export of its own");
+            }
+            _exportStartMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+            _watermarks.clear();
+            if(_incremental.isEmpty()) {
+                logQuiet("Exporting the base of " + INCREMENTAL + "\n");
+            } else {
+                logQuiet("Exporting the rows written since the last run of " + INCREMENTAL + "\n");
+                createSchema = false;
+            }
         }
 
-        FileWriter f = new FileWriter(EXPORT_FILE);
+        ExportSink f;
+        if(ROW_SINK != null) {
+            f = RowSinkFormat.NOWHERE;
+            _format = new RowSinkFormat(ROW_SINK);
+        } else if(SEGMENTED) {
+            if(!EXPORT_FILE.isDirectory() && !EXPORT_FILE.mkdirs()) {
+                throw new IOException("Can't create export directory " + EXPORT_FILE);
+            }
+            _segments = new SegmentedExport(EXPORT_FILE, TABLE_WORKERS, EXPORT_BUFFER_SIZE, COMPRESS, this::newDumpFormat, BINARY_FORMAT ? ".bin" : ".cql", RESUME);
+            _format = _segments.schemaFormat();
+            f = _segments.schemaSink();
+        } else {
+            f = ChannelExportSink.open(EXPORT_FILE, EXPORT_BUFFER_SIZE, COMPRESS);
+            _format = newDumpFormat();
+            _format.begin(f);
+        }
+        //Shared by every table, so the limits hold for the export as a whole
+        _throttle = new Throttle(MAX_ROWS_PER_SEC, MAX_MB_PER_SEC);
+        if(ADAPTIVE) {
+            //A single query has nothing to scale down but itself - this only gives it the back-off and retries
+            _exportAdaptive = new AdaptiveConcurrency(1);
+        }
+        //A sample or a slice of the ring is only ever read a token range at a time, even by a single worker
+        if(EXPORT_WORKERS > 1 || SAMPLE < 1 || TOKEN_RANGE != null) {
+            _rangeExporter = new TokenRangeExporter(_session, EXPORT_WORKERS, SPLITS_PER_RANGE, FETCH_SIZE, _throttle, ADAPTIVE, _metrics,
+                    tokenRange(), SAMPLE);
+        }
         try {
             if (selection_options == 0) {
                 logQuiet("Exporting all keyspaces\n");
             }
             List<String> keyspaces;
-            if (KEYSPACE.length == 0) {
+            //Every keyspace only if nothing else was asked for - --cf and --filter used to get every keyspace too
+            if (selection_options == 0) {
                 keyspaces = _cluster.getMetadata().getKeyspaces().stream().map(KeyspaceMetadata::getName).collect(Collectors.toList());
                 keyspaces.remove("system");
                 keyspaces.remove("system_traces");
@@ -298,11 +700,11 @@ public class CassandraDumpJ {
             for (String keyname : keyspaces) {
                 KeyspaceMetadata keyspace = getKeyspaceOrFail(keyname);
 
-                if (!NO_CREATE) {
+                if (createSchema) {
                     logQuiet("Exporting schema for keyspace " + keyname + "\n");
-                    f.write("CONSISTENCY ALL;\n");
-                    f.write("DROP KEYSPACE IF EXISTS \"" + keyname + "\";\n");
-                    f.write(keyspace.exportAsString() + "\n");
+                    _format.statements(f, "CONSISTENCY ALL;\n");
+                    _format.statements(f, "DROP KEYSPACE IF EXISTS \"" + keyname + "\";\n");
+                    _format.statements(f, keyspace.exportAsString() + "\n");
                 }
                 for(TableMetadata tableval : keyspace.getTables()) {
                     if(exclude_list.contains(tableval.getName())) {
@@ -310,31 +712,32 @@ public class CassandraDumpJ {
                         continue;
                     }
                     //TODO - figure out how to ask elif tableval.is_cql_compatible in Java
+                    newTableSchema(keyspace, tableval, f);
                     if(!NO_INSERT) {
                         logQuiet("Exporting data for column family " + keyname + "." + tableval.getName() + "\n");
-                        tableToCQLFile(keyname, tableval.getName(), null, tableval, f);
+                        exportTable(keyname, tableval.getName(), null, tableval, f);
                     }
                 }
             }
             //if args.cf is not None is redundant in Java - CF will never be null here
             for (String cf : CF) {
                 if(!cf.contains(".")) {
-                    System.err.println("Invalid keyspace.column_family input\n");
-                    throw new RuntimeException();
+                    throw new IllegalArgumentException("Invalid keyspace.column_family input: " + cf);
                 }
                 String keyname = cf.split("\\.")[0];
                 String tablename = cf.split("\\.")[1];
                 KeyspaceMetadata keyspace = getKeyspaceOrFail(keyname);
                 TableMetadata tableval = getColumnFamilyOrFail(keyspace, tablename);
                 //TODO - figure out how to ask elif tableval.is_cql_compatible in Java
-                if(!NO_CREATE) {
+                if(createSchema) {
                     logQuiet("Exporting schema for column family " + keyname + "." + tablename + "\n");
-                    f.write("DROP TABLE IF EXISTS \"" + keyname + "\".\"" + tablename + "\";\n");
-                    f.write(tableval.exportAsString() + ";\n");
+                    _format.statements(f, "DROP TABLE IF EXISTS \"" + keyname + "\".\"" + tablename + "\";\n");
+                    _format.statements(f, tableval.exportAsString() + ";\n");
                 }
+                newTableSchema(keyspace, tableval, f);
                 if(!NO_INSERT) {
                     logQuiet("Exporting data for column family " + keyname + "." + tableval.getName() + "\n");
-                    tableToCQLFile(keyname, tableval.getName(), null, tableval, f);
+                    exportTable(keyname, tableval.getName(), null, tableval, f);
                 }
             }
             //if args.filter is not None is redundant in Java - FILTER will never be null here
@@ -342,8 +745,7 @@ public class CassandraDumpJ {
                 String stripped = flt.trim();
                 String cf = stripped.split(" ")[0];
                 if(!cf.contains(".")) {
-                    System.err.println("Invalid keyspace.column_family input\n");
-                    throw new RuntimeException();
+                    throw new IllegalArgumentException("Invalid keyspace.column_family input: " + cf);
                 }
                 String keyname = cf.split("\\.")[0];
                 String tablename = cf.split("\\.")[1];
@@ -352,98 +754,291 @@ public class CassandraDumpJ {
                 //The python needlessly double-checks for a null tableval here - it's already checked by getColumnFamilyOrFail
                 if(!NO_INSERT) {
                     logQuiet("Exporting data for filter \"" + stripped + "\"\n");
-                    tableToCQLFile(keyname, tablename, stripped, tableval, f);
+                    exportTable(keyname, tablename, stripped, tableval, f);
                 }
             }
+            if(_segments != null) {
+                _segments.finish();
+            }
         } finally {
+            if(_segments != null) {
+                _segments.shutdown();
+                _segments = null;
+            }
+            if(_rangeExporter != null) {
+                _rangeExporter.shutdown();
+                _rangeExporter = null;
+            }
+            _format = null;
             f.close();
         }
+        if(_incremental != null) {
+            //Only once the export is all there
+            _incremental.append(EXPORT_FILE, _watermarks);
+            _incremental = null;
+        }
     }
 
-    private boolean canExecuteConcurrently(String statement) {
-        if(SYNC) {
-            return false;
+    void importData() throws IOException, InterruptedException {
+        //Shared by every segment being imported, so the limits hold for the import as a whole
+        _throttle = new Throttle(MAX_ROWS_PER_SEC, MAX_MB_PER_SEC);
+        if(ROW_SOURCE != null) {
+            importRows();
+            return;
+        }
+        //An incremental export is replayed from its manifest, base first and then every delta in turn
+        List<File> exports = Collections.singletonList(IMPORT_FILE);
+        if(!StreamFiles.isStream(IMPORT_FILE) && IncrementalManifest.isManifest(IMPORT_FILE)) {
+            exports = IncrementalManifest.open(IMPORT_FILE).exports();
+        }
+        List<File> journals = new ArrayList<>();
+        try {
+            openDeadLetters();
+            for(File export : exports) {
+                if(exports.size() > 1) {
+                    logQuiet("Importing " + export + "\n");
+                }
+                importExport(export, journals);
+            }
+            //Only once the whole chain is in - a finished export's journal is what keeps --resume from starting it over
+            for(File journal : journals) {
+                if(!journal.delete()) {
+                    _log.accept("Couldn't remove " + journal + "\n");
+                }
+            }
+        } finally {
+            closeDeadLetters();
         }
-        return (statement.toUpperCase().startsWith("INSERT") || statement.toUpperCase().startsWith("UPDATE"));
     }
 
-    private void importData() {
-        BufferedReader importFileReader = null;
+    //An export file, or a segmented export - with its own journal under --resume, so that carries on with whichever of
+    //a chain of them didn't finish. Journals are added to the given list as they're opened.
+    private void importExport(File export, List<File> journals) throws IOException, InterruptedException {
+        //A stream can't be gone back over, so there's no point keeping a journal of how far it got
+        if(StreamFiles.isStream(export)) {
+            importFile(export, export.getName(), export.getName());
+            return;
+        }
+        //A segmented export can be given as its directory, or as its manifest
+        File segmentDirectory = null;
+        if(export.isDirectory()) {
+            segmentDirectory = export;
+        } else if(export.getName().equals(SegmentManifest.FILE_NAME)) {
+            segmentDirectory = export.getAbsoluteFile().getParentFile();
+        }
         try {
-            importFileReader = new BufferedReader(new FileReader(IMPORT_FILE));
-
-            int cnt = 0;
-
-            String statement = "";
-            List<String> concurrentStatements = new ArrayList<>();
-
-            ConsistencyLevel consistencyLevel = ConsistencyLevel.ONE;
-
-            String importLine = importFileReader.readLine();
-            while (importLine != null) {
-                statement += importLine;
-                //if(statement.endsWith(";\n")) {
-                if(statement.endsWith(";")) {
-                    if(statement.startsWith("CONSISTENCY ")) {
-                        //This is new code that wasn't in the python. It appears that we have to handle
-                        //Consistency changes a bit more manually than just feeding them in.
-                        String conLvl = statement.split(" ")[1].replace(";", "");
-                        ConsistencyLevel newConLvl = ConsistencyLevel.valueOf(conLvl);
-                        //Only update the consistencyLevel when it actually changes.
-                        if(consistencyLevel != newConLvl) {
-                            logQuiet("Updating CONSISTENCY to " + conLvl + "\n");
-                            //We're changing consistency level, so we should execute any built-up
-                            //concurrent statements at the prior level
-                            for(String cStatement : concurrentStatements) {
-                                _session.execute(_session.prepare(cStatement).setConsistencyLevel(consistencyLevel).bind());
-                            }
-                            consistencyLevel = newConLvl;
-                        }
-                    } else if(canExecuteConcurrently(statement)) {
-                        concurrentStatements.add(statement);
-
-                        if(concurrentStatements.size() >= CONCURRENT_BATCH_SIZE) {
-                            //This is where we'd execute concurrently, but it isn't immediately clear how that would work.
-                            System.err.println("Unimplemented codepath - async import");
-                            throw new NotImplementedException();
-                        }
-                    } else {
-                        for(String cStatement : concurrentStatements) {
-                            _session.execute(_session.prepare(cStatement).setConsistencyLevel(consistencyLevel).bind());
-                        }
-                        concurrentStatements.clear();
-                        _session.execute(_session.prepare(statement).setConsistencyLevel(consistencyLevel).bind());
-                    }
-                    statement = "";
-                    cnt++;
-                    if (cnt % DOT_EVERY == 0) {
-                        logQuiet(".");
-                    }
+            //Nor is one kept unless it's wanted, which leaves the import's directory alone - it may not even be writable
+            if(RESUME) {
+                File importFrom = segmentDirectory != null ? segmentDirectory : export;
+                _importJournal = ImportJournal.open(importFrom, true);
+                journals.add(ImportJournal.journalFile(importFrom));
+            }
+            if(segmentDirectory != null) {
+                importSegments(segmentDirectory);
+            } else {
+                importFile(export, export.getName(), export.getName());
+            }
+        } finally {
+            if(_importJournal != null) {
+                _importJournal.close();
+                _importJournal = null;
+            }
+        }
+    }
+
+    //Imports whatever ROW_SOURCE has, all through the one importer. Without a file, there's no journal to keep.
+    private void importRows() throws IOException, InterruptedException {
+        try {
+            openDeadLetters();
+            StatementImporter importer = newStatementImporter(_metrics.table("rows"));
+            if(ROW_SOURCE instanceof ClusterCopy) {
+                //A copy's schema comes along with its rows, and goes in the same way as a dump's
+                ((ClusterCopy) ROW_SOURCE).readInto(new RowImporter(importer),
+                        cql -> importer.executeAll(new CqlStatementSplitter(new StringReader(cql)), 0));
+            } else {
+                ROW_SOURCE.readInto(new RowImporter(importer));
+            }
+            importer.finish();
+            if(importer.count() > DOT_EVERY) {
+                logQuiet("\n");
+            }
+        } finally {
+            closeDeadLetters();
+        }
+    }
+
+    //--copy-to: this instance exports the source cluster to a ClusterCopy, the same as an ExportJob to a RowSink, while
+    //another one, connected to the target cluster, imports from it on a thread of its own - as an ImportJob from a
+    //RowSource would. The import settings go to the target's instance; the export ones stay here.
+    void copyData() throws ExecutionException, InterruptedException, TimeoutException, IOException {
+        Cluster targetCluster = newCluster(COPY_TO, COPY_TO_PORT > 0 ? COPY_TO_PORT : PORT, COPY_TO_LOCAL_DC);
+        ExecutorService importThread = Executors.newSingleThreadExecutor();
+        try {
+            CassandraDumpJ target = new CassandraDumpJ(targetCluster.connectAsync().get(CONNECT_TIMEOUT, TimeUnit.SECONDS));
+            target.SYNC = SYNC;
+            target.PREPARED = PREPARED;
+            target.CONCURRENCY = CONCURRENCY;
+            target.REPLICA_CONCURRENCY = REPLICA_CONCURRENCY;
+            target.BATCH_ROWS = BATCH_ROWS;
+            target.BATCH_BYTES = BATCH_BYTES;
+            target.ADAPTIVE = ADAPTIVE;
+            target.DEAD_LETTER_FILE = DEAD_LETTER_FILE;
+            //The target's progress isn't logged, since the export's is the same rows - but what goes wrong on it is
+            target._log = _log;
+            if(BULK) {
+                //Sized for the target's nodes rather than the source's, which is logged unless --quiet
+                target._givenOptions = _givenOptions;
+                target.QUIET = QUIET;
+                target.applyBulkPreset();
+                target.QUIET = true;
+            }
+
+            ClusterCopy copy = new ClusterCopy(COPY_QUEUE_ROWS);
+            target.ROW_SOURCE = copy;
+            ROW_SINK = copy;
+            logQuiet("Copying to " + String.join(", ", COPY_TO) + "\n");
+            Future<?> imported = importThread.submit(() -> {
+                try {
+                    target.importData();
+                } catch (Throwable e) {
+                    copy.abandon(e);
+                    throw e;
                 }
-                importLine = importFileReader.readLine();
+                return null;
+            });
+            try {
+                exportData();
+                copy.finish();
+            } catch (Throwable e) {
+                copy.abandon(e);
+                throw e;
             }
-            //We've gone through the whole import file - execute any remaining statements (concurrently if possible)
-            for(String cStatement : concurrentStatements) {
-                _session.execute(_session.prepare(cStatement).setConsistencyLevel(consistencyLevel).bind());
+            try {
+                imported.get();
+            } catch (ExecutionException e) {
+                if(e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("The copy's import failed", e.getCause());
             }
-            concurrentStatements.clear();
-            if(!statement.isEmpty()) {
-                _session.execute(_session.prepare(statement).setConsistencyLevel(consistencyLevel).bind());
+        } finally {
+            ROW_SINK = null;
+            //Only still running if something failed
+            importThread.shutdownNow();
+            targetCluster.close();
+        }
+    }
+
+    private void openDeadLetters() throws IOException {
+        if(DEAD_LETTER_FILE != null) {
+            Configuration configuration = _cluster.getConfiguration();
+            _deadLetters = new DeadLetterFile(DEAD_LETTER_FILE, RESUME, configuration.getProtocolOptions().getProtocolVersion(),
+                    configuration.getCodecRegistry());
+        }
+    }
+
+    private void closeDeadLetters() throws IOException {
+        if(_deadLetters != null) {
+            _deadLetters.close();
+            if(_deadLetters.count() > 0) {
+                //Said even with --quiet, since the import otherwise looks like it went fine
+                _log.accept(_deadLetters.count() + " statement(s) failed, and were written to " + _deadLetters.file() + "\n");
             }
-            if(cnt > DOT_EVERY) {
+            _deadLetters = null;
+        }
+    }
+
+    private StatementImporter newStatementImporter(DumpMetrics.Table tableMetrics) {
+        return new StatementImporter(_session, SYNC, CONCURRENCY, replicaConcurrency(), PREPARED, PREPARED_CACHE_SIZE, BATCH_ROWS, BATCH_BYTES,
+                _throttle, ADAPTIVE, _deadLetters, _metrics, tableMetrics, this::logQuiet, DOT_EVERY);
+    }
+
+    //By default no one set of replicas gets more than half of the in-flight statements, so a slow node can't take them all
+    private int replicaConcurrency() {
+        return REPLICA_CONCURRENCY > 0 ? REPLICA_CONCURRENCY : Math.max(1, CONCURRENCY / 2);
+    }
+
+    //Runs a whole dump file through the importer, and waits for the last of it to finish. With --resume, a file that
+    //was imported already is skipped, and one that was part way through carries on from its last checkpoint. Its
+    //metrics are counted under the given name.
+    private void importFile(File file, String segment, String metricsName) throws IOException, InterruptedException {
+        if(_importJournal != null && _importJournal.isDone(segment)) {
+            logQuiet("Already imported " + segment + "\n");
+            return;
+        }
+        ImportJournal.Checkpoint from = _importJournal == null ? null : _importJournal.resumeFrom(segment);
+        long offset = from == null ? 0 : from.offset;
+        if(offset > 0) {
+            logQuiet("Resuming " + segment + " from byte " + offset + "\n");
+        }
+        DumpMetrics.Table tableMetrics = _metrics.table(metricsName);
+        if(!StreamFiles.isStream(file)) {
+            tableMetrics.expectBytes(file.length());
+        }
+        StatementImporter importer = newStatementImporter(tableMetrics);
+        if(_importJournal != null) {
+            importer.journal(_importJournal, segment, from);
+        }
+        //Compressed dumps are recognized by their first few bytes, so there's no need to say which kind it is - and
+        //the same goes for binary dumps
+        InputStream fileStream = _metrics.reading(StreamFiles.openInput(file), tableMetrics);
+        try (InputStream importFileStream = new BufferedInputStream(Compression.decompressing(fileStream), 64 * 1024)) {
+            if(BinaryDumpFormat.isBinary(importFileStream)) {
+                new BinaryDumpReader(importer).read(importFileStream, offset);
+            } else {
+                //Skipping an uncompressed file is a seek; a compressed one has to be decompressed up to there
+                ByteStreams.skipFully(importFileStream, offset);
+                //The splitter does its own (big) buffering, so the reader doesn't need any
+                importer.executeAll(new CqlStatementSplitter(new InputStreamReader(importFileStream, StandardCharsets.UTF_8)), offset);
+            }
+            //We've gone through the whole import file - wait for any remaining statements
+            importer.finish();
+            if(importer.count() > DOT_EVERY) {
                 logQuiet("\n");
             }
-        } catch(IOException ex) {
-            System.err.println("Failed to import data");
-            ex.printStackTrace();
         } finally {
-            if(importFileReader != null) {
+            //However far it got, if it didn't get all the way
+            importer.checkpoint();
+        }
+        if(_importJournal != null) {
+            _importJournal.segmentDone(segment);
+        }
+    }
+
+    //The schema segment runs first, on its own and in order, since every table has to exist before its data goes in.
+    //Then the data segments are loaded --import-workers at a time, each with its own reader and its own in-flight limit.
+    private void importSegments(final File directory) throws IOException, InterruptedException {
+        SegmentManifest manifest = SegmentManifest.read(directory);
+        List<SegmentManifest.Segment> dataSegments = new ArrayList<>();
+        for(SegmentManifest.Segment segment : manifest.segments()) {
+            if(segment.kind.equals(SegmentManifest.SCHEMA)) {
+                logQuiet("Importing schema from " + segment.fileName + "\n");
+                importFile(new File(directory, segment.fileName), segment.fileName, segment.fileName);
+            } else {
+                dataSegments.add(segment);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(IMPORT_WORKERS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(dataSegments.size());
+            for(final SegmentManifest.Segment segment : dataSegments) {
+                futures.add(executor.submit(() -> {
+                    logQuiet("Importing data for column family " + segment.table + "\n");
+                    importFile(new File(directory, segment.fileName), segment.fileName, segment.table);
+                    return null;
+                }));
+            }
+            for(int i = 0; i < futures.size(); i++) {
                 try {
-                    importFileReader.close();
-                } catch (IOException e) {
-                    //nop
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Failed to import " + dataSegments.get(i).fileName, e.getCause());
                 }
             }
+        } finally {
+            //Only still running if something failed
+            executor.shutdownNow();
         }
     }
 
@@ -470,7 +1065,8 @@ public class CassandraDumpJ {
             }
             if(cmd.hasOption("export-file")) {
                 instance.EXPORT_FILE = new File(cmd.getOptionValue("export-file"));
-                if(! instance.EXPORT_FILE.getParentFile().exists() || ! instance.EXPORT_FILE.getParentFile().isDirectory()) {
+                File parent = instance.EXPORT_FILE.getAbsoluteFile().getParentFile();
+                if(! StreamFiles.isStandard(instance.EXPORT_FILE) && (parent == null || ! parent.isDirectory())) {
                     throw new ParseException("arg 'export-file' specifies a path whose parent does not exist or is not a directory: '" + cmd.getOptionValue("export-file") + "'");
                 }
             }
@@ -478,8 +1074,84 @@ public class CassandraDumpJ {
                 instance.FILTER = cmd.getOptionValues("filter");
             }
             if(cmd.hasOption("host")) {
-                instance.HOST = cmd.getOptionValue("host");
+                instance.HOST = cmd.getOptionValue("host").trim().split("\\s*,\\s*");
+            }
+            if(cmd.hasOption("local-dc")) {
+                instance.LOCAL_DC = cmd.getOptionValue("local-dc");
+            }
+            instance.BULK = cmd.hasOption("bulk");
+            if(instance.BULK) {
+                instance.CONNECTIONS_PER_HOST = BULK_CONNECTIONS_PER_HOST;
+                instance.MAX_REQUESTS_PER_CONNECTION = BULK_MAX_REQUESTS_PER_CONNECTION;
+            }
+            if(cmd.hasOption("connections-per-host")) {
+                try {
+                    instance.CONNECTIONS_PER_HOST = Integer.parseInt(cmd.getOptionValue("connections-per-host"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'connections-per-host' requires an integer value, but got '"+cmd.getOptionValue("connections-per-host")+"'");
+                }
+                if(instance.CONNECTIONS_PER_HOST < 1) {
+                    throw new ParseException("arg 'connections-per-host' must be at least 1, but got '"+cmd.getOptionValue("connections-per-host")+"'");
+                }
+            }
+            if(cmd.hasOption("max-requests-per-connection")) {
+                try {
+                    instance.MAX_REQUESTS_PER_CONNECTION = Integer.parseInt(cmd.getOptionValue("max-requests-per-connection"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'max-requests-per-connection' requires an integer value, but got '"+cmd.getOptionValue("max-requests-per-connection")+"'");
+                }
+                if(instance.MAX_REQUESTS_PER_CONNECTION < 1 || instance.MAX_REQUESTS_PER_CONNECTION > 32768) {
+                    throw new ParseException("arg 'max-requests-per-connection' must be from 1 to 32768, but got '"+cmd.getOptionValue("max-requests-per-connection")+"'");
+                }
+            }
+            if(cmd.hasOption("copy-to")) {
+                instance.COPY_TO = cmd.getOptionValue("copy-to").trim().split("\\s*,\\s*");
+            }
+            if(cmd.hasOption("copy-to-port")) {
+                try {
+                    instance.COPY_TO_PORT = Integer.parseInt(cmd.getOptionValue("copy-to-port"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'copy-to-port' requires an integer value, but got '"+cmd.getOptionValue("copy-to-port")+"'");
+                }
+            }
+            if(cmd.hasOption("copy-to-local-dc")) {
+                instance.COPY_TO_LOCAL_DC = cmd.getOptionValue("copy-to-local-dc");
+            }
+            if(cmd.hasOption("copy-queue-rows")) {
+                try {
+                    instance.COPY_QUEUE_ROWS = Integer.parseInt(cmd.getOptionValue("copy-queue-rows"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'copy-queue-rows' requires an integer value, but got '"+cmd.getOptionValue("copy-queue-rows")+"'");
+                }
+                if(instance.COPY_QUEUE_ROWS < 1) {
+                    throw new ParseException("arg 'copy-queue-rows' must be at least 1, but got '"+cmd.getOptionValue("copy-queue-rows")+"'");
+                }
+            }
+            if(cmd.hasOption("read-timeout")) {
+                try {
+                    instance.READ_TIMEOUT = Integer.parseInt(cmd.getOptionValue("read-timeout"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'read-timeout' requires an integer value, but got '"+cmd.getOptionValue("read-timeout")+"'");
+                }
+                if(instance.READ_TIMEOUT < 1) {
+                    throw new ParseException("arg 'read-timeout' must be at least 1, but got '"+cmd.getOptionValue("read-timeout")+"'");
+                }
             }
+            if(cmd.hasOption("io-threads")) {
+                try {
+                    instance.IO_THREADS = Integer.parseInt(cmd.getOptionValue("io-threads"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'io-threads' requires an integer value, but got '"+cmd.getOptionValue("io-threads")+"'");
+                }
+                if(instance.IO_THREADS < 1) {
+                    throw new ParseException("arg 'io-threads' must be at least 1, but got '"+cmd.getOptionValue("io-threads")+"'");
+                }
+            }
+            Set<String> givenOptions = new HashSet<>();
+            for(Option option : cmd.getOptions()) {
+                givenOptions.add(option.getLongOpt());
+            }
+            instance._givenOptions = givenOptions;
             if(cmd.hasOption("port")) {
                 try {
                     instance.PORT = Integer.parseInt(cmd.getOptionValue("port"));
@@ -489,8 +1161,11 @@ public class CassandraDumpJ {
             }
             if(cmd.hasOption("import-file")) {
                 instance.IMPORT_FILE = new File(cmd.getOptionValue("import-file"));
-                if(! instance.IMPORT_FILE.exists() || ! instance.IMPORT_FILE.isFile()) {
-                    throw new ParseException("arg 'import-file' specifies a path that is not a file or does not exist: '" + cmd.getOptionValue("import-file") + "'");
+                if(! StreamFiles.isStandard(instance.IMPORT_FILE) && ! instance.IMPORT_FILE.exists()) {
+                    throw new ParseException("arg 'import-file' specifies a path that does not exist: '" + cmd.getOptionValue("import-file") + "'");
+                }
+                if(instance.IMPORT_FILE.isDirectory() && ! new File(instance.IMPORT_FILE, SegmentManifest.FILE_NAME).isFile()) {
+                    throw new ParseException("arg 'import-file' specifies a directory without a " + SegmentManifest.FILE_NAME + ": '" + cmd.getOptionValue("import-file") + "'");
                 }
             }
             if(cmd.hasOption("keyspace")) {
@@ -513,6 +1188,27 @@ public class CassandraDumpJ {
             }
             instance.QUIET = cmd.hasOption("quiet");
             instance.SYNC = cmd.hasOption("sync");
+            instance.PREPARED = cmd.hasOption("prepared");
+            if(cmd.hasOption("concurrency")) {
+                try {
+                    instance.CONCURRENCY = Integer.parseInt(cmd.getOptionValue("concurrency"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'concurrency' requires an integer value, but got '"+cmd.getOptionValue("concurrency")+"'");
+                }
+                if(instance.CONCURRENCY < 1) {
+                    throw new ParseException("arg 'concurrency' must be at least 1, but got '"+cmd.getOptionValue("concurrency")+"'");
+                }
+            }
+            if(cmd.hasOption("replica-concurrency")) {
+                try {
+                    instance.REPLICA_CONCURRENCY = Integer.parseInt(cmd.getOptionValue("replica-concurrency"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'replica-concurrency' requires an integer value, but got '"+cmd.getOptionValue("replica-concurrency")+"'");
+                }
+                if(instance.REPLICA_CONCURRENCY < 1) {
+                    throw new ParseException("arg 'replica-concurrency' must be at least 1, but got '"+cmd.getOptionValue("replica-concurrency")+"'");
+                }
+            }
             if(cmd.hasOption("username")) {
                 instance.USERNAME = cmd.getOptionValue("username");
             }
@@ -523,6 +1219,199 @@ public class CassandraDumpJ {
                     throw new ParseException("arg 'limit' requires an integer value, but got '"+cmd.getOptionValue("limit")+"'");
                 }
             }
+            if(cmd.hasOption("sample")) {
+                try {
+                    instance.SAMPLE = Double.parseDouble(cmd.getOptionValue("sample"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'sample' requires a numeric value, but got '"+cmd.getOptionValue("sample")+"'");
+                }
+                if(!(instance.SAMPLE > 0 && instance.SAMPLE <= 1)) {
+                    throw new ParseException("arg 'sample' must be greater than 0 and at most 1, but got '"+cmd.getOptionValue("sample")+"'");
+                }
+            }
+            if(cmd.hasOption("token-range")) {
+                instance.TOKEN_RANGE = cmd.getOptionValue("token-range");
+                String[] bounds = instance.TOKEN_RANGE.split(":", 2);
+                if(bounds.length != 2 || bounds[0].isEmpty() || bounds[1].isEmpty()) {
+                    throw new ParseException("arg 'token-range' must be start:end, but got '"+instance.TOKEN_RANGE+"'");
+                }
+            }
+            parseColumnLists(cmd, "columns", instance.INCLUDE_COLUMNS);
+            parseColumnLists(cmd, "exclude-columns", instance.EXCLUDE_COLUMNS);
+            //The transformers are applied in the order they were given, whichever options they came from
+            for(Option option : cmd.getOptions()) {
+                if("mask".equals(option.getLongOpt())) {
+                    try {
+                        instance.TRANSFORMERS.add(ColumnTransformer.mask(option.getValue()));
+                    } catch (IllegalArgumentException e) {
+                        throw new ParseException("arg 'mask' must be keyspace.table.column, but got '"+option.getValue()+"'");
+                    }
+                } else if("truncate".equals(option.getLongOpt())) {
+                    int colon = option.getValue().lastIndexOf(':');
+                    int length;
+                    try {
+                        length = Integer.parseInt(option.getValue().substring(colon + 1));
+                    } catch (NumberFormatException e) {
+                        throw new ParseException("arg 'truncate' must be keyspace.table.column:length, but got '"+option.getValue()+"'");
+                    }
+                    if(length < 1) {
+                        throw new ParseException("arg 'truncate' must have a length of at least 1, but got '"+option.getValue()+"'");
+                    }
+                    try {
+                        instance.TRANSFORMERS.add(ColumnTransformer.truncate(option.getValue().substring(0, colon), length));
+                    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                        throw new ParseException("arg 'truncate' must be keyspace.table.column:length, but got '"+option.getValue()+"'");
+                    }
+                } else if("transformer".equals(option.getLongOpt())) {
+                    try {
+                        instance.TRANSFORMERS.add(Class.forName(option.getValue()).asSubclass(RowTransformer.class).getDeclaredConstructor().newInstance());
+                    } catch (ClassCastException e) {
+                        throw new ParseException("arg 'transformer' must be a RowTransformer class, but got '"+option.getValue()+"'");
+                    } catch (ReflectiveOperationException e) {
+                        //A constructor that threw is reported with its own exception rather than the wrapper
+                        Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                        throw new ParseException("arg 'transformer' must be a RowTransformer class with a public no-argument constructor, but couldn't create '"+option.getValue()+"': "+cause);
+                    }
+                }
+            }
+            if(cmd.hasOption("fetch-size")) {
+                try {
+                    instance.FETCH_SIZE = Integer.parseInt(cmd.getOptionValue("fetch-size"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'fetch-size' requires an integer value, but got '"+cmd.getOptionValue("fetch-size")+"'");
+                }
+                if(instance.FETCH_SIZE < 1) {
+                    throw new ParseException("arg 'fetch-size' must be at least 1, but got '"+cmd.getOptionValue("fetch-size")+"'");
+                }
+            }
+            if(cmd.hasOption("export-buffer-size")) {
+                try {
+                    instance.EXPORT_BUFFER_SIZE = Integer.parseInt(cmd.getOptionValue("export-buffer-size"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'export-buffer-size' requires an integer value, but got '"+cmd.getOptionValue("export-buffer-size")+"'");
+                }
+                if(instance.EXPORT_BUFFER_SIZE < 1024) {
+                    throw new ParseException("arg 'export-buffer-size' must be at least 1024, but got '"+cmd.getOptionValue("export-buffer-size")+"'");
+                }
+            }
+            if(cmd.hasOption("compress")) {
+                try {
+                    instance.COMPRESS = Compression.fromName(cmd.getOptionValue("compress"));
+                } catch (IllegalArgumentException e) {
+                    throw new ParseException("arg 'compress' must be one of gzip, lz4 or zstd, but got '"+cmd.getOptionValue("compress")+"'");
+                }
+            }
+            if(cmd.hasOption("export-workers")) {
+                try {
+                    instance.EXPORT_WORKERS = Integer.parseInt(cmd.getOptionValue("export-workers"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'export-workers' requires an integer value, but got '"+cmd.getOptionValue("export-workers")+"'");
+                }
+                if(instance.EXPORT_WORKERS < 1) {
+                    throw new ParseException("arg 'export-workers' must be at least 1, but got '"+cmd.getOptionValue("export-workers")+"'");
+                }
+            }
+            if(cmd.hasOption("splits-per-range")) {
+                try {
+                    instance.SPLITS_PER_RANGE = Integer.parseInt(cmd.getOptionValue("splits-per-range"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'splits-per-range' requires an integer value, but got '"+cmd.getOptionValue("splits-per-range")+"'");
+                }
+                if(instance.SPLITS_PER_RANGE < 1) {
+                    throw new ParseException("arg 'splits-per-range' must be at least 1, but got '"+cmd.getOptionValue("splits-per-range")+"'");
+                }
+            }
+            if(cmd.hasOption("format")) {
+                String format = cmd.getOptionValue("format");
+                if(format.equalsIgnoreCase("binary")) {
+                    instance.BINARY_FORMAT = true;
+                } else if(!format.equalsIgnoreCase("cql")) {
+                    throw new ParseException("arg 'format' must be cql or binary, but got '"+format+"'");
+                }
+            }
+            instance.WRITE_TIMES = cmd.hasOption("write-times");
+            if(cmd.hasOption("incremental")) {
+                instance.INCREMENTAL = new File(cmd.getOptionValue("incremental"));
+            }
+            instance.SEGMENTED = cmd.hasOption("segmented");
+            instance.RESUME = cmd.hasOption("resume");
+            if(cmd.hasOption("dead-letter-file")) {
+                instance.DEAD_LETTER_FILE = new File(cmd.getOptionValue("dead-letter-file"));
+            }
+            if(cmd.hasOption("metrics-interval")) {
+                try {
+                    instance.METRICS_INTERVAL = Integer.parseInt(cmd.getOptionValue("metrics-interval"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'metrics-interval' requires an integer value, but got '"+cmd.getOptionValue("metrics-interval")+"'");
+                }
+                if(instance.METRICS_INTERVAL < 1) {
+                    throw new ParseException("arg 'metrics-interval' must be at least 1, but got '"+cmd.getOptionValue("metrics-interval")+"'");
+                }
+            }
+            if(cmd.hasOption("metrics-json")) {
+                instance.METRICS_JSON = new File(cmd.getOptionValue("metrics-json"));
+            }
+            if(cmd.hasOption("table-workers")) {
+                try {
+                    instance.TABLE_WORKERS = Integer.parseInt(cmd.getOptionValue("table-workers"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'table-workers' requires an integer value, but got '"+cmd.getOptionValue("table-workers")+"'");
+                }
+                if(instance.TABLE_WORKERS < 1) {
+                    throw new ParseException("arg 'table-workers' must be at least 1, but got '"+cmd.getOptionValue("table-workers")+"'");
+                }
+            }
+            if(cmd.hasOption("import-workers")) {
+                try {
+                    instance.IMPORT_WORKERS = Integer.parseInt(cmd.getOptionValue("import-workers"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'import-workers' requires an integer value, but got '"+cmd.getOptionValue("import-workers")+"'");
+                }
+                if(instance.IMPORT_WORKERS < 1) {
+                    throw new ParseException("arg 'import-workers' must be at least 1, but got '"+cmd.getOptionValue("import-workers")+"'");
+                }
+            }
+            if(cmd.hasOption("batch-rows")) {
+                try {
+                    instance.BATCH_ROWS = Integer.parseInt(cmd.getOptionValue("batch-rows"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'batch-rows' requires an integer value, but got '"+cmd.getOptionValue("batch-rows")+"'");
+                }
+                if(instance.BATCH_ROWS < 1) {
+                    throw new ParseException("arg 'batch-rows' must be at least 1, but got '"+cmd.getOptionValue("batch-rows")+"'");
+                }
+            }
+            if(cmd.hasOption("batch-bytes")) {
+                try {
+                    instance.BATCH_BYTES = Integer.parseInt(cmd.getOptionValue("batch-bytes"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'batch-bytes' requires an integer value, but got '"+cmd.getOptionValue("batch-bytes")+"'");
+                }
+                if(instance.BATCH_BYTES < 1) {
+                    throw new ParseException("arg 'batch-bytes' must be at least 1, but got '"+cmd.getOptionValue("batch-bytes")+"'");
+                }
+            }
+            if(cmd.hasOption("max-rows-per-sec")) {
+                try {
+                    instance.MAX_ROWS_PER_SEC = Integer.parseInt(cmd.getOptionValue("max-rows-per-sec"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'max-rows-per-sec' requires an integer value, but got '"+cmd.getOptionValue("max-rows-per-sec")+"'");
+                }
+                if(instance.MAX_ROWS_PER_SEC < 1) {
+                    throw new ParseException("arg 'max-rows-per-sec' must be at least 1, but got '"+cmd.getOptionValue("max-rows-per-sec")+"'");
+                }
+            }
+            if(cmd.hasOption("max-mb-per-sec")) {
+                try {
+                    instance.MAX_MB_PER_SEC = Double.parseDouble(cmd.getOptionValue("max-mb-per-sec"));
+                } catch (NumberFormatException e) {
+                    throw new ParseException("arg 'max-mb-per-sec' requires a numeric value, but got '"+cmd.getOptionValue("max-mb-per-sec")+"'");
+                }
+                if(!(instance.MAX_MB_PER_SEC > 0)) {
+                    throw new ParseException("arg 'max-mb-per-sec' must be greater than 0, but got '"+cmd.getOptionValue("max-mb-per-sec")+"'");
+                }
+            }
+            instance.ADAPTIVE = cmd.hasOption("adaptive");
             instance.SSL = cmd.hasOption("ssl");
             if(cmd.hasOption("certfile")) {
                 instance.CERTFILE = new File(cmd.getOptionValue("certfile"));
@@ -543,8 +1432,25 @@ public class CassandraDumpJ {
                 }
             }
 
-            if(instance.IMPORT_FILE == null && instance.EXPORT_FILE == null) {
-                throw new ParseException("--import-file or --export-file must be specified");
+            if(instance.IMPORT_FILE == null && instance.EXPORT_FILE == null && instance.COPY_TO == null) {
+                throw new ParseException("--import-file, --export-file or --copy-to must be specified");
+            }
+
+            //A copy's rows only ever go through memory, as they were fetched
+            if(instance.COPY_TO != null && (instance.IMPORT_FILE != null || instance.EXPORT_FILE != null || instance.SEGMENTED || instance.RESUME
+                    || instance.BINARY_FORMAT || instance.COMPRESS != Compression.NONE || instance.WRITE_TIMES || instance.INCREMENTAL != null)) {
+                throw new ParseException("--copy-to can't be combined with --import-file, --export-file, --segmented, --resume, --format, --compress, --write-times or --incremental");
+            }
+            if((instance.COPY_TO_PORT > 0 || instance.COPY_TO_LOCAL_DC != null || cmd.hasOption("copy-queue-rows")) && instance.COPY_TO == null) {
+                throw new ParseException("--copy-to-port, --copy-to-local-dc and --copy-queue-rows only work with --copy-to");
+            }
+
+            //A stream can only be gone through once, front to back
+            if(instance.EXPORT_FILE != null && StreamFiles.isStream(instance.EXPORT_FILE) && (instance.SEGMENTED || instance.INCREMENTAL != null)) {
+                throw new ParseException("--export-file can't be - or a pipe with --segmented or --incremental");
+            }
+            if(instance.IMPORT_FILE != null && StreamFiles.isStream(instance.IMPORT_FILE) && instance.RESUME) {
+                throw new ParseException("--resume doesn't work with an --import-file that's - or a pipe");
             }
 
             if(instance.USERKEY != null ^ instance.USERCERT != null) { //Rarely-used Java XOR operation. Requires both/neither
@@ -555,6 +1461,48 @@ public class CassandraDumpJ {
                 throw new ParseException("--import-file and --export-file can't be specified at the same time");
             }
 
+            if(instance.SEGMENTED && instance.EXPORT_FILE != null && instance.EXPORT_FILE.isFile()) {
+                throw new ParseException("--export-file must name a directory when using --segmented");
+            }
+
+            //A single export file can't be cut back to a checkpoint once it's compressed, or tables have been interleaved into it
+            if(instance.RESUME && instance.EXPORT_FILE != null && !instance.SEGMENTED) {
+                throw new ParseException("--resume only works with a --segmented --export-file, or an --import-file");
+            }
+
+            //The binary format's rows are bound to one prepared INSERT per table, which has nowhere to put a write time
+            if(instance.WRITE_TIMES && instance.BINARY_FORMAT) {
+                throw new ParseException("--write-times only works with --format cql");
+            }
+
+            if(instance.INCREMENTAL != null && instance.EXPORT_FILE == null) {
+                throw new ParseException("--incremental only works with --export-file - to replay the chain, give its manifest to --import-file");
+            }
+
+            //A resumed run would only see the write times of what was left to export
+            if(instance.INCREMENTAL != null && instance.RESUME) {
+                throw new ParseException("--incremental can't be combined with --resume");
+            }
+
+            //Both work a token range at a time, which a filter or a limit can't be split into
+            if((instance.SAMPLE < 1 || instance.TOKEN_RANGE != null) && (instance.FILTER.length > 0 || instance.LIMIT > 0)) {
+                throw new ParseException("--sample and --token-range can't be combined with --filter or --limit");
+            }
+
+            //The next run's watermark would only cover the part of the tables this one read, and the rows it never read
+            //would be skipped by every delta after it
+            if((instance.SAMPLE < 1 || instance.TOKEN_RANGE != null || instance.FILTER.length > 0 || instance.LIMIT > 0) && instance.INCREMENTAL != null) {
+                throw new ParseException("--sample, --token-range, --filter and --limit can't be combined with --incremental");
+            }
+
+            if((!instance.INCLUDE_COLUMNS.isEmpty() || !instance.EXCLUDE_COLUMNS.isEmpty() || !instance.TRANSFORMERS.isEmpty()) && instance.IMPORT_FILE != null) {
+                throw new ParseException("--columns, --exclude-columns, --mask, --truncate and --transformer don't work with --import-file");
+            }
+
+            if(instance.DEAD_LETTER_FILE != null && instance.IMPORT_FILE == null && instance.COPY_TO == null) {
+                throw new ParseException("--dead-letter-file only works with --import-file or --copy-to");
+            }
+
             if(instance.SSL && instance.CERTFILE == null) {
                 throw new ParseException("--certfile must also be specified when using --ssl");
             }
@@ -575,13 +1523,6 @@ public class CassandraDumpJ {
             if(instance.SSL) {
                 throw new ParseException("UNIMPLEMENTED FEATURE: The code for activating SSL-based authentication has not yet been implemented");
             }
-            //DataStax' Python driver has a convenience function for executing queries concurrently - the Java driver does not...
-            //...or, at least, it isn't clear if it does it automatically. Suffice it to say, it would appear an ExecutorService
-            //might be necessary, and while that'd be nice to have, it's not absolutely necessary for this to work, so
-            //I'm skipping it for now. Read more here: https://docs.datastax.com/en/dev-app-drivers/docs/managing/manage-concurrency.html
-            if(!instance.SYNC && instance.IMPORT_FILE != null) {
-                throw new ParseException("UNIMPLEMENTED FEATURE: Async import is not presently supported - please specify --sync for now");
-            }
         } catch (ParseException e) {
             System.out.println("Error: " + e.getMessage());
             helpFormatter.printHelp("java -jar cassandradumpJ-*-jar-with-dependencies.jar", helpHeader, cli_parser, helpFooter);
@@ -590,15 +1531,46 @@ public class CassandraDumpJ {
         return instance;
     }
 
+    //--columns and --exclude-columns, each keyspace.table:column,column,... - a table given more than once gets all of them
+    private static void parseColumnLists(CommandLine cmd, String option, Map<String, Set<String>> lists) throws ParseException {
+        if(!cmd.hasOption(option)) {
+            return;
+        }
+        for(String value : cmd.getOptionValues(option)) {
+            int colon = value.indexOf(':');
+            String table = colon < 0 ? "" : value.substring(0, colon).trim();
+            List<String> columns = new ArrayList<>();
+            for(String column : value.substring(colon + 1).split(",")) {
+                if(!column.trim().isEmpty()) {
+                    columns.add(column.trim());
+                }
+            }
+            if(table.split("\\.").length != 2 || columns.isEmpty()) {
+                throw new ParseException("arg '" + option + "' must be keyspace.table:column,column,..., but got '" + value + "'");
+            }
+            lists.computeIfAbsent(table, t -> new HashSet<>()).addAll(columns);
+        }
+    }
+
     private static Options constructParserArgs() {
         Options parser = new Options();
         parser.addOption(new Option(null, "connect-timeout", true, "set timeout for connecting to the cluster (in seconds)"));
         parser.addOption(new Option(null, "cf", true, "export a column family. The name must include the keyspace, e.g. \"system.schema_columns\". Can be specified multiple times"));
-        parser.addOption(new Option(null, "export-file", true, "export data to the specified file"));
+        parser.addOption(new Option(null, "export-file", true, "export data to the specified file, or a named pipe. - writes it to stdout, and progress goes to stderr instead"));
         parser.addOption(new Option(null, "filter", true, "export a slice of a column family according to a CQL filter. This takes essentially a typical SELECT query stripped of the initial \"SELECT ... FROM\" part (e.g. \"system.schema_columns where keyspace_name ='OpsCenter'\", and exports only that data. Can be specified multiple times"));
-        parser.addOption(new Option(null, "host", true, "the address of a Cassandra node in the cluster (localhost if omitted)"));
-        parser.addOption(new Option(null, "port", true, "the port of a Cassandra node in the cluster (9042 if omitted)"));
-        parser.addOption(new Option(null, "import-file", true, "import data from the specified file"));
+        parser.addOption(new Option(null, "host", true, "the address of a Cassandra node in the cluster, or a comma-separated list of them to try in turn (localhost if omitted)"));
+        parser.addOption(new Option(null, "port", true, "the port of the Cassandra nodes in the cluster (9042 if omitted)"));
+        parser.addOption(new Option(null, "local-dc", true, "the datacenter to send requests to. Nodes in other datacenters aren't used (the datacenter of the first --host node to answer if omitted)"));
+        parser.addOption(new Option(null, "connections-per-host", true, "open this many connections to every node in the local datacenter (the driver's default of 1 if omitted, 2 with --bulk)"));
+        parser.addOption(new Option(null, "max-requests-per-connection", true, "allow this many requests in flight on each connection, up to 32768 (the driver's default of 1024 if omitted, 2048 with --bulk)"));
+        parser.addOption(new Option(null, "read-timeout", true, "give up on a request the cluster hasn't answered after this many seconds (120 if omitted)"));
+        parser.addOption(new Option(null, "io-threads", true, "the number of threads the driver does its network I/O on (twice the number of cores if omitted)"));
+        parser.addOption(new Option(null, "bulk", false, "tune the connection and workers for a bulk export or import of the whole cluster. Every option this sets can still be given to override it - see the README"));
+        parser.addOption(new Option(null, "import-file", true, "import data from the specified file or named pipe (- for stdin), from the directory (or manifest) of a --segmented export, or from every export of an --incremental manifest"));
+        parser.addOption(new Option(null, "copy-to", true, "copy the exported tables straight into the cluster at this address, or a comma-separated list of them, instead of to an --export-file. Rows go from one cluster to the other through memory. The import options apply to the target, and the other connection options to both"));
+        parser.addOption(new Option(null, "copy-to-port", true, "the port of the --copy-to nodes (the --port if omitted)"));
+        parser.addOption(new Option(null, "copy-to-local-dc", true, "the datacenter of the --copy-to cluster to send writes to (the datacenter of the first --copy-to node to answer if omitted)"));
+        parser.addOption(new Option(null, "copy-queue-rows", true, "the most rows a --copy-to holds in memory on their way from one cluster to the other (10000 if omitted)"));
         parser.addOption(new Option(null, "keyspace", true, "export a keyspace along with all its column families. Can be specified multiple times"));
         parser.addOption(new Option(null, "exclude-cf", true, "when using --keyspace, specify column family to exclude.  Can be specified multiple times"));
         parser.addOption(new Option(null, "no-create", false, "don't generate create (and drop) statements"));
@@ -607,8 +1579,38 @@ public class CassandraDumpJ {
         parser.addOption(new Option(null, "protocol-version", true, "set protocol version (required for authentication)"));
         parser.addOption(new Option(null, "quiet", false, "quiet progress logging"));
         parser.addOption(new Option(null, "sync", false, "import data in synchronous mode (default asynchronous)"));
+        parser.addOption(new Option(null, "prepared", false, "import INSERT/UPDATE statements by binding their values to cached prepared statements, instead of preparing every line"));
+        parser.addOption(new Option(null, "concurrency", true, "max number of statements in flight during asynchronous import (" + DEFAULT_CONCURRENCY + " if omitted)"));
+        parser.addOption(new Option(null, "replica-concurrency", true, "max number of statements in flight to any one set of replicas during asynchronous import (half of --concurrency if omitted)"));
         parser.addOption(new Option(null, "username", true, "set username for auth (only if protocol-version is set)"));
         parser.addOption(new Option(null, "limit", true, "set number of rows return limit"));
+        parser.addOption(new Option(null, "sample", true, "export a random sample of about this fraction of each table, e.g. 0.01, by reading only that fraction of its token ranges. A table's sample is the same from run to run (whole tables if omitted)"));
+        parser.addOption(new Option(null, "columns", true, "export only these columns of a table, given as keyspace.table:column,column,... Its primary key columns are always exported. The other columns aren't even fetched. Can be specified multiple times"));
+        parser.addOption(new Option(null, "exclude-columns", true, "leave these columns of a table out of the export, given as keyspace.table:column,column,... They aren't even fetched. Can be specified multiple times"));
+        parser.addOption(new Option(null, "mask", true, "replace every value of a text or blob column, given as keyspace.table.column, with its SHA-256. The same value always gets the same mask. Can be specified multiple times"));
+        parser.addOption(new Option(null, "truncate", true, "cut every value of a text or blob column down to at most this many characters or bytes, given as keyspace.table.column:length. Can be specified multiple times"));
+        parser.addOption(new Option(null, "transformer", true, "run every exported row through this RowTransformer class, which needs a public no-argument constructor. Transformers, masks and truncations are applied in the order they're given. Can be specified multiple times"));
+        parser.addOption(new Option(null, "token-range", true, "export only the rows with a token in (start, end], given as start:end in the cluster partitioner's tokens, e.g. -9223372036854775808:0 (the whole ring if omitted)"));
+        parser.addOption(new Option(null, "fetch-size", true, "number of rows fetched per page during export. The next page is always fetched while the current one is being written (" + DEFAULT_FETCH_SIZE + " if omitted)"));
+        parser.addOption(new Option(null, "export-buffer-size", true, "size in bytes of the buffer the export file is written through (" + DEFAULT_EXPORT_BUFFER_SIZE + " if omitted)"));
+        parser.addOption(new Option(null, "compress", true, "compress the export file with gzip, lz4 or zstd. Compressed files are detected automatically by --import-file"));
+        parser.addOption(new Option(null, "export-workers", true, "number of threads scanning token ranges in parallel during export. More than 1 switches to token-range export, which isn't used with --filter or --limit (1 if omitted)"));
+        parser.addOption(new Option(null, "splits-per-range", true, "with --export-workers, split each of the cluster's token ranges into this many pieces (1 if omitted)"));
+        parser.addOption(new Option(null, "format", true, "write the export as a CQL script (cql) or in the compact binary format (binary). Binary dumps are detected automatically by --import-file (cql if omitted)"));
+        parser.addOption(new Option(null, "write-times", false, "export every cell's WRITETIME and TTL along with it, so the import writes it back USING TIMESTAMP and TTL instead of at the time of the import. Counters keep the import's time, and non-frozen collections take their row's. Only works with --format cql"));
+        parser.addOption(new Option(null, "incremental", true, "export only the rows written since the last export recorded in this manifest file, then record this one. The first export of a manifest has every row. Give the manifest to --import-file to import every export in it, in order"));
+        parser.addOption(new Option(null, "segmented", false, "export every table into a segment file of its own, in the directory named by --export-file, along with a manifest. Tables are exported in parallel"));
+        parser.addOption(new Option(null, "resume", false, "carry on an import, or a --segmented export, that was interrupted, from the last checkpoint of every segment. An export must be given the same tables and options as before"));
+        parser.addOption(new Option(null, "table-workers", true, "with --segmented, the number of tables exported at once (" + DEFAULT_TABLE_WORKERS + " if omitted)"));
+        parser.addOption(new Option(null, "import-workers", true, "when importing a --segmented export, the number of data segments loaded at once, each with its own --concurrency limit (" + DEFAULT_IMPORT_WORKERS + " if omitted)"));
+        parser.addOption(new Option(null, "batch-rows", true, "import consecutive writes to the same partition as UNLOGGED batches of up to this many rows. Implies --prepared (1, i.e. no batching, if omitted)"));
+        parser.addOption(new Option(null, "batch-bytes", true, "with --batch-rows, cut batches before they grow past this many bytes (" + DEFAULT_BATCH_BYTES + " if omitted)"));
+        parser.addOption(new Option(null, "max-rows-per-sec", true, "limit export or import to this many rows per second (no limit if omitted)"));
+        parser.addOption(new Option(null, "max-mb-per-sec", true, "limit export or import to this many megabytes per second - of export output, or of requests sent during import. Fractions are allowed (no limit if omitted)"));
+        parser.addOption(new Option(null, "adaptive", false, "lower the import's --concurrency (or the export's --export-workers) when the cluster responds with timeouts, overloaded errors or rising latency, and raise it again once it recovers. Timed out pages are retried"));
+        parser.addOption(new Option(null, "dead-letter-file", true, "during import or --copy-to, write statements that still fail after being retried to this file (as CQL that can be imported later), instead of aborting the import"));
+        parser.addOption(new Option(null, "metrics-interval", true, "report progress to stderr every this many seconds, and once more at the end: rows and megabytes per second, overall and per table, each table's ETA, page fetch or write latencies, requests in flight, retries, timeouts and failures, and the time spent encoding compared to waiting on the cluster (no reports if omitted). Metrics are always published over JMX"));
+        parser.addOption(new Option(null, "metrics-json", true, "write every metric, the driver's included, to this file as a line of JSON per report, instead of reporting to stderr (every " + DEFAULT_METRICS_INTERVAL + " seconds unless --metrics-interval is given)"));
         parser.addOption(new Option(null, "ssl", false, "enable ssl connection to Cassandra cluster.  Must also set --certfile."));
         parser.addOption(new Option(null, "certfile", true, "ca cert file for SSL.  Assumes --ssl."));
         parser.addOption(new Option(null, "userkey", true, "user key file for client authentication.  Assumes --ssl."));
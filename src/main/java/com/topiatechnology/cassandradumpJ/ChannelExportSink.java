@@ -0,0 +1,133 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/*
+An ExportSink that encodes straight into one big, reused, direct ByteBuffer, and only writes to the channel when
+that fills up - so the disk sees a handful of large sequential writes instead of one small one per row.
+The output is always UTF-8, whatever the platform default happens to be (FileWriter used the default).
+With --compress, the channel is a CompressingChannel, and the compression happens on a thread of its own. The file can
+also be stdout or a named pipe (see StreamFiles), which gets the same big writes through a plain stream's channel.
+
+It keeps count of the bytes written to it (before compression), which is what checkpoints of a segmented export record.
+ */
+class ChannelExportSink implements ExportSink {
+
+    private final WritableByteChannel _channel;
+    private final ByteBuffer _buffer;
+    private long _drained;
+    private final CharsetEncoder _encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    ChannelExportSink(WritableByteChannel channel, int bufferSize) {
+        this(channel, bufferSize, 0);
+    }
+
+    private ChannelExportSink(WritableByteChannel channel, int bufferSize, long position) {
+        _channel = channel;
+        _buffer = ByteBuffer.allocateDirect(bufferSize);
+        _drained = position;
+    }
+
+    static ChannelExportSink open(File file, int bufferSize, Compression compression) throws IOException {
+        WritableByteChannel channel = StreamFiles.isStream(file)
+                ? Channels.newChannel(StreamFiles.openOutput(file))
+                : FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if(compression == Compression.NONE) {
+            return new ChannelExportSink(channel, bufferSize);
+        }
+        //The compressor emits lots of small writes of its own, so it gets a buffer in front of the file too
+        try {
+            OutputStream compressed = compression.compress(new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize));
+            return new ChannelExportSink(new CompressingChannel(compressed, bufferSize), bufferSize);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an uncompressed file to carry on writing at the given position - anything after it is cut off.
+     */
+    static ChannelExportSink openAt(File file, long position, int bufferSize) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        try {
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ChannelExportSink(channel, bufferSize, position);
+    }
+
+    /**
+     * How many bytes have been written to the sink so far, counting any it opened at, and before any compression.
+     */
+    long position() {
+        return _drained + _buffer.position();
+    }
+
+    @Override
+    public void write(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        //Each write is encoded as a whole - callers only ever hand us complete statements
+        _encoder.reset();
+        while(_encoder.encode(chars, _buffer, true).isOverflow()) {
+            drainBuffer();
+        }
+        while(_encoder.flush(_buffer).isOverflow()) {
+            drainBuffer();
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer bytes) throws IOException {
+        while(bytes.hasRemaining()) {
+            if(!_buffer.hasRemaining()) {
+                drainBuffer();
+            }
+            int length = Math.min(bytes.remaining(), _buffer.remaining());
+            ByteBuffer slice = bytes.duplicate();
+            slice.limit(slice.position() + length);
+            _buffer.put(slice);
+            bytes.position(bytes.position() + length);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drainBuffer();
+    }
+
+    private void drainBuffer() throws IOException {
+        _buffer.flip();
+        _drained += _buffer.remaining();
+        while(_buffer.hasRemaining()) {
+            _channel.write(_buffer);
+        }
+        _buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drainBuffer();
+        } finally {
+            _channel.close();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.DataType;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+The hand-off between the two halves of a copy (--copy-to): the export of the source cluster pushes its rows in as a
+RowSink, and the import into the target cluster takes them out again as a RowSource, each on a thread of its own.
+Nothing goes anywhere near the disk.
+
+In between is a queue of at most so many rows, which is all the memory a copy needs whatever the size of the tables.
+Whichever side is faster ends up waiting on the queue - a full one holds the export back, an empty one the import - so
+a copy takes as long as the slower of the two, not the two one after the other.
+
+The schema comes through too, as the CQL a dump would have had, for the import to run before the rows that need it.
+If either side fails, the other one stops as soon as it next goes to the queue, rather than waiting forever.
+ */
+final class ClusterCopy implements RowSink, RowSource {
+
+    /**
+     * Where the import runs the schema's CQL.
+     */
+    interface Statements {
+        void execute(String cql) throws IOException, InterruptedException;
+    }
+
+    private static final long POLL_MILLIS = 100;
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> _queue;
+    private volatile Throwable _failure = null; //Of whichever side failed first
+
+    ClusterCopy(int rows) {
+        _queue = new ArrayBlockingQueue<>(rows);
+    }
+
+    private static final class Table {
+        final String keyspace;
+        final String table;
+        final List<String> columns;
+        final List<DataType> types;
+
+        Table(String keyspace, String table, List<String> columns, List<DataType> types) {
+            this.keyspace = keyspace;
+            this.table = table;
+            this.columns = columns;
+            this.types = types;
+        }
+    }
+
+    private static final class Cql {
+        final String text;
+
+        Cql(String text) {
+            this.text = text;
+        }
+    }
+
+    @Override
+    public void beginTable(String keyspace, String table, List<String> columns, List<DataType> types) throws IOException {
+        put(new Table(keyspace, table, columns, types));
+    }
+
+    @Override
+    public void row(List<ByteBuffer> values) throws IOException {
+        put(values);
+    }
+
+    /**
+     * Passes schema (or CONSISTENCY) CQL along to the import, in its place among the rows.
+     */
+    void statements(String cql) throws IOException {
+        put(new Cql(cql));
+    }
+
+    /**
+     * Says that the export is done: the import finishes once it has got through what's left in the queue.
+     */
+    void finish() throws IOException {
+        put(END);
+    }
+
+    /**
+     * Stops the other side, because this one has failed.
+     */
+    void abandon(Throwable failure) {
+        if(_failure == null) {
+            _failure = failure;
+        }
+    }
+
+    /**
+     * Takes every row the export sends into the sink, until it's finished. The schema is dropped.
+     */
+    @Override
+    public void readInto(RowSink sink) throws IOException, InterruptedException {
+        readInto(sink, null);
+    }
+
+    /**
+     * Takes everything the export sends, the rows into the sink and the schema to the statements (dropped if null),
+     * until it's finished.
+     */
+    @SuppressWarnings("unchecked")
+    void readInto(RowSink sink, Statements statements) throws IOException, InterruptedException {
+        while(true) {
+            if(_failure != null) {
+                throw new IOException("The copy's export failed", _failure);
+            }
+            Object item = _queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if(item == null) {
+                continue;
+            }
+            if(item == END) {
+                return;
+            } else if(item instanceof Table) {
+                Table table = (Table) item;
+                sink.beginTable(table.keyspace, table.table, table.columns, table.types);
+            } else if(item instanceof Cql) {
+                if(statements != null) {
+                    statements.execute(((Cql) item).text);
+                }
+            } else {
+                sink.row((List<ByteBuffer>) item);
+            }
+        }
+    }
+
+    private void put(Object item) throws IOException {
+        try {
+            while(!_queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if(_failure != null) {
+                    throw new IOException("The copy's import failed", _failure);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while copying");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.DataType;
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/*
+The RowTransformers the command line has built in, each working on one column of one table, named "keyspace.table.column":
+
+--mask replaces every text or blob value with a SHA-256 of it (in hex, for text). The same value always becomes the
+same pseudonym, so masked keys still join up across tables - but a hash of something guessable, like an email address,
+can be guessed back, so this hides values from a casual look rather than from anybody determined.
+
+--truncate cuts text down to at most so many characters, or a blob to so many bytes - for columns that are far bigger
+than a staging copy needs them to be.
+ */
+final class ColumnTransformer implements RowTransformer {
+
+    private enum Kind { MASK, TRUNCATE }
+
+    private final String _table;
+    private final String _column;
+    private final Kind _kind;
+    private final int _length;
+
+    private ColumnTransformer(String qualifiedColumn, Kind kind, int length) {
+        int dot = qualifiedColumn.lastIndexOf('.');
+        if(dot <= 0 || qualifiedColumn.indexOf('.') == dot) {
+            throw new IllegalArgumentException("A column has to be given as keyspace.table.column, but got '" + qualifiedColumn + "'");
+        }
+        _table = qualifiedColumn.substring(0, dot);
+        _column = qualifiedColumn.substring(dot + 1);
+        _kind = kind;
+        _length = length;
+    }
+
+    static ColumnTransformer mask(String qualifiedColumn) {
+        return new ColumnTransformer(qualifiedColumn, Kind.MASK, 0);
+    }
+
+    static ColumnTransformer truncate(String qualifiedColumn, int length) {
+        return new ColumnTransformer(qualifiedColumn, Kind.TRUNCATE, length);
+    }
+
+    @Override
+    public Table forTable(String keyspace, String table, List<String> columns, List<DataType> types) {
+        if(!_table.equals(keyspace + "." + table)) {
+            return null;
+        }
+        final int index = columns.indexOf(_column);
+        if(index < 0) {
+            //Not exported, or not there at all - either way there's nothing to do
+            return null;
+        }
+        DataType.Name type = types.get(index).getName();
+        final boolean text = type == DataType.Name.TEXT || type == DataType.Name.VARCHAR || type == DataType.Name.ASCII;
+        if(!text && type != DataType.Name.BLOB) {
+            throw new IllegalArgumentException("Only text and blob columns can be masked or truncated, but " + _table + "." + _column + " is " + types.get(index));
+        }
+        return values -> {
+            ByteBuffer value = values.get(index);
+            if(value != null) {
+                values.set(index, _kind == Kind.MASK ? mask(value, text) : truncate(value, text));
+            }
+        };
+    }
+
+    private static ByteBuffer mask(ByteBuffer value, boolean text) {
+        byte[] bytes = new byte[value.remaining()];
+        value.duplicate().get(bytes);
+        byte[] hash = Hashing.sha256().hashBytes(bytes).asBytes();
+        if(!text) {
+            return ByteBuffer.wrap(hash);
+        }
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for(byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return ByteBuffer.wrap(hex.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private ByteBuffer truncate(ByteBuffer value, boolean text) {
+        if(!text) {
+            if(value.remaining() <= _length) {
+                return value;
+            }
+            ByteBuffer cut = value.duplicate();
+            cut.limit(cut.position() + _length);
+            return cut;
+        }
+        //A UTF-8 value can't have more characters than bytes, so most of them don't need decoding at all
+        if(value.remaining() <= _length) {
+            return value;
+        }
+        String string = StandardCharsets.UTF_8.decode(value.duplicate()).toString();
+        if(string.length() <= _length) {
+            return value;
+        }
+        int end = _length;
+        if(end > 0 && Character.isHighSurrogate(string.charAt(end - 1))) {
+            end--;
+        }
+        return ByteBuffer.wrap(string.substring(0, end).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,136 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+Compressing is CPU work, and a lot of it at gzip's levels - doing it inline would mean the thread fetching and encoding
+rows spends a good part of its time compressing instead. So this channel only copies what it's given into one of a few
+spare buffers and queues it up; a dedicated thread takes them off the queue and pushes them through the compressing stream.
+The export thread only ever waits if the compressor has fallen a whole pool of buffers behind.
+
+Anything that goes wrong on the compression thread is rethrown from the next write() or close().
+ */
+class CompressingChannel implements WritableByteChannel {
+
+    private static final int BUFFER_COUNT = 4;
+    private static final byte[] END = new byte[0];
+
+    private static class Block {
+        final byte[] data;
+        int length;
+
+        Block(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    private final BlockingQueue<Block> _free = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<Block> _full = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+    private final Thread _compressor;
+    private volatile Throwable _error = null;
+    private boolean _open = true;
+
+    CompressingChannel(final OutputStream compressedOut, int bufferSize) {
+        for(int i = 0; i < BUFFER_COUNT; i++) {
+            _free.add(new Block(new byte[bufferSize]));
+        }
+        _compressor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while(true) {
+                        Block block = _full.take();
+                        if(block.data == END) {
+                            break;
+                        }
+                        compressedOut.write(block.data, 0, block.length);
+                        _free.put(block);
+                    }
+                } catch (Throwable t) {
+                    _error = t;
+                    //Unblock a writer that's waiting on a free buffer, so it gets to see the error
+                    _free.offer(new Block(new byte[0]));
+                } finally {
+                    try {
+                        compressedOut.close();
+                    } catch (IOException e) {
+                        if(_error == null) {
+                            _error = e;
+                        }
+                    }
+                }
+            }
+        }, "export-compressor");
+        _compressor.setDaemon(true);
+        _compressor.start();
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if(!_open) {
+            throw new ClosedChannelException();
+        }
+        int written = 0;
+        while(src.hasRemaining()) {
+            Block block = takeFreeBlock();
+            int length = Math.min(src.remaining(), block.data.length);
+            src.get(block.data, 0, length);
+            block.length = length;
+            try {
+                _full.put(block);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while queueing data for compression", e);
+            }
+            written += length;
+        }
+        return written;
+    }
+
+    private Block takeFreeBlock() throws IOException {
+        checkError();
+        Block block;
+        try {
+            block = _free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the compressor", e);
+        }
+        checkError();
+        return block;
+    }
+
+    private void checkError() throws IOException {
+        Throwable error = _error;
+        if(error != null) {
+            throw new IOException("Compression failed", error);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return _open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!_open) {
+            return;
+        }
+        _open = false;
+        try {
+            _full.put(new Block(END));
+            _compressor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while finishing compression", e);
+        }
+        checkError();
+    }
+}
@@ -0,0 +1,126 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+The compression formats an export can be written in (--compress). All three are the standard streaming/frame formats,
+so a dump can just as well be unpacked with gzip, lz4 or zstd on the command line.
+
+On import we don't ask - every one of these formats starts with its own magic number, so detect() just peeks at the
+first few bytes of the file and picks the matching decompressor (or none).
+ */
+enum Compression {
+    NONE(new byte[0], ""),
+    GZIP(new byte[] {(byte) 0x1f, (byte) 0x8b}, ".gz"),
+    LZ4(new byte[] {(byte) 0x04, (byte) 0x22, (byte) 0x4d, (byte) 0x18}, ".lz4"),
+    ZSTD(new byte[] {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd}, ".zst");
+
+    private static final int MAX_MAGIC_LENGTH = 4;
+
+    private final byte[] _magic;
+    private final String _extension;
+
+    Compression(byte[] magic, String extension) {
+        _magic = magic;
+        _extension = extension;
+    }
+
+    /**
+     * The usual file name suffix for the format, as the command line tools would add it ("" for NONE).
+     */
+    String extension() {
+        return _extension;
+    }
+
+    static Compression fromName(String name) {
+        for(Compression compression : values()) {
+            if(compression.name().equalsIgnoreCase(name)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression '" + name + "'");
+    }
+
+    OutputStream compress(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, 64 * 1024);
+            case LZ4:
+                return new LZ4FrameOutputStream(out);
+            case ZSTD:
+                return new ZstdOutputStream(out);
+            default:
+                return out;
+        }
+    }
+
+    InputStream decompress(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, 64 * 1024);
+            case LZ4:
+                return new LZ4FrameInputStream(in);
+            case ZSTD:
+                return new ZstdInputStream(in);
+            default:
+                return in;
+        }
+    }
+
+    /**
+     * Works out which format the stream is in from its first bytes. The stream has to support mark/reset,
+     * and is left positioned back at the start.
+     */
+    static Compression detect(InputStream in) throws IOException {
+        byte[] head = new byte[MAX_MAGIC_LENGTH];
+        in.mark(MAX_MAGIC_LENGTH);
+        int read = 0;
+        try {
+            while(read < head.length) {
+                int n = in.read(head, read, head.length - read);
+                if(n < 0) {
+                    break;
+                }
+                read += n;
+            }
+        } finally {
+            in.reset();
+        }
+        for(Compression compression : values()) {
+            if(compression != NONE && startsWith(head, read, compression._magic)) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Wraps the stream in whatever decompression its contents call for.
+     */
+    static InputStream decompressing(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+        return detect(buffered).decompress(buffered);
+    }
+
+    private static boolean startsWith(byte[] head, int length, byte[] magic) {
+        if(length < magic.length) {
+            return false;
+        }
+        for(int i = 0; i < magic.length; i++) {
+            if(head[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,250 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/*
+Cuts a stream of CQL text into statements. The import used to glue lines together with "statement += line" until one
+ended in ";" - quadratic for the long, multi-line schema statements, and wrong whenever a text value happened to have
+";" at the end of one of its lines.
+
+This reads the stream into one big char buffer and scans it once, keeping track of whether it's inside a 'string',
+a "quoted identifier", a $$string$$ (function bodies) or a comment (--, // or slash-star), so only a ";" that's really
+at the top level ends a statement. Each statement is handed out as a view onto the buffer rather than a copy, along
+with what kind of statement it is - worked out by looking at the first word in place.
+
+A statement that doesn't fit in the buffer makes the buffer grow. Text that's left over at the end of the stream
+without a closing ";" still counts as a statement, as it always did.
+
+It also keeps count of how many bytes of UTF-8 it has got through, so the import journal can record where in the file
+a statement ends, and a resumed import can seek straight there.
+ */
+final class CqlStatementSplitter {
+
+    static final int DEFAULT_BUFFER_CHARS = 1024 * 1024;
+
+    enum Kind {
+        INSERT, UPDATE, CONSISTENCY, OTHER;
+
+        boolean isWrite() {
+            return this == INSERT || this == UPDATE;
+        }
+    }
+
+    private enum State {
+        NORMAL, SINGLE_QUOTED, DOUBLE_QUOTED, DOLLAR_QUOTED, LINE_COMMENT, BLOCK_COMMENT
+    }
+
+    private final Reader _in;
+    private char[] _buffer;
+    private int _limit = 0;
+    private int _pos = 0;
+    private boolean _eof = false;
+    private int _start = -1; //Where the statement starts, once we've seen something that isn't whitespace or a comment
+    private int _counted = 0; //How much of the buffer _bytes covers
+    private long _bytes = 0;
+
+    private CharBuffer _statement = null;
+    private Kind _kind = null;
+
+    CqlStatementSplitter(Reader in) {
+        this(in, DEFAULT_BUFFER_CHARS);
+    }
+
+    CqlStatementSplitter(Reader in, int bufferChars) {
+        _in = in;
+        _buffer = new char[Math.max(bufferChars, 16)];
+    }
+
+    /**
+     * Moves on to the next statement. Returns false once the stream has run out.
+     */
+    boolean next() throws IOException {
+        _statement = null;
+        _kind = null;
+        _start = -1;
+        State state = State.NORMAL;
+        while(true) {
+            if(_pos >= _limit) {
+                fill();
+                if(_pos >= _limit) {
+                    //End of the stream - whatever is left is the last statement
+                    if(_start < 0) {
+                        return false;
+                    }
+                    int end = _limit;
+                    while(end > _start && Character.isWhitespace(_buffer[end - 1])) {
+                        end--;
+                    }
+                    found(_start, end);
+                    return true;
+                }
+            }
+            char c = _buffer[_pos];
+            switch (state) {
+                case NORMAL:
+                    if(c == ';') {
+                        _pos++;
+                        if(_start >= 0) {
+                            found(_start, _pos);
+                            return true;
+                        }
+                        continue; //An empty statement
+                    }
+                    if(Character.isWhitespace(c)) {
+                        _pos++;
+                        continue;
+                    }
+                    if((c == '-' || c == '/') && peek(1) == c) {
+                        state = State.LINE_COMMENT;
+                        _pos += 2;
+                        continue;
+                    }
+                    if(c == '/' && peek(1) == '*') {
+                        state = State.BLOCK_COMMENT;
+                        _pos += 2;
+                        continue;
+                    }
+                    if(_start < 0) {
+                        _start = _pos;
+                    }
+                    if(c == '\'') {
+                        state = State.SINGLE_QUOTED;
+                    } else if(c == '"') {
+                        state = State.DOUBLE_QUOTED;
+                    } else if(c == '$' && peek(1) == '$') {
+                        state = State.DOLLAR_QUOTED;
+                        _pos++;
+                    }
+                    _pos++;
+                    break;
+                case SINGLE_QUOTED:
+                case DOUBLE_QUOTED:
+                    char quote = state == State.SINGLE_QUOTED ? '\'' : '"';
+                    if(c == quote) {
+                        //A doubled quote is an escaped one, and doesn't end anything
+                        if(peek(1) == quote) {
+                            _pos++;
+                        } else {
+                            state = State.NORMAL;
+                        }
+                    }
+                    _pos++;
+                    break;
+                case DOLLAR_QUOTED:
+                    if(c == '$' && peek(1) == '$') {
+                        state = State.NORMAL;
+                        _pos++;
+                    }
+                    _pos++;
+                    break;
+                case LINE_COMMENT:
+                    if(c == '\n') {
+                        state = State.NORMAL;
+                    }
+                    _pos++;
+                    break;
+                case BLOCK_COMMENT:
+                    if(c == '*' && peek(1) == '/') {
+                        state = State.NORMAL;
+                        _pos++;
+                    }
+                    _pos++;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The current statement, including its ";" if it had one. This is a view onto the buffer, so it's only good until
+     * the next call to next() - take a toString() of it to keep it.
+     */
+    CharSequence statement() {
+        return _statement;
+    }
+
+    Kind kind() {
+        return _kind;
+    }
+
+    /**
+     * How many bytes into the stream (as UTF-8) the current statement ends.
+     */
+    long offset() {
+        count(_pos);
+        return _bytes;
+    }
+
+    private void found(int start, int end) {
+        _statement = CharBuffer.wrap(_buffer, start, end - start);
+        if(startsWithWord(start, end, "INSERT")) {
+            _kind = Kind.INSERT;
+        } else if(startsWithWord(start, end, "UPDATE")) {
+            _kind = Kind.UPDATE;
+        } else if(startsWithWord(start, end, "CONSISTENCY")) {
+            _kind = Kind.CONSISTENCY;
+        } else {
+            _kind = Kind.OTHER;
+        }
+    }
+
+    private boolean startsWithWord(int start, int end, String word) {
+        if(end - start < word.length()) {
+            return false;
+        }
+        for(int i = 0; i < word.length(); i++) {
+            if(Character.toUpperCase(_buffer[start + i]) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return end - start == word.length() || !Character.isLetterOrDigit(_buffer[start + word.length()]);
+    }
+
+    //The char the given distance past the current one, reading more if need be. -1 at the end of the stream.
+    private int peek(int offset) throws IOException {
+        while(_pos + offset >= _limit && !_eof) {
+            fill();
+        }
+        return _pos + offset < _limit ? _buffer[_pos + offset] : -1;
+    }
+
+    //Reads more of the stream into the buffer. Everything before the current statement (or, between statements, the
+    //current position) is no longer needed, so it's dropped to make room - and if that's not enough, the buffer grows.
+    private void fill() throws IOException {
+        if(_eof) {
+            return;
+        }
+        int keep = _start >= 0 ? _start : _pos;
+        if(keep > 0) {
+            count(keep);
+            System.arraycopy(_buffer, keep, _buffer, 0, _limit - keep);
+            _limit -= keep;
+            _pos -= keep;
+            _counted -= keep;
+            if(_start >= 0) {
+                _start -= keep;
+            }
+        }
+        if(_limit == _buffer.length) {
+            char[] bigger = new char[_buffer.length * 2];
+            System.arraycopy(_buffer, 0, bigger, 0, _limit);
+            _buffer = bigger;
+        }
+        int read = _in.read(_buffer, _limit, _buffer.length - _limit);
+        if(read < 0) {
+            _eof = true;
+        } else {
+            _limit += read;
+        }
+    }
+
+    //Adds the UTF-8 length of the buffer up to end to _bytes. The two halves of a surrogate pair make 4 bytes between them.
+    private void count(int end) {
+        for(int i = _counted; i < end; i++) {
+            char c = _buffer[i];
+            _bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+        _counted = Math.max(_counted, end);
+    }
+}
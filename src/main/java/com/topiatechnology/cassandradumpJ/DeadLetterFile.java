@@ -0,0 +1,118 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TypeCodec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+--dead-letter-file. Writes that still fail once they've been retried (or that fail in a way retrying won't fix) are
+written here, rather than bringing the whole import down. It's a CQL script, each statement with a comment saying why it
+failed, so once whatever was wrong has been put right it can be loaded with --import-file like any other dump.
+
+Writes that were prepared - rows of a binary dump, or anything imported with --prepared - are turned back into CQL by
+formatting their values as literals, and a batch is written out as the rows that were in it. Shared by every segment
+being imported.
+ */
+class DeadLetterFile implements Closeable {
+
+    private final File _file;
+    private final ProtocolVersion _protocolVersion;
+    private final CodecRegistry _codecRegistry;
+    private final Writer _out;
+    private int _count = 0;
+
+    /**
+     * Opens the file - added to if we're resuming, started over if not.
+     */
+    DeadLetterFile(File file, boolean append, ProtocolVersion protocolVersion, CodecRegistry codecRegistry) throws IOException {
+        _file = file;
+        _protocolVersion = protocolVersion;
+        _codecRegistry = codecRegistry;
+        _out = new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8);
+    }
+
+    File file() {
+        return _file;
+    }
+
+    synchronized int count() {
+        return _count;
+    }
+
+    synchronized void add(Statement statement, Throwable cause) throws IOException {
+        //A comment only lasts until the end of its line
+        _out.write("-- Failed: " + String.valueOf(cause).replaceAll("\\s+", " ") + "\n");
+        write(statement);
+        _out.flush();
+        _count++;
+    }
+
+    private void write(Statement statement) throws IOException {
+        if(statement instanceof BatchStatement) {
+            for(Statement inner : ((BatchStatement) statement).getStatements()) {
+                write(inner);
+            }
+        } else if(statement instanceof BoundStatement) {
+            _out.write(toCql((BoundStatement) statement) + ";\n");
+        } else if(statement instanceof RegularStatement) {
+            String cql = ((RegularStatement) statement).getQueryString(_codecRegistry).trim();
+            _out.write(cql.endsWith(";") ? cql + "\n" : cql + ";\n");
+        } else {
+            _out.write("-- " + statement + " can't be written as CQL\n");
+        }
+    }
+
+    //The prepared statement's CQL, with every bind marker replaced by the literal it was bound to
+    private String toCql(BoundStatement bound) {
+        String template = bound.preparedStatement().getQueryString();
+        ColumnDefinitions variables = bound.preparedStatement().getVariables();
+        StringBuilder cql = new StringBuilder(template.length() * 2);
+        int marker = 0;
+        char quote = 0;
+        for(int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if(quote != 0) {
+                //A doubled quote is an escaped one, and goes around the loop twice without changing anything
+                if(c == quote) {
+                    quote = 0;
+                }
+            } else if(c == '\'' || c == '"') {
+                quote = c;
+            } else if(c == '?' && marker < variables.size()) {
+                cql.append(literal(bound, marker++, variables));
+                continue;
+            }
+            cql.append(c);
+        }
+        return cql.toString();
+    }
+
+    private String literal(BoundStatement bound, int i, ColumnDefinitions variables) {
+        //Left unset and bound to null both come out as null
+        ByteBuffer bytes = bound.isSet(i) ? bound.getBytesUnsafe(i) : null;
+        if(bytes == null) {
+            return "null";
+        }
+        TypeCodec<Object> codec = _codecRegistry.codecFor(variables.getType(i));
+        return codec.format(codec.deserialize(bytes.duplicate(), _protocolVersion));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        _out.close();
+    }
+}
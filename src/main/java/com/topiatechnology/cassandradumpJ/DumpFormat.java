@@ -0,0 +1,24 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+
+import java.io.IOException;
+
+/*
+The layout of an export file (--format). exportData and tableToCQLFile only deal in three things - the start of the
+file, CQL statements (schema and CONSISTENCY changes), and the rows of a table - and leave it to the format to write them out.
+ */
+interface DumpFormat {
+
+    void begin(ExportSink sink) throws IOException;
+
+    /**
+     * Writes out CQL text, exactly as it would appear in a CQL dump - possibly several statements at once.
+     */
+    void statements(ExportSink sink, String cql) throws IOException;
+
+    /**
+     * Writes whatever has to come before a table's rows, and returns the encoder for them.
+     */
+    TableEncoder beginTable(ExportSink sink, String keyspace, String table, ExportColumns columns, CodecRegistry codecRegistry) throws IOException;
+}
@@ -0,0 +1,236 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+What an export or import run has been up to, as Dropwizard metrics. There's one of these per run, shared by every
+worker, segment and table, and its registry is what gets published over JMX and reported by --metrics-interval and
+--metrics-json. The driver's own metrics (Cluster.getMetrics()) are added to it under "driver.".
+
+    rows, bytes                   rows written to (or read from) the dump, and bytes of the dump written (or read - before
+                                  decompression, on import)
+    tables.<name>.rows, .bytes    the same, per table on export, and per segment on import (or the file, if there's only one)
+    tables.<name>.eta-seconds     how long the table has left at its current rate, if we know how big it is: on export
+                                  that's the partition count in system.size_estimates, which only comes out right for
+                                  tables with a row per partition; on import it's the size of the segment
+    page-fetches                  export: how long each page took to come back, from the moment it was asked for
+    writes                        import: how long each write took to come back, retries not included
+    in-flight                     import: writes sent and not yet answered
+    retries, timeouts, failures   pages or writes that were tried again, that timed out (whether or not they were retried),
+                                  and writes that failed for good
+    encoding-time, waiting-time   nanoseconds spent turning rows into the dump (or statements into requests) on one hand,
+                                  and waiting on the cluster on the other - for a page that hadn't arrived yet, or for room
+                                  under the in-flight limit
+
+Everything here is thread safe, and cheap enough to update for every row.
+ */
+class DumpMetrics {
+
+    /**
+     * The metrics of one table (or import segment).
+     */
+    static class Table {
+        final String name;
+        final Meter rows;
+        final Meter bytes;
+        private volatile long _expectedRows = -1;
+        private volatile long _expectedBytes = -1;
+
+        private Table(String name, MetricRegistry registry) {
+            this.name = name;
+            rows = registry.meter(MetricRegistry.name("tables", name, "rows"));
+            bytes = registry.meter(MetricRegistry.name("tables", name, "bytes"));
+            registry.register(MetricRegistry.name("tables", name, "eta-seconds"), (Gauge<Long>) this::etaSeconds);
+        }
+
+        void expectRows(long rows) {
+            _expectedRows = rows;
+        }
+
+        void expectBytes(long bytes) {
+            _expectedBytes = bytes;
+        }
+
+        /**
+         * Seconds to go at the rate of the last minute (or the whole run, until a minute has been averaged), or null if
+         * there's no telling.
+         */
+        Long etaSeconds() {
+            if(_expectedRows >= 0) {
+                return eta(_expectedRows, rows);
+            } else if(_expectedBytes >= 0) {
+                return eta(_expectedBytes, bytes);
+            }
+            return null;
+        }
+
+        private static Long eta(long expected, Meter done) {
+            double rate = done.getOneMinuteRate() > 0 ? done.getOneMinuteRate() : done.getMeanRate();
+            if(rate <= 0) {
+                return null;
+            }
+            //An estimate can be beaten - once it has been, all we know is that there's hardly any left
+            return (long) Math.ceil(Math.max(0, expected - done.getCount()) / rate);
+        }
+    }
+
+    static final String DRIVER_PREFIX = "driver";
+
+    private final MetricRegistry _registry = new MetricRegistry();
+    private final ConcurrentMap<String, Table> _tables = new ConcurrentHashMap<>();
+
+    final Meter rows = _registry.meter("rows");
+    final Meter bytes = _registry.meter("bytes");
+    final Timer pageFetches = _registry.timer("page-fetches");
+    final Timer writes = _registry.timer("writes");
+    final Counter inFlight = _registry.counter("in-flight");
+    final Counter retries = _registry.counter("retries");
+    final Counter timeouts = _registry.counter("timeouts");
+    final Counter failures = _registry.counter("failures");
+    final Counter encodingTime = _registry.counter("encoding-time");
+    final Counter waitingTime = _registry.counter("waiting-time");
+
+    MetricRegistry registry() {
+        return _registry;
+    }
+
+    /**
+     * Adds the driver's metrics of the cluster, if it's keeping any.
+     */
+    void include(Cluster cluster) {
+        if(cluster.getMetrics() != null) {
+            _registry.register(DRIVER_PREFIX, cluster.getMetrics().getRegistry());
+        }
+    }
+
+    Table table(String name) {
+        Table table = _tables.get(name);
+        if(table == null) {
+            //Registering the same name twice is an error, so only the one that gets into the map registers anything
+            synchronized (_tables) {
+                table = _tables.get(name);
+                if(table == null) {
+                    table = new Table(name, _registry);
+                    _tables.put(name, table);
+                }
+            }
+        }
+        return table;
+    }
+
+    Iterable<Table> tables() {
+        return _tables.values();
+    }
+
+    /**
+     * The given stream, with every byte read from it counted towards the run's bytes and the table's. Bytes skipped over
+     * aren't counted.
+     */
+    InputStream reading(InputStream in, final Table table) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if(b >= 0) {
+                    counted(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if(read > 0) {
+                    counted(read);
+                }
+                return read;
+            }
+
+            private void counted(int read) {
+                bytes.mark(read);
+                table.bytes.mark(read);
+            }
+        };
+    }
+
+    void encoded(long nanos) {
+        encodingTime.inc(nanos);
+    }
+
+    void waited(long nanos) {
+        waitingTime.inc(nanos);
+    }
+
+    void pageFetched(long nanos) {
+        pageFetches.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void wrote(long nanos) {
+        writes.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A page or write that failed with err, and is going to be tried again if retried is true.
+     */
+    void failed(Throwable err, boolean retried) {
+        if(err instanceof ReadTimeoutException || err instanceof WriteTimeoutException || err instanceof OperationTimedOutException) {
+            timeouts.inc();
+        }
+        if(retried) {
+            retries.inc();
+        } else {
+            failures.inc();
+        }
+    }
+
+    /**
+     * The number of partitions Cassandra estimates the table has, or -1 if it has no estimate.
+     *
+     * system.size_estimates is local to every node, and only covers the ranges that node owns, so every node that's up
+     * is asked in turn. Replicas can each have an estimate for the same range, which only counts once.
+     */
+    static long estimatedPartitions(Session session, String keyspace, String table) {
+        Set<String> ranges = new HashSet<>();
+        long partitions = 0;
+        for(Host host : session.getCluster().getMetadata().getAllHosts()) {
+            if(!host.isUp()) {
+                continue;
+            }
+            Statement query = new SimpleStatement("SELECT range_start, range_end, partitions_count FROM system.size_estimates"
+                    + " WHERE keyspace_name = ? AND table_name = ?", keyspace, table).setHost(host);
+            try {
+                for(Row row : session.execute(query)) {
+                    if(ranges.add(row.getString("range_start") + ":" + row.getString("range_end"))) {
+                        partitions += row.getLong("partitions_count");
+                    }
+                }
+            } catch (DriverException e) {
+                //Just no estimate from this one
+            }
+        }
+        return ranges.isEmpty() ? -1 : partitions;
+    }
+}
@@ -0,0 +1,167 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.UserType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/*
+The columns an export reads from a table, in the order they come back in each row. The encoders are built from this,
+and (when we write the SELECT ourselves) so is the SELECT, so the two can't disagree about which column is where.
+
+With --write-times, every regular column that has a single write time of its own also has its WRITETIME() and TTL()
+selected, after all the columns themselves - so the columns are still at 0 to size() - 1 in every row, and an encoder
+that doesn't know about write times just never looks at the rest. Counters, and collections and UDTs that aren't
+frozen, have a write time per element (or none) and can't be selected that way.
+
+A table's columns can be narrowed down (--columns, --exclude-columns), so what isn't wanted is never even selected. The
+primary key is always kept, since a row can't be written back without it.
+ */
+final class ExportColumns {
+
+    final List<String> names;
+    final List<DataType> types;
+    private final boolean[] _primaryKey;
+    private final int[] _writeTimeIndex; //null without write times
+
+    private ExportColumns(List<String> names, List<DataType> types, boolean[] primaryKey, int[] writeTimeIndex) {
+        this.names = Collections.unmodifiableList(names);
+        this.types = Collections.unmodifiableList(types);
+        _primaryKey = primaryKey;
+        _writeTimeIndex = writeTimeIndex;
+    }
+
+    /**
+     * Every column of the table, in TableMetadata order.
+     */
+    static ExportColumns of(TableMetadata tableval) {
+        return of(tableval, false);
+    }
+
+    /**
+     * Every column of the table, in TableMetadata order, along with the write times of those that have one if asked.
+     */
+    static ExportColumns of(TableMetadata tableval, boolean writeTimes) {
+        return of(tableval, writeTimes, null, null);
+    }
+
+    /**
+     * The columns of the table that are included (all of them if null) and not excluded (none if null), in TableMetadata
+     * order, along with the write times of those that have one if asked. The primary key is always included, and can't
+     * be excluded.
+     */
+    static ExportColumns of(TableMetadata tableval, boolean writeTimes, Set<String> included, Set<String> excluded) {
+        String table = tableval.getKeyspace().getName() + "." + tableval.getName();
+        for(Set<String> named : Arrays.asList(included, excluded)) {
+            for(String name : named == null ? Collections.<String>emptySet() : named) {
+                if(tableval.getColumn(Metadata.quote(name)) == null) {
+                    throw new IllegalArgumentException(table + " has no column '" + name + "'");
+                }
+            }
+        }
+        List<ColumnMetadata> columns = new ArrayList<>();
+        for(ColumnMetadata column : tableval.getColumns()) {
+            boolean key = tableval.getPrimaryKey().contains(column);
+            if(key && excluded != null && excluded.contains(column.getName())) {
+                throw new IllegalArgumentException("Column '" + column.getName() + "' of " + table + " is part of its primary key, and can't be excluded");
+            }
+            if(key || ((included == null || included.contains(column.getName())) && (excluded == null || !excluded.contains(column.getName())))) {
+                columns.add(column);
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        List<DataType> types = new ArrayList<>();
+        boolean[] primaryKey = new boolean[columns.size()];
+        int[] writeTimeIndex = writeTimes ? new int[columns.size()] : null;
+        int nextIndex = columns.size();
+        for(int i = 0; i < columns.size(); i++) {
+            ColumnMetadata column = columns.get(i);
+            names.add(column.getName());
+            types.add(column.getType());
+            primaryKey[i] = tableval.getPrimaryKey().contains(column);
+            if(writeTimes) {
+                writeTimeIndex[i] = primaryKey[i] || !hasWriteTime(column.getType()) ? -1 : nextIndex;
+                nextIndex += writeTimeIndex[i] < 0 ? 0 : 2;
+            }
+        }
+        return new ExportColumns(names, types, primaryKey, writeTimeIndex);
+    }
+
+    /**
+     * Whatever columns a query actually returned - used for --filter, where we don't control the SELECT.
+     */
+    static ExportColumns of(ColumnDefinitions columnDefinitions) {
+        List<String> names = new ArrayList<>();
+        List<DataType> types = new ArrayList<>();
+        for(ColumnDefinitions.Definition columnDefinition : columnDefinitions) {
+            names.add(columnDefinition.getName());
+            types.add(columnDefinition.getType());
+        }
+        return of(names, types);
+    }
+
+    /**
+     * Just these columns, with nothing known about their primary key.
+     */
+    static ExportColumns of(List<String> names, List<DataType> types) {
+        return new ExportColumns(new ArrayList<>(names), new ArrayList<>(types), new boolean[names.size()], null);
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    boolean hasWriteTimes() {
+        return _writeTimeIndex != null;
+    }
+
+    /**
+     * Where the column's WRITETIME() is in each row, with its TTL() right after it, or -1 if it doesn't have one.
+     */
+    int writeTimeIndex(int column) {
+        return _writeTimeIndex == null ? -1 : _writeTimeIndex[column];
+    }
+
+    /**
+     * Whether the column is part of the primary key - only known when the columns came from the table.
+     */
+    boolean isPrimaryKey(int column) {
+        return _primaryKey[column];
+    }
+
+    /**
+     * The quoted, comma-separated column names, ready to go in a SELECT.
+     */
+    String columnList() {
+        StringBuilder columnList = new StringBuilder();
+        for(String name : names) {
+            if(columnList.length() > 0) {
+                columnList.append(", ");
+            }
+            columnList.append(Metadata.quote(name));
+        }
+        for(int i = 0; i < names.size(); i++) {
+            if(writeTimeIndex(i) >= 0) {
+                String quoted = Metadata.quote(names.get(i));
+                columnList.append(", WRITETIME(").append(quoted).append("), TTL(").append(quoted).append(")");
+            }
+        }
+        return columnList.toString();
+    }
+
+    private static boolean hasWriteTime(DataType type) {
+        if(type.getName() == DataType.Name.COUNTER) {
+            return false;
+        }
+        return type.isFrozen() || !(type.isCollection() || type instanceof UserType);
+    }
+}
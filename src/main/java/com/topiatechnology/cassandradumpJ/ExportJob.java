@@ -0,0 +1,360 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.Session;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+An export, for running from inside another program: everything --export-file does, against a Session the caller
+already has open. The session is only borrowed - it's left open afterwards, so one warm Cluster can serve any number
+of jobs, one after another or at the same time.
+
+    ExportJob.builder(session)
+            .keyspace("shop")
+            .workers(8)
+            .toFile(new File("shop.cql"))
+            .build()
+            .run();
+
+The rows can go to a RowSink instead of a file, with to(). The builder's options are the command line's, with the same
+defaults; see the README for what they do.
+
+A job can be run more than once, but not by two threads at once. Nothing is printed unless log() is given somewhere
+to print it, and nothing is published over JMX - metrics() has the job's metrics for the caller to report as it likes.
+ */
+public final class ExportJob {
+
+    private final CassandraDumpJ _dump;
+
+    private ExportJob(CassandraDumpJ dump) {
+        _dump = dump;
+    }
+
+    public static Builder builder(Session session) {
+        return new Builder(session);
+    }
+
+    /**
+     * Runs the export, returning once every row has been written.
+     */
+    public void run() throws IOException, InterruptedException {
+        _dump.exportData();
+    }
+
+    /**
+     * The metrics of every run of the job so far.
+     */
+    public MetricRegistry metrics() {
+        return _dump.metrics().registry();
+    }
+
+    public static final class Builder {
+
+        private CassandraDumpJ _dump;
+        private final List<String> _keyspaces = new ArrayList<>();
+        private final List<String> _tables = new ArrayList<>();
+        private final List<String> _filters = new ArrayList<>();
+        private final List<String> _excluded = new ArrayList<>();
+
+        private Builder(Session session) {
+            _dump = new CassandraDumpJ(session);
+        }
+
+        /**
+         * Exports a keyspace, schema and all. Can be called more than once.
+         */
+        public Builder keyspace(String keyspace) {
+            _keyspaces.add(keyspace);
+            return this;
+        }
+
+        /**
+         * Exports a table. Can be called more than once, but not along with keyspace() or filter().
+         */
+        public Builder table(String keyspace, String table) {
+            _tables.add(keyspace + "." + table);
+            return this;
+        }
+
+        /**
+         * Exports the rows a SELECT would, given everything after its "FROM" - "ks.table WHERE ...". Can be called more
+         * than once, but not along with keyspace() or table().
+         */
+        public Builder filter(String filter) {
+            _filters.add(filter);
+            return this;
+        }
+
+        /**
+         * Leaves a table of the exported keyspaces out.
+         */
+        public Builder excludeTable(String table) {
+            _excluded.add(table);
+            return this;
+        }
+
+        /**
+         * Whether to export the schema (true if not set).
+         */
+        public Builder schema(boolean schema) {
+            _dump().NO_CREATE = !schema;
+            return this;
+        }
+
+        /**
+         * Whether to export the rows (true if not set).
+         */
+        public Builder rows(boolean rows) {
+            _dump().NO_INSERT = !rows;
+            return this;
+        }
+
+        public Builder limit(int rows) {
+            _dump().LIMIT = atLeast("limit", rows, 1);
+            return this;
+        }
+
+        /**
+         * Exports only these columns of a table, along with its primary key. The others aren't fetched at all.
+         */
+        public Builder columns(String keyspace, String table, String... columns) {
+            _dump().INCLUDE_COLUMNS.computeIfAbsent(keyspace + "." + table, t -> new HashSet<>()).addAll(Arrays.asList(columns));
+            return this;
+        }
+
+        /**
+         * Leaves these columns of a table out of the export - they aren't fetched at all.
+         */
+        public Builder excludeColumns(String keyspace, String table, String... columns) {
+            _dump().EXCLUDE_COLUMNS.computeIfAbsent(keyspace + "." + table, t -> new HashSet<>()).addAll(Arrays.asList(columns));
+            return this;
+        }
+
+        /**
+         * Runs every exported row through the transformer, after those added before it.
+         */
+        public Builder transform(RowTransformer transformer) {
+            _dump().TRANSFORMERS.add(transformer);
+            return this;
+        }
+
+        /**
+         * Replaces every value of a text or blob column with its SHA-256, as --mask does.
+         */
+        public Builder mask(String keyspace, String table, String column) {
+            return transform(ColumnTransformer.mask(keyspace + "." + table + "." + column));
+        }
+
+        /**
+         * Cuts every value of a text or blob column down to at most so many characters or bytes, as --truncate does.
+         */
+        public Builder truncate(String keyspace, String table, String column, int length) {
+            return transform(ColumnTransformer.truncate(keyspace + "." + table + "." + column, atLeast("truncate", length, 1)));
+        }
+
+        /**
+         * Exports about this fraction of each table, read from a random choice of its token ranges - the same choice
+         * every time.
+         */
+        public Builder sample(double fraction) {
+            if(!(fraction > 0 && fraction <= 1)) {
+                throw new IllegalArgumentException("sample must be greater than 0 and at most 1, but got " + fraction);
+            }
+            _dump().SAMPLE = fraction;
+            return this;
+        }
+
+        /**
+         * Exports only the rows with a token in (start, end], in the cluster partitioner's tokens.
+         */
+        public Builder tokenRange(String start, String end) {
+            _dump().TOKEN_RANGE = start + ":" + end;
+            return this;
+        }
+
+        public Builder fetchSize(int rows) {
+            _dump().FETCH_SIZE = atLeast("fetchSize", rows, 1);
+            return this;
+        }
+
+        /**
+         * More than 1 scans token ranges in parallel - see --export-workers.
+         */
+        public Builder workers(int workers) {
+            _dump().EXPORT_WORKERS = atLeast("workers", workers, 1);
+            return this;
+        }
+
+        public Builder splitsPerRange(int splits) {
+            _dump().SPLITS_PER_RANGE = atLeast("splitsPerRange", splits, 1);
+            return this;
+        }
+
+        /**
+         * Writes the binary format rather than CQL.
+         */
+        public Builder binary(boolean binary) {
+            _dump().BINARY_FORMAT = binary;
+            return this;
+        }
+
+        /**
+         * Exports every cell's write time and TTL, so an import writes them back as they were - see --write-times.
+         */
+        public Builder writeTimes(boolean writeTimes) {
+            _dump().WRITE_TIMES = writeTimes;
+            return this;
+        }
+
+        /**
+         * Exports only the rows written since the last export recorded in the manifest, and records this one - see
+         * --incremental.
+         */
+        public Builder incremental(File manifest) {
+            _dump().INCREMENTAL = manifest;
+            return this;
+        }
+
+        /**
+         * gzip, lz4, zstd or none.
+         */
+        public Builder compress(String compression) {
+            _dump().COMPRESS = Compression.fromName(compression);
+            return this;
+        }
+
+        public Builder bufferSize(int bytes) {
+            _dump().EXPORT_BUFFER_SIZE = atLeast("bufferSize", bytes, 1024);
+            return this;
+        }
+
+        /**
+         * Exports into a directory of segments - see --segmented.
+         */
+        public Builder segmented(boolean segmented) {
+            _dump().SEGMENTED = segmented;
+            return this;
+        }
+
+        public Builder tableWorkers(int workers) {
+            _dump().TABLE_WORKERS = atLeast("tableWorkers", workers, 1);
+            return this;
+        }
+
+        /**
+         * Carries on a segmented export that didn't finish.
+         */
+        public Builder resume(boolean resume) {
+            _dump().RESUME = resume;
+            return this;
+        }
+
+        public Builder maxRowsPerSecond(int rows) {
+            _dump().MAX_ROWS_PER_SEC = atLeast("maxRowsPerSecond", rows, 1);
+            return this;
+        }
+
+        public Builder maxMegabytesPerSecond(double megabytes) {
+            if(!(megabytes > 0)) {
+                throw new IllegalArgumentException("maxMegabytesPerSecond must be greater than 0, but got " + megabytes);
+            }
+            _dump().MAX_MB_PER_SEC = megabytes;
+            return this;
+        }
+
+        public Builder adaptive(boolean adaptive) {
+            _dump().ADAPTIVE = adaptive;
+            return this;
+        }
+
+        /**
+         * Where progress goes - what the command line prints to stdout.
+         */
+        public Builder log(Consumer<String> log) {
+            _dump().log(log);
+            return this;
+        }
+
+        /**
+         * Writes the export to a file, or with segmented(true), into a directory. A file of "-" is stdout, and a named
+         * pipe is written like any other file.
+         */
+        public Builder toFile(File file) {
+            _dump().EXPORT_FILE = file;
+            return this;
+        }
+
+        /**
+         * Streams the rows of every exported table to the sink, on the thread that calls run(). The schema isn't
+         * exported.
+         */
+        public Builder to(RowSink sink) {
+            _dump().ROW_SINK = sink;
+            return this;
+        }
+
+        public ExportJob build() {
+            CassandraDumpJ dump = _dump();
+            if((dump.EXPORT_FILE == null) == (dump.ROW_SINK == null)) {
+                throw new IllegalStateException("An export needs either toFile() or to()");
+            }
+            if((_keyspaces.isEmpty() ? 0 : 1) + (_tables.isEmpty() ? 0 : 1) + (_filters.isEmpty() ? 0 : 1) > 1) {
+                throw new IllegalStateException("keyspace(), table() and filter() can't be combined");
+            }
+            if(dump.ROW_SINK != null && (dump.SEGMENTED || dump.BINARY_FORMAT || dump.COMPRESS != Compression.NONE)) {
+                throw new IllegalStateException("segmented(), binary() and compress() only apply to an export file");
+            }
+            if(dump.WRITE_TIMES && (dump.BINARY_FORMAT || dump.ROW_SINK != null)) {
+                throw new IllegalStateException("writeTimes() only works with a CQL export file");
+            }
+            //A stream can only be gone through once, front to back
+            if(dump.EXPORT_FILE != null && StreamFiles.isStream(dump.EXPORT_FILE) && (dump.SEGMENTED || dump.INCREMENTAL != null)) {
+                throw new IllegalStateException("segmented() and incremental() don't work with a file that's - or a pipe");
+            }
+            if(dump.SEGMENTED && dump.EXPORT_FILE.isFile()) {
+                throw new IllegalStateException("A segmented export needs a directory, but " + dump.EXPORT_FILE + " is a file");
+            }
+            if(dump.INCREMENTAL != null && (dump.EXPORT_FILE == null || dump.RESUME)) {
+                throw new IllegalStateException("incremental() needs toFile(), and can't be combined with resume()");
+            }
+            //A watermark from part of a table would have every later delta skip the rows that weren't read
+            if(dump.INCREMENTAL != null && (!_filters.isEmpty() || dump.LIMIT > 0)) {
+                throw new IllegalStateException("incremental() can't be combined with filter() or limit()");
+            }
+            if((dump.SAMPLE < 1 || dump.TOKEN_RANGE != null) && (!_filters.isEmpty() || dump.LIMIT > 0 || dump.INCREMENTAL != null)) {
+                throw new IllegalStateException("sample() and tokenRange() can't be combined with filter(), limit() or incremental()");
+            }
+            if(dump.RESUME && !dump.SEGMENTED) {
+                throw new IllegalStateException("resume() only works with segmented()");
+            }
+            dump.KEYSPACE = _keyspaces.toArray(new String[0]);
+            dump.CF = _tables.toArray(new String[0]);
+            dump.FILTER = _filters.toArray(new String[0]);
+            dump.EXCLUDE_CF = _excluded.toArray(new String[0]);
+            //The job has the settings to itself from here on
+            _dump = null;
+            return new ExportJob(dump);
+        }
+
+        private CassandraDumpJ _dump() {
+            if(_dump == null) {
+                throw new IllegalStateException("A builder only builds one job");
+            }
+            return _dump;
+        }
+
+        static int atLeast(String name, int value, int min) {
+            if(value < min) {
+                throw new IllegalArgumentException(name + " must be at least " + min + ", but got " + value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.PagingState;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+The progress journal of a segmented export, which is what --resume works from. It's plain text, appended to as the
+export goes, one line per event:
+    cassandradumpJ-journal 1
+    page 0001-ks.t.cql 1048576 3/256 <paging state>    range 3 of 256 is in the segment up to <paging state>, and the
+                                                       segment is 1048576 bytes long at that point
+    range 0001-ks.t.cql 2097152 3/256                  range 3 of 256 is all in, by 2097152 bytes
+    done 0001-ks.t.cql                                 the segment is complete
+    resume 0001-ks.t.cql 1048576                       the segment was cut back to 1048576 bytes, so forget any
+                                                       checkpoints past that (-1 if it was started over)
+A table exported with a single query counts as one range.
+
+Checkpoints are only ever taken between pages, and rows are handed to a segment a whole page at a time, so at every
+checkpoint each range of a segment is either finished, or in up to some page and not a row further. Replaying a
+segment's lines up to any one of them gives the exact state of the segment at that length - so resuming means cutting
+the segment back to the last checkpoint the file actually holds (whatever was still buffered when the export died is
+lost), and carrying on every unfinished range from its PagingState.
+ */
+class ExportJournal implements Closeable {
+
+    static final String FILE_NAME = "progress.journal";
+    static final String HEADER = "cassandradumpJ-journal 1";
+
+    private static class Line {
+        final long offset;
+        final int range;
+        final int rangeCount;
+        final String pagingState; //Null once the range is finished
+
+        Line(long offset, int range, int rangeCount, String pagingState) {
+            this.offset = offset;
+            this.range = range;
+            this.rangeCount = rangeCount;
+            this.pagingState = pagingState;
+        }
+    }
+
+    /**
+     * Where a segment can be picked up again from: its length, and where each of its ranges had got to.
+     */
+    static class Progress {
+        final long offset;
+        final int rangeCount;
+        final Map<Integer, PagingState> resumeFrom = new HashMap<>();
+        final Set<Integer> finished = new HashSet<>();
+
+        Progress(long offset, int rangeCount) {
+            this.offset = offset;
+            this.rangeCount = rangeCount;
+        }
+    }
+
+    /**
+     * The checkpoints of one segment, for whoever is exporting into it. Only the thread writing the segment may use it.
+     */
+    class Checkpoints {
+        private final String _segment;
+        private final ChannelExportSink _sink;
+        private final Progress _resumed;
+        private int _rangeCount = -1;
+
+        private Checkpoints(String segment, ChannelExportSink sink, Progress resumed) {
+            _segment = segment;
+            _sink = sink;
+            _resumed = resumed;
+        }
+
+        boolean resuming() {
+            return _resumed != null;
+        }
+
+        /**
+         * Where the table's header (DumpFormat.beginTable()) should go - nowhere, if we're resuming and it's already in.
+         */
+        ExportSink headerSink() {
+            return _resumed != null ? DISCARD : _sink;
+        }
+
+        /**
+         * Has to be called before the first range is exported, with the number of ranges the table is cut into.
+         */
+        void begin(int rangeCount) throws IOException {
+            if(_resumed != null && _resumed.rangeCount != rangeCount) {
+                throw new IOException("Can't resume " + _segment + ": it was being exported in " + _resumed.rangeCount
+                        + " token ranges, but now there are " + rangeCount + " - export it again without --resume");
+            }
+            _rangeCount = rangeCount;
+        }
+
+        boolean isFinished(int range) {
+            return _resumed != null && _resumed.finished.contains(range);
+        }
+
+        /**
+         * Where the range should carry on from, or null to start it from the beginning.
+         */
+        PagingState resumeFrom(int range) {
+            return _resumed == null ? null : _resumed.resumeFrom.get(range);
+        }
+
+        /**
+         * Records that every row of the range before next has been written to the segment. A null next means the range
+         * is finished.
+         */
+        void pageWritten(int range, PagingState next) throws IOException {
+            append((next == null ? "range " : "page ") + _segment + " " + _sink.position() + " " + range + "/" + _rangeCount
+                    + (next == null ? "" : " " + next));
+        }
+    }
+
+    private static final ExportSink DISCARD = new ExportSink() {
+        @Override
+        public void write(CharSequence text) {
+        }
+
+        @Override
+        public void write(ByteBuffer bytes) {
+            bytes.position(bytes.limit());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final Map<String, List<Line>> _lines = new HashMap<>();
+    private final Set<String> _done = new HashSet<>();
+    private final Writer _out;
+
+    private ExportJournal(File directory, boolean resume) throws IOException {
+        File file = new File(directory, FILE_NAME);
+        boolean carryOn = false;
+        if(resume && file.isFile()) {
+            dropPartialLine(file);
+            carryOn = file.length() > 0;
+        }
+        if(carryOn) {
+            read(file);
+        }
+        _out = new OutputStreamWriter(new FileOutputStream(file, carryOn), StandardCharsets.UTF_8);
+        if(!carryOn) {
+            append(HEADER);
+        }
+    }
+
+    /**
+     * Opens the journal of the export in the directory. Unless we're resuming, any journal that's already there is
+     * started over.
+     */
+    static ExportJournal open(File directory, boolean resume) throws IOException {
+        return new ExportJournal(directory, resume);
+    }
+
+    boolean isDone(String segment) {
+        return _done.contains(segment);
+    }
+
+    /**
+     * The last checkpoint of the segment at or before the given length, or null if there isn't one.
+     */
+    Progress progress(String segment, long maxOffset) {
+        List<Line> lines = _lines.get(segment);
+        if(lines == null) {
+            return null;
+        }
+        int last = -1;
+        for(int i = 0; i < lines.size() && lines.get(i).offset <= maxOffset; i++) {
+            last = i;
+        }
+        if(last < 0) {
+            return null;
+        }
+        Progress progress = new Progress(lines.get(last).offset, lines.get(last).rangeCount);
+        for(int i = 0; i <= last; i++) {
+            Line line = lines.get(i);
+            if(line.pagingState == null) {
+                progress.finished.add(line.range);
+                progress.resumeFrom.remove(line.range);
+            } else {
+                progress.resumeFrom.put(line.range, PagingState.fromString(line.pagingState));
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * The longest a segment has been checkpointed at - there's no use recovering any more of it than this.
+     */
+    long lastOffset(String segment) {
+        List<Line> lines = _lines.get(segment);
+        return lines == null || lines.isEmpty() ? -1 : lines.get(lines.size() - 1).offset;
+    }
+
+    Checkpoints checkpoints(String segment, ChannelExportSink sink, Progress resumed) {
+        return new Checkpoints(segment, sink, resumed);
+    }
+
+    /**
+     * Records that the segment has been cut back to where progress says (or started over, if progress is null).
+     */
+    void resumed(String segment, Progress progress) throws IOException {
+        append("resume " + segment + " " + (progress == null ? -1 : progress.offset));
+    }
+
+    void segmentDone(String segment) throws IOException {
+        append("done " + segment);
+    }
+
+    //Every line goes straight out to the file, so it survives the process dying - the segment's own buffers don't,
+    //which is why a checkpoint might be ahead of the segment it belongs to
+    private synchronized void append(String line) throws IOException {
+        _out.write(line);
+        _out.write("\n");
+        _out.flush();
+    }
+
+    //If the export died halfway through writing a line, that line is cut off - there's nothing after it to lose
+    private static void dropPartialLine(File file) throws IOException {
+        try (RandomAccessFile journal = new RandomAccessFile(file, "rw")) {
+            long end = journal.length();
+            while(end > 0) {
+                journal.seek(end - 1);
+                if(journal.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            journal.setLength(end);
+        }
+    }
+
+    private void read(File file) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if(!HEADER.equals(in.readLine())) {
+                throw new IOException("Not an export journal: " + file);
+            }
+            String text = in.readLine();
+            while(text != null) {
+                String[] parts = text.split(" ");
+                if(parts.length == 2 && parts[0].equals("done")) {
+                    _done.add(parts[1]);
+                } else if(parts.length == 3 && parts[0].equals("resume")) {
+                    long offset = Long.parseLong(parts[2]);
+                    List<Line> lines = _lines.get(parts[1]);
+                    while(lines != null && !lines.isEmpty() && lines.get(lines.size() - 1).offset > offset) {
+                        lines.remove(lines.size() - 1);
+                    }
+                    _done.remove(parts[1]);
+                } else if((parts.length == 5 && parts[0].equals("page")) || (parts.length == 4 && parts[0].equals("range"))) {
+                    String[] range = parts[3].split("/");
+                    List<Line> lines = _lines.get(parts[1]);
+                    if(lines == null) {
+                        lines = new ArrayList<>();
+                        _lines.put(parts[1], lines);
+                    }
+                    lines.add(new Line(Long.parseLong(parts[2]), Integer.parseInt(range[0]), Integer.parseInt(range[1]),
+                            parts.length == 5 ? parts[4] : null));
+                } else {
+                    throw new IOException("Bad line in export journal: " + text);
+                }
+                text = in.readLine();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _out.close();
+    }
+}
@@ -0,0 +1,27 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+Where the contents of an export end up. exportData and tableToCQLFile only ever append - text for the CQL format, raw bytes
+for the binary one - so that's all this asks for. How it gets encoded, buffered and onto the disk (or anywhere else) is up to the implementation.
+ */
+interface ExportSink extends Closeable {
+
+    /**
+     * Appends the text. The sink doesn't hold on to it, so callers are free to reuse a StringBuilder once this returns.
+     */
+    void write(CharSequence text) throws IOException;
+
+    /**
+     * Appends the remaining bytes of the buffer as they are, consuming them.
+     */
+    void write(ByteBuffer bytes) throws IOException;
+
+    /**
+     * Pushes anything buffered out to the underlying destination.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,191 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.Session;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/*
+An import, for running from inside another program: everything --import-file does, against a Session the caller
+already has open and leaves open, the same as an ExportJob.
+
+    ImportJob.builder(session)
+            .concurrency(200)
+            .fromFile(new File("shop.cql"))
+            .build()
+            .run();
+
+The rows can come from a RowSource instead of a file, with from(). The options are the command line's, with the same
+defaults; see the README for what they do.
+ */
+public final class ImportJob {
+
+    private final CassandraDumpJ _dump;
+
+    private ImportJob(CassandraDumpJ dump) {
+        _dump = dump;
+    }
+
+    public static Builder builder(Session session) {
+        return new Builder(session);
+    }
+
+    /**
+     * Runs the import, returning once every statement has been written - or has failed into the dead letter file.
+     */
+    public void run() throws IOException, InterruptedException {
+        _dump.importData();
+    }
+
+    /**
+     * The metrics of every run of the job so far.
+     */
+    public MetricRegistry metrics() {
+        return _dump.metrics().registry();
+    }
+
+    public static final class Builder {
+
+        private CassandraDumpJ _dump;
+
+        private Builder(Session session) {
+            _dump = new CassandraDumpJ(session);
+        }
+
+        /**
+         * Writes one statement at a time, waiting for each one.
+         */
+        public Builder sync(boolean sync) {
+            _dump().SYNC = sync;
+            return this;
+        }
+
+        /**
+         * Prepares the INSERTs of a CQL dump rather than sending them as they are.
+         */
+        public Builder prepared(boolean prepared) {
+            _dump().PREPARED = prepared;
+            return this;
+        }
+
+        public Builder concurrency(int statements) {
+            _dump().CONCURRENCY = ExportJob.Builder.atLeast("concurrency", statements, 1);
+            return this;
+        }
+
+        public Builder replicaConcurrency(int statements) {
+            _dump().REPLICA_CONCURRENCY = ExportJob.Builder.atLeast("replicaConcurrency", statements, 1);
+            return this;
+        }
+
+        /**
+         * How many segments of a segmented export are imported at once.
+         */
+        public Builder importWorkers(int workers) {
+            _dump().IMPORT_WORKERS = ExportJob.Builder.atLeast("importWorkers", workers, 1);
+            return this;
+        }
+
+        public Builder batchRows(int rows) {
+            _dump().BATCH_ROWS = ExportJob.Builder.atLeast("batchRows", rows, 1);
+            return this;
+        }
+
+        public Builder batchBytes(int bytes) {
+            _dump().BATCH_BYTES = ExportJob.Builder.atLeast("batchBytes", bytes, 1);
+            return this;
+        }
+
+        public Builder maxRowsPerSecond(int rows) {
+            _dump().MAX_ROWS_PER_SEC = ExportJob.Builder.atLeast("maxRowsPerSecond", rows, 1);
+            return this;
+        }
+
+        public Builder maxMegabytesPerSecond(double megabytes) {
+            if(!(megabytes > 0)) {
+                throw new IllegalArgumentException("maxMegabytesPerSecond must be greater than 0, but got " + megabytes);
+            }
+            _dump().MAX_MB_PER_SEC = megabytes;
+            return this;
+        }
+
+        public Builder adaptive(boolean adaptive) {
+            _dump().ADAPTIVE = adaptive;
+            return this;
+        }
+
+        /**
+         * Keeps a journal of how far the import has got, and carries on from it if an earlier import of the file with
+         * resume() didn't finish.
+         */
+        public Builder resume(boolean resume) {
+            _dump().RESUME = resume;
+            return this;
+        }
+
+        /**
+         * Where statements that fail for good are written, rather than failing the import.
+         */
+        public Builder deadLetterFile(File file) {
+            _dump().DEAD_LETTER_FILE = file;
+            return this;
+        }
+
+        /**
+         * Where progress goes - what the command line prints to stdout.
+         */
+        public Builder log(Consumer<String> log) {
+            _dump().log(log);
+            return this;
+        }
+
+        /**
+         * Imports a dump file, a segmented export's directory or manifest, or every export of an incremental manifest. A
+         * file of "-" is stdin, and a named pipe is read like any other file.
+         */
+        public Builder fromFile(File file) {
+            _dump().IMPORT_FILE = file;
+            return this;
+        }
+
+        /**
+         * Imports the rows the source streams, as it streams them. Its tables have to exist already.
+         */
+        public Builder from(RowSource source) {
+            _dump().ROW_SOURCE = source;
+            return this;
+        }
+
+        public ImportJob build() {
+            CassandraDumpJ dump = _dump();
+            if((dump.IMPORT_FILE == null) == (dump.ROW_SOURCE == null)) {
+                throw new IllegalStateException("An import needs either fromFile() or from()");
+            }
+            if(dump.IMPORT_FILE != null && !StreamFiles.isStandard(dump.IMPORT_FILE) && !dump.IMPORT_FILE.exists()) {
+                throw new IllegalStateException(dump.IMPORT_FILE + " doesn't exist");
+            }
+            if(dump.IMPORT_FILE != null && dump.IMPORT_FILE.isDirectory() && !new File(dump.IMPORT_FILE, SegmentManifest.FILE_NAME).isFile()) {
+                throw new IllegalStateException(dump.IMPORT_FILE + " isn't a segmented export - it has no " + SegmentManifest.FILE_NAME);
+            }
+            if(dump.RESUME && dump.ROW_SOURCE != null) {
+                throw new IllegalStateException("resume() only works with fromFile()");
+            }
+            //A stream can only be gone through once, front to back
+            if(dump.RESUME && StreamFiles.isStream(dump.IMPORT_FILE)) {
+                throw new IllegalStateException("resume() doesn't work with a file that's - or a pipe");
+            }
+            //The job has the settings to itself from here on
+            _dump = null;
+            return new ImportJob(dump);
+        }
+
+        private CassandraDumpJ _dump() {
+            if(_dump == null) {
+                throw new IllegalStateException("A builder only builds one job");
+            }
+            return _dump;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.ConsistencyLevel;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*
+The progress journal of an import, which is what --resume works from - import.journal in the directory of a segmented
+export, or <file>.import.journal next to a single import file. Only an import run with --resume keeps one, and it's
+deleted once the import has finished. Like the export journal it's plain text, appended to as
+the import goes:
+    cassandradumpJ-import-journal 1
+    at 1048576 QUORUM 0001-ks.t.cql     every statement of the segment before byte 1048576 has been written (or
+                                        dead-lettered), and the CONSISTENCY in effect at that point was QUORUM
+    done 0001-ks.t.cql                  the segment has been imported
+Offsets are into the segment's contents - for a compressed segment, after it's been decompressed. Segment names go
+last on the line, so a single import file's name can have spaces in it.
+
+A checkpoint is only ever an offset that everything before it has been acknowledged up to, however far ahead of it the
+writes in flight have got - so resuming from it never leaves a gap, but whatever was written after it gets written
+again. That's harmless for INSERTs; counter updates in that stretch are applied twice.
+ */
+class ImportJournal implements Closeable {
+
+    static final String FILE_NAME = "import.journal";
+    static final String HEADER = "cassandradumpJ-import-journal 1";
+
+    /**
+     * How far a segment has got.
+     */
+    static class Checkpoint {
+        final long offset;
+        final ConsistencyLevel consistency;
+
+        Checkpoint(long offset, ConsistencyLevel consistency) {
+            this.offset = offset;
+            this.consistency = consistency;
+        }
+    }
+
+    private final Map<String, Checkpoint> _checkpoints = new HashMap<>();
+    private final Set<String> _done = new HashSet<>();
+    private final Writer _out;
+
+    private ImportJournal(File file, boolean resume) throws IOException {
+        boolean carryOn = false;
+        if(resume && file.isFile()) {
+            dropPartialLine(file);
+            carryOn = file.length() > 0;
+        }
+        if(carryOn) {
+            read(file);
+        }
+        _out = new OutputStreamWriter(new FileOutputStream(file, carryOn), StandardCharsets.UTF_8);
+        if(!carryOn) {
+            append(HEADER);
+        }
+    }
+
+    /**
+     * Opens the journal of an import from the given directory of a segmented export, or from the given file. Unless
+     * we're resuming, any journal that's already there is started over.
+     */
+    static ImportJournal open(File importFrom, boolean resume) throws IOException {
+        return new ImportJournal(journalFile(importFrom), resume);
+    }
+
+    static File journalFile(File importFrom) {
+        return importFrom.isDirectory() ? new File(importFrom, FILE_NAME) : new File(importFrom.getPath() + ".import.journal");
+    }
+
+    boolean isDone(String segment) {
+        return _done.contains(segment);
+    }
+
+    /**
+     * Where the segment should carry on from, or null to start it from the beginning.
+     */
+    Checkpoint resumeFrom(String segment) {
+        return _checkpoints.get(segment);
+    }
+
+    void committed(String segment, Checkpoint checkpoint) throws IOException {
+        append("at " + checkpoint.offset + " " + checkpoint.consistency + " " + segment);
+    }
+
+    void segmentDone(String segment) throws IOException {
+        append("done " + segment);
+    }
+
+    //Shared by every segment being imported, and each line goes straight out to the file so it survives the process dying
+    private synchronized void append(String line) throws IOException {
+        _out.write(line);
+        _out.write("\n");
+        _out.flush();
+    }
+
+    private static void dropPartialLine(File file) throws IOException {
+        try (RandomAccessFile journal = new RandomAccessFile(file, "rw")) {
+            long end = journal.length();
+            while(end > 0) {
+                journal.seek(end - 1);
+                if(journal.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            journal.setLength(end);
+        }
+    }
+
+    private void read(File file) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if(!HEADER.equals(in.readLine())) {
+                throw new IOException("Not an import journal: " + file);
+            }
+            String text = in.readLine();
+            while(text != null) {
+                String[] parts = text.split(" ", text.startsWith("at ") ? 4 : 2);
+                try {
+                    if(parts.length == 2 && parts[0].equals("done")) {
+                        _done.add(parts[1]);
+                    } else if(parts.length == 4 && parts[0].equals("at")) {
+                        _checkpoints.put(parts[3], new Checkpoint(Long.parseLong(parts[1]), ConsistencyLevel.valueOf(parts[2])));
+                    } else {
+                        throw new IOException("Bad line in import journal: " + text);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Bad line in import journal: " + text, e);
+                }
+                text = in.readLine();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _out.close();
+    }
+}
@@ -0,0 +1,86 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.ConsistencyLevel;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/*
+Works out the import journal's checkpoints. Writes complete out of order - they go to different replicas, get batched
+together, get retried - so the furthest a segment can be said to have got is the end of the last statement that
+everything up to has completed.
+
+The file is cut into units, one per statement read (or record, in a binary dump), each knowing where in the file it
+ends. Every write sent for a unit holds it until the write completes, and a unit is finished once it's been moved on
+from and nothing holds it any more. The checkpoint is the end of the last unit in the unbroken run of finished ones
+from the start.
+
+advance() and hold() belong to the thread reading the file; release() is called from wherever writes complete.
+ */
+class ImportProgress {
+
+    static class Unit {
+        final long end;
+        int holds = 0;
+        boolean closed = false;
+        ConsistencyLevel consistency; //In effect once the unit's statements have gone, known when it's closed
+
+        Unit(long end) {
+            this.end = end;
+        }
+    }
+
+    private final Queue<Unit> _units = new ArrayDeque<>();
+    private Unit _current = null;
+    private ImportJournal.Checkpoint _checkpoint;
+
+    ImportProgress(ImportJournal.Checkpoint start) {
+        _checkpoint = start;
+    }
+
+    /**
+     * Moves on to the next statement, which ends at the given offset. consistency is the one in effect now that the
+     * current statement has been dealt with.
+     */
+    synchronized void advance(long end, ConsistencyLevel consistency) {
+        close(consistency);
+        _current = new Unit(end);
+        _units.add(_current);
+    }
+
+    /**
+     * Moves on from the last statement of the file.
+     */
+    synchronized void close(ConsistencyLevel consistency) {
+        if(_current != null) {
+            _current.closed = true;
+            _current.consistency = consistency;
+            _current = null;
+        }
+    }
+
+    /**
+     * Marks the current statement as having a write in flight, until the returned unit is released.
+     */
+    synchronized Unit hold() {
+        if(_current == null) {
+            throw new IllegalStateException("No statement to hold");
+        }
+        _current.holds++;
+        return _current;
+    }
+
+    synchronized void release(Unit unit) {
+        unit.holds--;
+    }
+
+    synchronized ImportJournal.Checkpoint checkpoint() {
+        Unit unit = _units.peek();
+        while(unit != null && unit.closed && unit.holds == 0) {
+            _units.poll();
+            _checkpoint = new ImportJournal.Checkpoint(unit.end, unit.consistency);
+            unit = _units.peek();
+        }
+        return _checkpoint;
+    }
+}
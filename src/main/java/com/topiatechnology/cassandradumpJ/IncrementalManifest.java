@@ -0,0 +1,175 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+The chain of an incremental export (--incremental): the base export, every delta exported since, and how far each table
+had got. It's plain text, a run at a time, each run's export followed by the watermarks it left its tables at:
+    cassandradumpJ-incremental 1
+    export 2024-01-01.cql
+    watermark 1704067200000000 keyspace_1.table_1
+    export 2024-01-02.cql
+    watermark 1704153600000000 keyspace_1.table_1
+A watermark is a WRITETIME, in microseconds - the next run exports the table's rows that have a cell written after it.
+Exports are recorded relative to the manifest's directory, so the whole chain can be moved around together, and names
+go last on the line, so they can have spaces in them.
+
+A run is only added once its export is complete, by writing a new manifest beside the old one and moving it into place,
+so an export that didn't finish leaves the chain as it was.
+ */
+class IncrementalManifest {
+
+    static final String HEADER = "cassandradumpJ-incremental 1";
+
+    private static final String EXPORT = "export";
+    private static final String WATERMARK = "watermark";
+
+    private final File _file;
+    private final List<String> _exports = new ArrayList<>();
+    private final Map<String, Long> _watermarks = new HashMap<>(); //The latest of each table's
+    private final List<String> _lines = new ArrayList<>();
+
+    private IncrementalManifest(File file) {
+        _file = file;
+    }
+
+    /**
+     * Whether the file is an incremental manifest, rather than an export - recognized by its first line.
+     */
+    static boolean isManifest(File file) throws IOException {
+        if(!file.isFile()) {
+            return false;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            char[] header = new char[HEADER.length()];
+            int read = 0;
+            while(read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if(n < 0) {
+                    return false;
+                }
+                read += n;
+            }
+            return HEADER.equals(new String(header));
+        }
+    }
+
+    /**
+     * Reads the manifest, or starts a new chain if the file doesn't exist yet.
+     */
+    static IncrementalManifest open(File file) throws IOException {
+        IncrementalManifest manifest = new IncrementalManifest(file);
+        if(!file.exists()) {
+            return manifest;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if(!HEADER.equals(in.readLine())) {
+                throw new IOException("Not an incremental manifest: " + file);
+            }
+            String line = in.readLine();
+            while(line != null) {
+                if(!line.isEmpty()) {
+                    String[] parts = line.split(" ", 3);
+                    if(parts[0].equals(EXPORT) && parts.length == 2) {
+                        manifest._exports.add(parts[1]);
+                    } else if(parts[0].equals(WATERMARK) && parts.length == 3 && !manifest._exports.isEmpty()) {
+                        try {
+                            manifest._watermarks.put(parts[2], Long.parseLong(parts[1]));
+                        } catch (NumberFormatException e) {
+                            throw new IOException("Bad watermark in incremental manifest: " + line);
+                        }
+                    } else {
+                        throw new IOException("Bad line in incremental manifest: " + line);
+                    }
+                    manifest._lines.add(line);
+                }
+                line = in.readLine();
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Whether there's no base export yet.
+     */
+    boolean isEmpty() {
+        return _exports.isEmpty();
+    }
+
+    /**
+     * The write time the table's last run got up to, or null if it has never been exported.
+     */
+    Long watermark(String table) {
+        return _watermarks.get(table);
+    }
+
+    /**
+     * Every export of the chain, base first.
+     */
+    List<File> exports() {
+        List<File> exports = new ArrayList<>(_exports.size());
+        for(String export : _exports) {
+            exports.add(directory().resolve(export).toFile());
+        }
+        return exports;
+    }
+
+    boolean contains(File export) {
+        Path path = export.toPath().toAbsolutePath().normalize();
+        for(File existing : exports()) {
+            if(existing.toPath().toAbsolutePath().normalize().equals(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds a finished run to the chain: its export, and the watermarks it left its tables at.
+     */
+    void append(File export, Map<String, Long> watermarks) throws IOException {
+        String name = directory().relativize(export.toPath().toAbsolutePath().normalize()).toString();
+        List<String> lines = new ArrayList<>(_lines);
+        lines.add(EXPORT + " " + name);
+        List<String> tables = new ArrayList<>(watermarks.keySet());
+        Collections.sort(tables);
+        for(String table : tables) {
+            lines.add(WATERMARK + " " + watermarks.get(table) + " " + table);
+        }
+
+        File next = new File(_file.getAbsoluteFile().getParentFile(), _file.getName() + ".next");
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(next), StandardCharsets.UTF_8))) {
+            out.write(HEADER);
+            out.write("\n");
+            for(String line : lines) {
+                out.write(line);
+                out.write("\n");
+            }
+        }
+        Files.move(next.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        _lines.clear();
+        _lines.addAll(lines);
+        _exports.add(name);
+        _watermarks.putAll(watermarks);
+    }
+
+    private Path directory() {
+        return _file.toPath().toAbsolutePath().normalize().getParent();
+    }
+}
@@ -0,0 +1,198 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+--metrics-interval and --metrics-json. Every so often (and once more at the end), either a few lines of progress go to
+stderr - overall and per-table rates, ETAs, page fetch or write latencies, and how the time has been split between
+encoding and waiting on the cluster - or every metric there is, the driver's included, is written out as a line of JSON:
+    {"time":1700000000000,"gauges":{...},"counters":{...},"histograms":{...},"meters":{...},"timers":{...}}
+Rates are per second, and latencies are in milliseconds.
+
+Dropwizard has its own ConsoleReporter, but it prints every one of the driver's metrics, a dozen lines each, which
+buries the few that say how the run is going.
+ */
+class MetricsReporter extends ScheduledReporter {
+
+    private final DumpMetrics _metrics;
+    private final PrintStream _out;
+    private final boolean _json;
+
+    private MetricsReporter(DumpMetrics metrics, PrintStream out, boolean json) {
+        super(metrics.registry(), "cassandradumpJ-metrics", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+        _metrics = metrics;
+        _out = out;
+        _json = json;
+    }
+
+    /**
+     * Progress lines, for people.
+     */
+    static MetricsReporter text(DumpMetrics metrics, PrintStream out) {
+        return new MetricsReporter(metrics, out, false);
+    }
+
+    /**
+     * A line of JSON per report, for anything else.
+     */
+    static MetricsReporter json(DumpMetrics metrics, PrintStream out) {
+        return new MetricsReporter(metrics, out, true);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void report(SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters, SortedMap<String, Histogram> histograms,
+                       SortedMap<String, Meter> meters, SortedMap<String, Timer> timers) {
+        if(_json) {
+            _out.println(json(gauges, counters, histograms, meters, timers));
+        } else {
+            _out.print(text());
+        }
+        _out.flush();
+    }
+
+    private String text() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "[metrics] %d rows (%.0f/s), %s (%s/s)", _metrics.rows.getCount(), _metrics.rows.getOneMinuteRate(),
+                megabytes(_metrics.bytes.getCount()), megabytes(_metrics.bytes.getOneMinuteRate())));
+        if(_metrics.pageFetches.getCount() > 0) {
+            text.append(", page fetches ").append(latencies(_metrics.pageFetches.getSnapshot()));
+        }
+        if(_metrics.writes.getCount() > 0) {
+            text.append(", writes ").append(latencies(_metrics.writes.getSnapshot())).append(", ").append(_metrics.inFlight.getCount()).append(" in flight");
+        }
+        text.append(String.format(Locale.ROOT, ", %d retries, %d timeouts, %d failures, %.1fs encoding, %.1fs waiting\n",
+                _metrics.retries.getCount(), _metrics.timeouts.getCount(), _metrics.failures.getCount(),
+                _metrics.encodingTime.getCount() / 1e9, _metrics.waitingTime.getCount() / 1e9));
+        for(DumpMetrics.Table table : _metrics.tables()) {
+            text.append(String.format(Locale.ROOT, "[metrics]   %s: %d rows (%.0f/s), %s", table.name, table.rows.getCount(),
+                    table.rows.getOneMinuteRate(), megabytes(table.bytes.getCount())));
+            Long eta = table.etaSeconds();
+            if(eta != null) {
+                text.append(String.format(Locale.ROOT, ", ETA %d:%02d:%02d", eta / 3600, eta / 60 % 60, eta % 60));
+            }
+            text.append("\n");
+        }
+        return text.toString();
+    }
+
+    private static String megabytes(double bytes) {
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024 * 1024));
+    }
+
+    private String latencies(Snapshot snapshot) {
+        return String.format(Locale.ROOT, "p50 %.1fms p99 %.1fms", convertDuration(snapshot.getMedian()), convertDuration(snapshot.get99thPercentile()));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private String json(SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters, SortedMap<String, Histogram> histograms,
+                        SortedMap<String, Meter> meters, SortedMap<String, Timer> timers) {
+        StringBuilder json = new StringBuilder("{\"time\":").append(System.currentTimeMillis());
+        json.append(",\"gauges\":{");
+        String separator = "";
+        for(Map.Entry<String, Gauge> gauge : gauges.entrySet()) {
+            json.append(separator);
+            string(json, gauge.getKey()).append(':');
+            value(json, gauge.getValue().getValue());
+            separator = ",";
+        }
+        json.append("},\"counters\":{");
+        separator = "";
+        for(Map.Entry<String, Counter> counter : counters.entrySet()) {
+            json.append(separator);
+            string(json, counter.getKey()).append(':').append(counter.getValue().getCount());
+            separator = ",";
+        }
+        json.append("},\"histograms\":{");
+        separator = "";
+        for(Map.Entry<String, Histogram> histogram : histograms.entrySet()) {
+            json.append(separator);
+            string(json, histogram.getKey()).append(":{\"count\":").append(histogram.getValue().getCount());
+            snapshot(json, histogram.getValue().getSnapshot(), false).append('}');
+            separator = ",";
+        }
+        json.append("},\"meters\":{");
+        separator = "";
+        for(Map.Entry<String, Meter> meter : meters.entrySet()) {
+            json.append(separator);
+            rates(string(json, meter.getKey()).append(":{"), meter.getValue()).append('}');
+            separator = ",";
+        }
+        json.append("},\"timers\":{");
+        separator = "";
+        for(Map.Entry<String, Timer> timer : timers.entrySet()) {
+            json.append(separator);
+            rates(string(json, timer.getKey()).append(":{"), timer.getValue());
+            snapshot(json, timer.getValue().getSnapshot(), true).append('}');
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private StringBuilder rates(StringBuilder json, Metered metered) {
+        return json.append("\"count\":").append(metered.getCount())
+                .append(",\"mean_rate\":").append(number(convertRate(metered.getMeanRate())))
+                .append(",\"m1_rate\":").append(number(convertRate(metered.getOneMinuteRate())))
+                .append(",\"m5_rate\":").append(number(convertRate(metered.getFiveMinuteRate())));
+    }
+
+    //Durations are recorded in nanoseconds, and only timers hold durations - a histogram could be counting anything
+    private StringBuilder snapshot(StringBuilder json, Snapshot snapshot, boolean durations) {
+        double[] values = {snapshot.getMin(), snapshot.getMean(), snapshot.getMedian(), snapshot.get95thPercentile(),
+                snapshot.get99thPercentile(), snapshot.getMax()};
+        String[] names = {"min", "mean", "p50", "p95", "p99", "max"};
+        for(int i = 0; i < values.length; i++) {
+            json.append(",\"").append(names[i]).append("\":").append(number(durations ? convertDuration(values[i]) : values[i]));
+        }
+        return json;
+    }
+
+    private static void value(StringBuilder json, Object value) {
+        if(value instanceof Number) {
+            json.append(number(((Number) value).doubleValue()));
+        } else if(value instanceof Boolean) {
+            json.append(value);
+        } else if(value == null) {
+            json.append("null");
+        } else {
+            string(json, value.toString());
+        }
+    }
+
+    //JSON has no NaN or infinity
+    private static String number(double value) {
+        if(Double.isNaN(value) || Double.isInfinite(value)) {
+            return "null";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static StringBuilder string(StringBuilder json, String value) {
+        json.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if(c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+}
@@ -0,0 +1,147 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Statement;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+--batch-rows. An export writes the rows of a partition one after another, so on import, runs of consecutive writes
+very often go to the same table and the same partition. Sending each of them as its own request makes the coordinator
+do the same work over and over; an UNLOGGED batch of them is a single mutation on a single replica set.
+
+This collects consecutive writes that share a table and partition key, and hands back a group as soon as the next
+write doesn't belong to it, it has maxRows rows, or it would grow past maxBytes - which keeps batches below Cassandra's
+batch_size_fail_threshold (50KiB by default). A group of one is handed back as the plain statement it was.
+Counter tables get COUNTER batches, since Cassandra won't take counter updates in any other kind.
+
+Only bound statements can be grouped - it takes their values to know which partition they're for. Whatever is to be
+run once a write has completed is run for every write in its group.
+ */
+class PartitionBatcher {
+
+    static class Group {
+        final Statement statement;
+        final String description;
+        final Runnable onCompleted; //Null if none of the writes had anything to run
+
+        Group(Statement statement, String description, Runnable onCompleted) {
+            this.statement = statement;
+            this.description = description;
+            this.onCompleted = onCompleted;
+        }
+    }
+
+    private final ProtocolVersion _protocolVersion;
+    private final CodecRegistry _codecRegistry;
+    private final int _maxRows;
+    private final int _maxBytes;
+    private final Map<PreparedStatement, Boolean> _isCounterTable = new IdentityHashMap<>();
+
+    private final List<BoundStatement> _pending = new ArrayList<>();
+    private final List<Runnable> _pendingCompletions = new ArrayList<>();
+    private String _pendingTable = null;
+    private ByteBuffer _pendingKey = null;
+    private int _pendingBytes = 0;
+    private String _pendingDescription = null;
+
+    PartitionBatcher(ProtocolVersion protocolVersion, CodecRegistry codecRegistry, int maxRows, int maxBytes) {
+        _protocolVersion = protocolVersion;
+        _codecRegistry = codecRegistry;
+        _maxRows = maxRows;
+        _maxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a write. Any groups that are complete because of it are added to ready, in the order they have to be sent.
+     */
+    void add(BoundStatement statement, String description, Runnable onCompleted, List<Group> ready) {
+        ColumnDefinitions variables = statement.preparedStatement().getVariables();
+        String table = variables.size() == 0 ? null : variables.getKeyspace(0) + "." + variables.getTable(0);
+        ByteBuffer key = statement.getRoutingKey(_protocolVersion, _codecRegistry);
+        int bytes = statement.requestSizeInBytes(_protocolVersion, _codecRegistry);
+
+        if(!_pending.isEmpty() && (key == null || !key.equals(_pendingKey) || !table.equals(_pendingTable)
+                || _pending.size() >= _maxRows || _pendingBytes + bytes > _maxBytes)) {
+            ready.add(flush());
+        }
+        if(key == null) {
+            //No way to tell which partition it's for, so it can't share a batch with anything
+            ready.add(new Group(statement, description, onCompleted));
+            return;
+        }
+        if(_pending.isEmpty()) {
+            _pendingTable = table;
+            _pendingKey = key;
+            _pendingDescription = description;
+        }
+        _pending.add(statement);
+        if(onCompleted != null) {
+            _pendingCompletions.add(onCompleted);
+        }
+        _pendingBytes += bytes;
+    }
+
+    /**
+     * Hands back whatever is pending, or null if nothing is.
+     */
+    Group flush() {
+        if(_pending.isEmpty()) {
+            return null;
+        }
+        Runnable onCompleted = null;
+        if(_pendingCompletions.size() == 1) {
+            onCompleted = _pendingCompletions.get(0);
+        } else if(!_pendingCompletions.isEmpty()) {
+            final Runnable[] completions = _pendingCompletions.toArray(new Runnable[0]);
+            onCompleted = () -> {
+                for(Runnable completion : completions) {
+                    completion.run();
+                }
+            };
+        }
+        Group group;
+        if(_pending.size() == 1) {
+            group = new Group(_pending.get(0), _pendingDescription, onCompleted);
+        } else {
+            BoundStatement first = _pending.get(0);
+            BatchStatement batch = new BatchStatement(isCounterTable(first.preparedStatement())
+                    ? BatchStatement.Type.COUNTER : BatchStatement.Type.UNLOGGED);
+            batch.addAll(_pending);
+            group = new Group(batch, "batch of " + _pending.size() + " rows for " + _pendingTable
+                    + ", starting with " + _pendingDescription, onCompleted);
+        }
+        _pending.clear();
+        _pendingCompletions.clear();
+        _pendingTable = null;
+        _pendingKey = null;
+        _pendingBytes = 0;
+        _pendingDescription = null;
+        return group;
+    }
+
+    private boolean isCounterTable(PreparedStatement prepared) {
+        Boolean isCounter = _isCounterTable.get(prepared);
+        if(isCounter == null) {
+            isCounter = false;
+            for(ColumnDefinitions.Definition variable : prepared.getVariables()) {
+                if(variable.getType().equals(DataType.counter())) {
+                    isCounter = true;
+                    break;
+                }
+            }
+            _isCounterTable.put(prepared, isCounter);
+        }
+        return isCounter;
+    }
+}
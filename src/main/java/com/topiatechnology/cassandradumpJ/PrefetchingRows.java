@@ -0,0 +1,187 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+Iterating a ResultSet directly only asks for the next page once the current one has been used up, so every page
+boundary is a full round trip spent waiting on the network. This does the paging itself instead: as soon as page N
+arrives, page N+1 is requested (the same statement again, from page N's PagingState), so the fetch overlaps with
+encoding the rows we already have. At most one page is ever buffered ahead of the one being read.
+
+Paging by hand also means we always know where one page ends and the next begins, and the PagingState to carry on
+from after it - which is what the checkpoints of a segmented export are made of. To resume from one, set the
+PagingState on the statement before handing it over.
+
+With --adaptive, page fetch times are reported to an AdaptiveConcurrency, and a page that fails because the cluster
+is overloaded (a read timeout, say) doesn't end the scan: after backing off, it's asked for again.
+
+How long each page takes to come back, and how long the reader is left waiting for one, go into the run's DumpMetrics.
+ */
+class PrefetchingRows implements Iterable<Row> {
+
+    private static final int MAX_RETRIES = 10;
+    private static final long MAX_BACKOFF_MILLIS = 10000;
+
+    private final Session _session;
+    private final Statement _statement;
+    private final AdaptiveConcurrency _adaptive; //Null unless --adaptive
+    private final DumpMetrics _metrics;
+
+    private ResultSet _page;
+    private int _remaining;
+    private PagingState _next; //Where the page after the current one starts - null if there isn't one
+    private ResultSetFuture _fetching = null;
+    private int _retries = 0;
+
+    /**
+     * Runs the statement, fetching its first page straight away. The statement's fetch size has to be set.
+     */
+    PrefetchingRows(Session session, Statement statement, AdaptiveConcurrency adaptive, DumpMetrics metrics) {
+        _session = session;
+        _statement = statement;
+        _adaptive = adaptive;
+        _metrics = metrics;
+        ResultSet first;
+        while(true) {
+            long start = System.nanoTime();
+            try {
+                first = _session.execute(_statement);
+                succeeded(start);
+                //Nothing else to do while the first page is on its way
+                _metrics.waited(System.nanoTime() - start);
+                break;
+            } catch (DriverException e) {
+                backOff(e);
+            }
+        }
+        arrived(first);
+    }
+
+    ColumnDefinitions getColumnDefinitions() {
+        return _page.getColumnDefinitions();
+    }
+
+    /**
+     * Whether the last row handed out was the last one of its page.
+     */
+    boolean endOfPage() {
+        return _remaining == 0;
+    }
+
+    /**
+     * Where the page after the current one starts, or null if the current one is the last.
+     */
+    PagingState pagingState() {
+        return _next;
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                //Pages can come back empty (when they're all tombstones, say), so keep going until there's a row or no more pages
+                while(_remaining == 0) {
+                    if(_next == null) {
+                        return false;
+                    }
+                    arrived(nextPage());
+                }
+                return true;
+            }
+
+            @Override
+            public Row next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                _remaining--;
+                return _page.one();
+            }
+        };
+    }
+
+    private void arrived(ResultSet page) {
+        _page = page;
+        //Only the rows already here - reading past them would make the driver fetch the next page itself
+        _remaining = page.getAvailableWithoutFetching();
+        _next = page.getExecutionInfo().getPagingState();
+        _fetching = null;
+        if(_next != null) {
+            _fetching = fetch(_next);
+        }
+    }
+
+    private ResultSet nextPage() {
+        while(true) {
+            long start = System.nanoTime();
+            try {
+                ResultSet page = _fetching.getUninterruptibly();
+                _retries = 0;
+                return page;
+            } catch (DriverException e) {
+                backOff(e);
+                _fetching = fetch(_next);
+            } finally {
+                _metrics.waited(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private ResultSetFuture fetch(PagingState from) {
+        //The request is built before executeAsync() returns, so the statement is free to be changed again after this
+        _statement.setPagingState(from);
+        final long start = System.nanoTime();
+        ResultSetFuture future = _session.executeAsync(_statement);
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+                succeeded(start);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                //Reported by nextPage(), once we get to it
+            }
+        }, MoreExecutors.directExecutor());
+        return future;
+    }
+
+    private void succeeded(long start) {
+        long latency = System.nanoTime() - start;
+        _metrics.pageFetched(latency);
+        if(_adaptive != null) {
+            _adaptive.onSuccess(latency);
+        }
+    }
+
+    //Rethrows e unless it's worth trying again, in which case it waits a while first - longer each time in a row
+    private void backOff(DriverException e) {
+        if(_adaptive == null || !AdaptiveConcurrency.isOverload(e) || _retries >= MAX_RETRIES) {
+            _metrics.failed(e, false);
+            throw e;
+        }
+        _metrics.failed(e, true);
+        _adaptive.onOverload();
+        _retries++;
+        try {
+            Thread.sleep(Math.min(MAX_BACKOFF_MILLIS, 100L << _retries));
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+}
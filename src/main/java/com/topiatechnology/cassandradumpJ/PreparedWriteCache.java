@@ -0,0 +1,123 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.exceptions.InvalidTypeException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+Every INSERT in an export file has its values baked in as literals, so preparing the lines as they are buys nothing -
+each one is a brand new statement, and costs a round trip to prepare before it can even be executed.
+This turns a line back into "the same statement, with bind markers" plus typed values, and keeps the
+PreparedStatement for each distinct shape (table + column list) in a small LRU, so a table's rows all share one.
+
+Not thread safe - it belongs to whichever thread is reading the import file.
+ */
+class PreparedWriteCache {
+
+    private final Session _session;
+    private final Metadata _metadata;
+    private final CodecRegistry _codecRegistry;
+    private final Map<String, PreparedStatement> _prepared;
+
+    PreparedWriteCache(Session session, final int maxSize) {
+        _session = session;
+        _metadata = session.getCluster().getMetadata();
+        _codecRegistry = session.getCluster().getConfiguration().getCodecRegistry();
+        _prepared = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the statement as a BoundStatement, or null if it isn't a write that can be turned into one
+     * (in which case the caller should just send the CQL text).
+     */
+    BoundStatement bind(String cql) {
+        WriteStatementParser.ParsedWrite parsed = WriteStatementParser.parse(cql);
+        if(parsed == null) {
+            return null;
+        }
+        KeyspaceMetadata keyspace = _metadata.getKeyspace(parsed.keyspace);
+        TableMetadata table = keyspace == null ? null : keyspace.getTable(parsed.table);
+        if(table == null) {
+            return null;
+        }
+        int columnCount = parsed.columns.size();
+        Object[] values = new Object[columnCount];
+        TypeCodec<Object>[] codecs = newCodecArray(columnCount);
+        for(int i = 0; i < columnCount; i++) {
+            ColumnMetadata column = table.getColumn(parsed.columns.get(i));
+            if(column == null) {
+                return null;
+            }
+            codecs[i] = _codecRegistry.codecFor(column.getType());
+            try {
+                values[i] = codecs[i].parse(parsed.literals.get(i));
+            } catch (InvalidTypeException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+        Long timestamp;
+        Integer ttl;
+        try {
+            timestamp = parsed.timestamp == null ? null : Long.valueOf(parsed.timestamp);
+            ttl = parsed.ttl == null ? null : Integer.valueOf(parsed.ttl);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        String preparableCQL = parsed.toPreparableCQL();
+        PreparedStatement prepared = _prepared.get(preparableCQL);
+        if(prepared == null) {
+            prepared = _session.prepare(preparableCQL);
+            _prepared.put(preparableCQL, prepared);
+        }
+        BoundStatement bound = prepared.bind();
+        for(int i = 0; i < columnCount; i++) {
+            if(values[i] == null) {
+                bound.setToNull(i);
+            } else {
+                bound.set(i, values[i], codecs[i]);
+            }
+        }
+        //The USING clause's markers come after the columns'
+        int next = columnCount;
+        if(timestamp != null) {
+            bound.setLong(next++, timestamp);
+        }
+        if(ttl != null) {
+            bound.setInt(next, ttl);
+        }
+        return bound;
+    }
+
+    /**
+     * Schema statements can drop and re-create a table out from under a cached statement, so anything
+     * that isn't a plain write should empty the cache.
+     */
+    void clear() {
+        _prepared.clear();
+    }
+
+    int size() {
+        return _prepared.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TypeCodec<Object>[] newCodecArray(int size) {
+        return (TypeCodec<Object>[]) new TypeCodec[size];
+    }
+}
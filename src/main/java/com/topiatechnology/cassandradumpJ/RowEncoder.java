@@ -0,0 +1,238 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.TypeCodec;
+
+import java.io.IOException;
+
+/*
+This is the Python's make_row_encoder, done once per table instead of once per row - the TableEncoder of the CQL text format.
+
+The shape of a table doesn't change between rows, so everything that only depends on the shape - which codec formats
+each column, the quoted column names, whether we're writing an INSERT or a counter UPDATE - is worked out up front.
+Encoding a row is then just walking the columns and appending to a StringBuilder the caller hands in (and reuses),
+with no per-row maps, streams or string concatenation.
+
+Like the Python, a table with a counter column is written as
+    UPDATE "ks"."t" SET "c" = "c" + <value>, ... WHERE "k" = <value> AND ...;
+and anything else as
+    INSERT INTO "ks"."t" ("a", "b", ...) VALUES (<value>, <value>, ...);
+with null columns left out entirely, so the import doesn't write a tombstone for every empty cell.
+
+With --write-times, the INSERT ends in "USING TIMESTAMP <writetime> AND TTL <ttl>" (no TTL if the cells don't have
+one). Cells of a row written at different times need a statement each, so a row becomes one INSERT per distinct
+write time and TTL among its cells, each with the primary key and the cells that share it. Cells without a write time
+of their own (non-frozen collections) go in the first. Almost every row was written all at once, and stays a single
+statement.
+
+Immutable once built, so one instance can be shared by any number of threads.
+ */
+final class RowEncoder implements TableEncoder {
+
+    private final String _insertPrefix;
+    private final String _updatePrefix;
+    private final String[] _quotedNames;
+    private final TypeCodec<Object>[] _codecs;
+    private final boolean[] _isCounter;
+    private final boolean _hasCounters;
+    private final boolean[] _isKey;
+    private final int[] _writeTimeIndex; //null without write times
+
+    RowEncoder(String keyspace, String table, ExportColumns columns, CodecRegistry codecRegistry) {
+        this(keyspace, table, columns, codecRegistry, columns.hasWriteTimes());
+    }
+
+    /**
+     * usingWriteTimes says whether to write the columns' write times back (if they have them) - an incremental export
+     * selects them whether or not it's keeping them.
+     */
+    RowEncoder(String keyspace, String table, ExportColumns columns, CodecRegistry codecRegistry, boolean usingWriteTimes) {
+        String quotedTable = "\"" + keyspace + "\".\"" + table + "\"";
+        _insertPrefix = "INSERT INTO " + quotedTable + " (";
+        _updatePrefix = "UPDATE " + quotedTable + " SET ";
+        int columnCount = columns.size();
+        _quotedNames = new String[columnCount];
+        _codecs = newCodecArray(columnCount);
+        _isCounter = new boolean[columnCount];
+        _isKey = new boolean[columnCount];
+        _writeTimeIndex = usingWriteTimes && columns.hasWriteTimes() ? new int[columnCount] : null;
+        boolean hasCounters = false;
+        for(int i = 0; i < columnCount; i++) {
+            DataType type = columns.types.get(i);
+            _quotedNames[i] = Metadata.quote(columns.names.get(i));
+            _codecs[i] = codecRegistry.codecFor(type);
+            _isCounter[i] = type.equals(DataType.counter());
+            hasCounters |= _isCounter[i];
+            _isKey[i] = columns.isPrimaryKey(i);
+            if(_writeTimeIndex != null) {
+                _writeTimeIndex[i] = columns.writeTimeIndex(i);
+            }
+        }
+        _hasCounters = hasCounters;
+    }
+
+    @Override
+    public Chunk newChunk() {
+        final StringBuilder text = new StringBuilder(1024);
+        return new Chunk() {
+            @Override
+            public boolean add(Row row) {
+                return encode(row, text);
+            }
+
+            @Override
+            public int size() {
+                return text.length();
+            }
+
+            @Override
+            public void writeTo(ExportSink sink) throws IOException {
+                sink.write(text);
+            }
+
+            @Override
+            public void clear() {
+                text.setLength(0);
+            }
+        };
+    }
+
+    /**
+     * Appends the row's statement, including the trailing ";\n", to out.
+     * Returns false (and appends nothing) if the row has nothing that can be written - a counter row whose counters are all null.
+     */
+    boolean encode(Row row, StringBuilder out) {
+        if(_hasCounters) {
+            return encodeCounterUpdate(row, out);
+        }
+        if(_writeTimeIndex == null) {
+            encodeInsert(row, out, -1, true);
+            return true;
+        }
+        //A statement for each group of cells with the same write time, named after the first cell in it
+        boolean first = true;
+        for(int i = 0; i < _codecs.length; i++) {
+            if(timed(row, i) && !timedBefore(row, i)) {
+                encodeInsert(row, out, i, first);
+                first = false;
+            }
+        }
+        if(first) {
+            //Nothing in the row has a write time - only a primary key, or collections
+            encodeInsert(row, out, -1, true);
+        }
+        return true;
+    }
+
+    //An INSERT of the row's key, and the cells in the group - every non-null cell if there's no group (-1). The first
+    //group also gets the cells that have no write time.
+    private void encodeInsert(Row row, StringBuilder out, int group, boolean firstGroup) {
+        out.append(_insertPrefix);
+        boolean first = true;
+        for(int i = 0; i < _codecs.length; i++) {
+            if(inGroup(row, i, group, firstGroup)) {
+                if(!first) {
+                    out.append(", ");
+                }
+                out.append(_quotedNames[i]);
+                first = false;
+            }
+        }
+        out.append(") VALUES (");
+        first = true;
+        for(int i = 0; i < _codecs.length; i++) {
+            if(inGroup(row, i, group, firstGroup)) {
+                if(!first) {
+                    out.append(", ");
+                }
+                out.append(_codecs[i].format(row.get(i, _codecs[i])));
+                first = false;
+            }
+        }
+        out.append(")");
+        if(group >= 0) {
+            int writeTime = _writeTimeIndex[group];
+            out.append(" USING TIMESTAMP ").append(row.getLong(writeTime));
+            if(!row.isNull(writeTime + 1)) {
+                out.append(" AND TTL ").append(row.getInt(writeTime + 1));
+            }
+        }
+        out.append(";\n");
+    }
+
+    private boolean inGroup(Row row, int column, int group, boolean firstGroup) {
+        if(row.isNull(column)) {
+            return false;
+        }
+        if(_writeTimeIndex == null || _isKey[column]) {
+            return true;
+        }
+        if(!timed(row, column)) {
+            return firstGroup;
+        }
+        return group >= 0 && sameWriteTime(row, _writeTimeIndex[column], _writeTimeIndex[group]);
+    }
+
+    private boolean timed(Row row, int column) {
+        int writeTime = _writeTimeIndex[column];
+        return writeTime >= 0 && !row.isNull(column) && !row.isNull(writeTime);
+    }
+
+    //Whether one of the columns before the given one has the same write time as it
+    private boolean timedBefore(Row row, int column) {
+        for(int i = 0; i < column; i++) {
+            if(timed(row, i) && sameWriteTime(row, _writeTimeIndex[i], _writeTimeIndex[column])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sameWriteTime(Row row, int a, int b) {
+        if(row.getLong(a) != row.getLong(b) || row.isNull(a + 1) != row.isNull(b + 1)) {
+            return false;
+        }
+        return row.isNull(a + 1) || row.getInt(a + 1) == row.getInt(b + 1);
+    }
+
+    private boolean encodeCounterUpdate(Row row, StringBuilder out) {
+        int start = out.length();
+        out.append(_updatePrefix);
+        boolean first = true;
+        for(int i = 0; i < _codecs.length; i++) {
+            if(_isCounter[i] && !row.isNull(i)) {
+                if(!first) {
+                    out.append(", ");
+                }
+                out.append(_quotedNames[i]).append(" = ").append(_quotedNames[i]).append(" + ").append(_codecs[i].format(row.get(i, _codecs[i])));
+                first = false;
+            }
+        }
+        if(first) {
+            //"SET c = c + NULL" isn't valid CQL, and there's nothing to increment anyway
+            out.setLength(start);
+            return false;
+        }
+        out.append(" WHERE ");
+        first = true;
+        for(int i = 0; i < _codecs.length; i++) {
+            if(!_isCounter[i]) {
+                if(!first) {
+                    out.append(" AND ");
+                }
+                out.append(_quotedNames[i]).append(" = ").append(_codecs[i].format(row.get(i, _codecs[i])));
+                first = false;
+            }
+        }
+        out.append(";\n");
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TypeCodec<Object>[] newCodecArray(int size) {
+        return (TypeCodec<Object>[]) new TypeCodec[size];
+    }
+}
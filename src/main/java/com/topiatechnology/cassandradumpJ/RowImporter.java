@@ -0,0 +1,59 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.DataType;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/*
+The RowSink an ImportJob hands its RowSource: every row is bound to its table's TableInsert and written through the
+StatementImporter, the same as a row of a binary dump. row() blocks while the importer is at its in-flight limit.
+
+There's no file to keep a journal of, so rows are positioned by their number instead.
+ */
+class RowImporter implements RowSink {
+
+    private final StatementImporter _importer;
+    private TableInsert _table = null;
+    private long _rows = 0;
+
+    RowImporter(StatementImporter importer) {
+        _importer = importer;
+    }
+
+    @Override
+    public void beginTable(String keyspace, String table, List<String> columns, List<DataType> types) {
+        if(columns.size() != types.size()) {
+            throw new IllegalArgumentException(columns.size() + " columns but " + types.size() + " types");
+        }
+        String[] typeNames = new String[types.size()];
+        for(int i = 0; i < typeNames.length; i++) {
+            typeNames[i] = types.get(i).toString();
+        }
+        _table = TableInsert.prepare(_importer.session(), keyspace, table, columns.toArray(new String[0]), typeNames);
+    }
+
+    @Override
+    public void row(List<ByteBuffer> values) throws IOException {
+        if(_table == null) {
+            throw new IllegalStateException("A row has to come after beginTable()");
+        }
+        if(values.size() != _table.columnCount()) {
+            throw new IllegalArgumentException("A row of " + _table.name + " needs " + _table.columnCount() + " values, but got " + values.size());
+        }
+        BoundStatement bound = _table.bind(values.toArray(new ByteBuffer[0]));
+        if(bound == null) {
+            return;
+        }
+        _importer.position(++_rows);
+        try {
+            _importer.write(bound, "row of " + _table.name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while importing a row of " + _table.name);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.DataType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/*
+Somewhere rows can be streamed to, a table at a time. An ExportJob can write its rows to one instead of to an export
+file, and an ImportJob hands one to its RowSource to write rows into the cluster with.
+
+Values are in the form Cassandra sends and receives them, which is also the form the binary dump stores them in:
+each column's value serialized by its TypeCodec (for the connection's protocol version), or null for a null. Nothing
+has to be formatted or parsed on the way through; a sink that wants the values themselves can deserialize them with
+CodecRegistry.codecFor(type).
+
+Rows are pushed, and the pushing waits for as long as row() takes. That's the backpressure: an export stops fetching
+pages once its sink falls behind, and an import's row() blocks while the cluster has as many writes in flight as the
+import allows.
+ */
+public interface RowSink {
+
+    /**
+     * Says that the rows from now on, until the next call, belong to the given table, and hold the values of the given
+     * columns in that order.
+     */
+    void beginTable(String keyspace, String table, List<String> columns, List<DataType> types) throws IOException;
+
+    /**
+     * One row of the current table: a value for each of its columns, null for a null. The sink may keep the list and
+     * its buffers, and must not change the buffers' contents.
+     */
+    void row(List<ByteBuffer> values) throws IOException;
+}
@@ -0,0 +1,114 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.Row;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+An export to a RowSink, dressed up as a dump format so the export doesn't have to know the difference. Rows are encoded
+by taking their values' bytes as Cassandra sent them (the same as the binary format), and handed to the sink when the
+chunk is "written" - which only ever happens on the thread writing the export, one chunk at a time, so the sink sees
+one table's rows at a time and never from two threads at once.
+
+The export's schema and CONSISTENCY statements have nowhere to go, and are dropped - unless the sink is a ClusterCopy,
+which passes them on to the target cluster. The ExportSink this is given is never written to, so it can be NOWHERE.
+ */
+class RowSinkFormat implements DumpFormat {
+
+    static final ExportSink NOWHERE = new ExportSink() {
+        @Override
+        public void write(CharSequence text) {
+        }
+
+        @Override
+        public void write(ByteBuffer bytes) {
+            bytes.position(bytes.limit());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final RowSink _rows;
+
+    RowSinkFormat(RowSink rows) {
+        _rows = rows;
+    }
+
+    @Override
+    public void begin(ExportSink sink) {
+        //Nothing
+    }
+
+    @Override
+    public void statements(ExportSink sink, String cql) throws IOException {
+        if(_rows instanceof ClusterCopy) {
+            ((ClusterCopy) _rows).statements(cql);
+        }
+    }
+
+    @Override
+    public TableEncoder beginTable(ExportSink sink, String keyspace, String table, final ExportColumns columns, CodecRegistry codecRegistry) throws IOException {
+        if(_rows instanceof ClusterCopy) {
+            //The same as the dump formats: the schema goes in at ALL, and the rows at ONE
+            ((ClusterCopy) _rows).statements("CONSISTENCY ONE;\n");
+        }
+        _rows.beginTable(keyspace, table, columns.names, columns.types);
+        return new TableEncoder() {
+            @Override
+            public Chunk newChunk() {
+                return new RowsChunk(columns.size());
+            }
+        };
+    }
+
+    private class RowsChunk implements TableEncoder.Chunk {
+        private final int _columnCount;
+        private final List<List<ByteBuffer>> _rowValues = new ArrayList<>();
+        private int _size = 0;
+
+        RowsChunk(int columnCount) {
+            _columnCount = columnCount;
+        }
+
+        @Override
+        public boolean add(Row row) {
+            ByteBuffer[] values = new ByteBuffer[_columnCount];
+            for(int i = 0; i < _columnCount; i++) {
+                //A duplicate of the row's own buffer, so the sink is free to keep it
+                values[i] = row.getBytesUnsafe(i);
+                _size += values[i] == null ? 0 : values[i].remaining();
+            }
+            _rowValues.add(Arrays.asList(values));
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return _size;
+        }
+
+        @Override
+        public void writeTo(ExportSink sink) throws IOException {
+            for(List<ByteBuffer> values : _rowValues) {
+                _rows.row(values);
+            }
+        }
+
+        @Override
+        public void clear() {
+            _rowValues.clear();
+            _size = 0;
+        }
+    }
+}
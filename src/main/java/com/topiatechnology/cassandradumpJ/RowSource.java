@@ -0,0 +1,16 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.io.IOException;
+
+/*
+Somewhere rows can be streamed from, for an ImportJob to write into the cluster - an object store, a queue, another
+cluster, anything that can say which table each row belongs to. See RowSink for the form the rows take.
+ */
+public interface RowSource {
+
+    /**
+     * Streams every row there is into the sink, a table at a time, returning once they've all been handed over.
+     * The tables have to exist already.
+     */
+    void readInto(RowSink sink) throws IOException, InterruptedException;
+}
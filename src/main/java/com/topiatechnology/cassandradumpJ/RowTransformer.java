@@ -0,0 +1,36 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.DataType;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/*
+A change made to every row of an export between fetching it and writing it out - masking, truncating or redacting
+values, say, so an anonymized copy of a table can be exported in one go. An ExportJob can be given any number of them,
+and so can the command line (--transformer), and they're applied in that order, each to what the one before it left.
+
+Values are in the same form as a RowSink's: each column's value serialized by its TypeCodec, or null for a null. A
+transformer that wants the values themselves can deserialize them with CodecRegistry.codecFor(type), and serialize what
+it puts back the same way.
+
+A column that isn't wanted at all is better left out of the export (--exclude-columns) than nulled here: then it isn't
+even fetched.
+ */
+public interface RowTransformer {
+
+    /**
+     * What to do to the rows of the table, which hold the values of the given columns in that order - or null to leave
+     * them as they are. Called once for each table, before any of its rows are fetched.
+     */
+    Table forTable(String keyspace, String table, List<String> columns, List<DataType> types);
+
+    interface Table {
+
+        /**
+         * Changes one row: a value can be replaced (with one of the column's type) or set to null. The buffers must not
+         * be changed themselves. Called from every thread exporting the table, so it has to be thread safe.
+         */
+        void transform(List<ByteBuffer> values);
+    }
+}
@@ -0,0 +1,90 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+The table of contents of a segmented export (--segmented). It's plain text, one segment per line, in the order the
+segments would have been written to a single export file:
+    cassandradumpJ-segments 1
+    schema 0000-schema.cql
+    data 0001-keyspace_1.table_1.cql keyspace_1.table_1
+    data 0002-keyspace_1.table_2.cql keyspace_1.table_2
+    ...
+The schema segment always comes first. The manifest is written last, once every segment is complete, so an export
+that didn't finish has no manifest - and can't be imported by mistake.
+ */
+class SegmentManifest {
+
+    static final String FILE_NAME = "manifest.txt";
+    static final String HEADER = "cassandradumpJ-segments 1";
+
+    static final String SCHEMA = "schema";
+    static final String DATA = "data";
+
+    static class Segment {
+        final String kind;
+        final String fileName;
+        final String table; //keyspace.table for data segments, null for the schema
+
+        Segment(String kind, String fileName, String table) {
+            this.kind = kind;
+            this.fileName = fileName;
+            this.table = table;
+        }
+    }
+
+    private final List<Segment> _segments = new ArrayList<>();
+
+    void add(Segment segment) {
+        _segments.add(segment);
+    }
+
+    List<Segment> segments() {
+        return Collections.unmodifiableList(_segments);
+    }
+
+    static SegmentManifest read(File directory) throws IOException {
+        SegmentManifest manifest = new SegmentManifest();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(new File(directory, FILE_NAME)), StandardCharsets.UTF_8))) {
+            if(!HEADER.equals(in.readLine())) {
+                throw new IOException("Not a segment manifest: " + new File(directory, FILE_NAME));
+            }
+            String line = in.readLine();
+            while(line != null) {
+                if(!line.isEmpty()) {
+                    String[] parts = line.split(" ", 3);
+                    if(parts.length < 2 || !(parts[0].equals(SCHEMA) || parts[0].equals(DATA))) {
+                        throw new IOException("Bad line in segment manifest: " + line);
+                    }
+                    manifest.add(new Segment(parts[0], parts[1], parts.length > 2 ? parts[2] : null));
+                }
+                line = in.readLine();
+            }
+        }
+        return manifest;
+    }
+
+    void write(File directory) throws IOException {
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(directory, FILE_NAME)), StandardCharsets.UTF_8))) {
+            out.write(HEADER);
+            out.write("\n");
+            for(Segment segment : _segments) {
+                out.write(segment.kind + " " + segment.fileName + (segment.table == null ? "" : " " + segment.table));
+                out.write("\n");
+            }
+        }
+    }
+}
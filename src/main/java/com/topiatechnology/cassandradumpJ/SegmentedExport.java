@@ -0,0 +1,207 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/*
+--segmented. Exporting one table after another into a single file means a keyspace of hundreds of small tables spends
+nearly all its time waiting on round trips. Here every table is exported into a segment file of its own, on a pool of
+table workers, so the small tables get on with it while a huge one is still being scanned.
+
+The schema still goes into one segment of its own, written in order by the calling thread. Segments are numbered in the
+order they're handed in - the order a single-file export would have written them - whichever one finishes first, and
+the manifest lists them in that same order, so the output is the same from one run to the next.
+
+Progress goes into an ExportJournal as each page of each segment is written, and segments are marked done as they're
+closed. With --resume, segments that are done are left as they are, and partly written ones are cut back to their last
+checkpoint and carried on from there - with the same numbering, so long as the same tables are being exported.
+ */
+class SegmentedExport {
+
+    interface TableExport {
+        void export(DumpFormat format, ExportSink sink, ExportJournal.Checkpoints checkpoints) throws IOException, InterruptedException;
+    }
+
+    private final File _directory;
+    private final int _bufferSize;
+    private final Compression _compression;
+    private final Supplier<DumpFormat> _formats;
+    private final String _extension;
+    private final ExecutorService _executor;
+    private final SegmentManifest _manifest = new SegmentManifest();
+    private final List<Future<?>> _futures = new ArrayList<>();
+    private final List<String> _tables = new ArrayList<>();
+    private final ExportJournal _journal;
+
+    private final DumpFormat _schemaFormat;
+    private final ExportSink _schemaSink;
+
+    SegmentedExport(File directory, int workers, int bufferSize, Compression compression, Supplier<DumpFormat> formats, String extension,
+                    boolean resume) throws IOException {
+        _directory = directory;
+        _bufferSize = bufferSize;
+        _compression = compression;
+        _formats = formats;
+        _extension = extension + compression.extension();
+        //Whatever manifest is there belongs to an earlier export - leaving it would make this one look complete
+        File manifest = new File(directory, SegmentManifest.FILE_NAME);
+        if(manifest.exists() && !manifest.delete()) {
+            throw new IOException("Can't remove old manifest " + manifest);
+        }
+        _journal = ExportJournal.open(directory, resume);
+
+        String schemaFile = segmentName(0, "schema");
+        _schemaFormat = formats.get();
+        _schemaSink = ChannelExportSink.open(new File(directory, schemaFile), bufferSize, compression);
+        _schemaFormat.begin(_schemaSink);
+        _manifest.add(new SegmentManifest.Segment(SegmentManifest.SCHEMA, schemaFile, null));
+        _executor = Executors.newFixedThreadPool(workers);
+    }
+
+    DumpFormat schemaFormat() {
+        return _schemaFormat;
+    }
+
+    ExportSink schemaSink() {
+        return _schemaSink;
+    }
+
+    /**
+     * Queues up the export of one table (or filter) into a segment of its own.
+     */
+    void submit(String keyspace, String table, final TableExport export) {
+        final String fileName = segmentName(_futures.size() + 1, keyspace + "." + table);
+        _manifest.add(new SegmentManifest.Segment(SegmentManifest.DATA, fileName, keyspace + "." + table));
+        _tables.add(keyspace + "." + table);
+        if(_journal.isDone(fileName) && new File(_directory, fileName).isFile()) {
+            _futures.add(CompletableFuture.completedFuture(null));
+            return;
+        }
+        _futures.add(_executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                DumpFormat format = _formats.get();
+                File file = new File(_directory, fileName);
+                ExportJournal.Progress progress = recoverableProgress(file, fileName);
+                ChannelExportSink sink = reopen(file, progress);
+                try {
+                    if(_journal.lastOffset(fileName) >= 0) {
+                        _journal.resumed(fileName, progress);
+                    }
+                    ExportJournal.Checkpoints checkpoints = _journal.checkpoints(fileName, sink, progress);
+                    format.begin(checkpoints.headerSink());
+                    export.export(format, sink, checkpoints);
+                } finally {
+                    sink.close();
+                }
+                _journal.segmentDone(fileName);
+                return null;
+            }
+        }));
+    }
+
+    //The latest checkpoint of the segment that the file on disk still holds all of - or null to start it over
+    private ExportJournal.Progress recoverableProgress(File file, String fileName) {
+        long lastOffset = _journal.lastOffset(fileName);
+        if(lastOffset < 0 || !file.isFile()) {
+            return null;
+        }
+        long recoverable;
+        if(_compression == Compression.NONE) {
+            recoverable = Math.min(file.length(), lastOffset);
+        } else {
+            //Whatever the compressor still had buffered is gone, so the stream just stops somewhere - count how far it gets
+            recoverable = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = _compression.decompress(new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+                int n = in.read(buffer);
+                while(n >= 0 && recoverable < lastOffset) {
+                    recoverable += n;
+                    n = in.read(buffer);
+                }
+            } catch (IOException e) {
+                //Cut short - we have as much as we've counted
+            }
+        }
+        return _journal.progress(fileName, recoverable);
+    }
+
+    //Opens the segment to carry on writing at the checkpoint - or from scratch, without one
+    private ChannelExportSink reopen(File file, ExportJournal.Progress progress) throws IOException {
+        if(progress == null) {
+            return ChannelExportSink.open(file, _bufferSize, _compression);
+        }
+        if(_compression == Compression.NONE) {
+            return ChannelExportSink.openAt(file, progress.offset, _bufferSize);
+        }
+        //A compressed stream can't just be cut off and appended to, so the part worth keeping is copied into a new one
+        File partial = new File(file.getPath() + ".partial");
+        Files.move(file.toPath(), partial.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        ChannelExportSink sink = ChannelExportSink.open(file, _bufferSize, _compression);
+        try (InputStream in = _compression.decompress(new BufferedInputStream(new FileInputStream(partial), 64 * 1024))) {
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = progress.offset;
+            while(remaining > 0) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if(n < 0) {
+                    throw new IOException("Segment " + partial + " ended before its checkpoint");
+                }
+                sink.write(ByteBuffer.wrap(buffer, 0, n));
+                remaining -= n;
+            }
+        } catch (IOException e) {
+            sink.close();
+            throw e;
+        }
+        Files.delete(partial.toPath());
+        return sink;
+    }
+
+    /**
+     * Waits for every segment, and writes the manifest once they're all done. If any of them failed, the rest are
+     * cancelled and there's no manifest.
+     */
+    void finish() throws IOException, InterruptedException {
+        _schemaSink.close();
+        for(int i = 0; i < _futures.size(); i++) {
+            try {
+                _futures.get(i).get();
+            } catch (ExecutionException e) {
+                shutdown();
+                throw new RuntimeException("Failed to export " + _tables.get(i), e.getCause());
+            }
+        }
+        _manifest.write(_directory);
+        _journal.close();
+    }
+
+    void shutdown() {
+        _executor.shutdownNow();
+        try {
+            _schemaSink.close();
+            _journal.close();
+        } catch (IOException e) {
+            //We're already on the way out because of something else
+        }
+    }
+
+    private String segmentName(int index, String name) {
+        //Quoted table names can contain just about anything, which doesn't belong in a file name
+        return String.format("%04d-%s%s", index, name.replaceAll("[^A-Za-z0-9_.-]", "_"), _extension);
+    }
+}
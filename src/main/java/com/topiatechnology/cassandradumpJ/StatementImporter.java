@@ -0,0 +1,339 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.DriverException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/*
+Everything importData does with a statement once it has been read out of the file: keeping track of the CONSISTENCY
+the file has asked for, sending writes off concurrently (or one at a time with --sync), binding them to cached prepared
+statements with --prepared, grouping them into per-partition batches with --batch-rows, routing them to the replicas
+that own them (with an in-flight limit per replica set, --replica-concurrency), holding them to --max-rows-per-sec and
+--max-mb-per-sec, and making sure nothing is still in flight when a schema change or consistency change comes along.
+Writes that fail for good are written to the --dead-letter-file if there is one, and abort the import if not.
+
+It also keeps the import journal up to date: whoever is reading the file says where each statement ends with
+position(), and every so often the furthest point everything has been written up to is recorded as a checkpoint.
+
+Every write is counted in the run's DumpMetrics, and in those of the table (or segment) being imported.
+
+It doesn't care where the statements come from, which is what lets the CQL text and binary dump formats share it.
+ */
+class StatementImporter {
+
+    private static final long CHECKPOINT_INTERVAL_NANOS = 1000000000L;
+
+    private final Session _session;
+    private final boolean _sync;
+    private final AsyncStatementExecutor _executor;
+    private final PreparedWriteCache _preparedCache;
+    private final PartitionBatcher _batcher;
+    private final WriteRouter _router;
+    private final Throttle _throttle;
+    private final DeadLetterFile _deadLetters; //Null if failures should abort the import
+    private final DumpMetrics _metrics;
+    private final DumpMetrics.Table _tableMetrics;
+    private final ProtocolVersion _protocolVersion;
+    private final CodecRegistry _codecRegistry;
+    private final List<PartitionBatcher.Group> _readyGroups = new ArrayList<>();
+    private final Consumer<String> _log;
+    private final int _dotEvery;
+
+    private ConsistencyLevel _consistencyLevel = ConsistencyLevel.ONE;
+    private long _count = 0;
+
+    private ImportJournal _journal = null;
+    private String _segment = null;
+    private ImportProgress _progress = new ImportProgress(new ImportJournal.Checkpoint(0, ConsistencyLevel.ONE));
+    private long _lastCheckpointAt = System.nanoTime();
+    private long _lastCheckpointOffset = 0;
+
+    StatementImporter(Session session, boolean sync, int concurrency, int replicaConcurrency, boolean prepared,
+                      int preparedCacheSize, int batchRows, int batchBytes, Throttle throttle, boolean adaptive,
+                      DeadLetterFile deadLetters, DumpMetrics metrics, DumpMetrics.Table tableMetrics, Consumer<String> log, int dotEvery) {
+        _session = session;
+        _sync = sync;
+        //Only INSERTs and UPDATEs go through here - anything else (schema changes, CONSISTENCY) waits for it to drain first
+        _executor = sync ? null : new AsyncStatementExecutor(session, concurrency, replicaConcurrency,
+                adaptive ? new AdaptiveConcurrency(concurrency) : null, metrics);
+        Configuration configuration = session.getCluster().getConfiguration();
+        _protocolVersion = configuration.getProtocolOptions().getProtocolVersion();
+        _codecRegistry = configuration.getCodecRegistry();
+        _batcher = batchRows > 1 ? new PartitionBatcher(_protocolVersion, _codecRegistry, batchRows, batchBytes) : null;
+        _router = new WriteRouter(session.getCluster().getMetadata(), _protocolVersion, _codecRegistry);
+        _throttle = throttle;
+        _deadLetters = deadLetters;
+        _metrics = metrics;
+        _tableMetrics = tableMetrics;
+        //Batching has to know the partition key of every write, which means binding its values - so it takes --prepared along with it
+        _preparedCache = prepared || _batcher != null ? new PreparedWriteCache(session, preparedCacheSize) : null;
+        _log = log;
+        _dotEvery = dotEvery;
+    }
+
+    Session session() {
+        return _session;
+    }
+
+    long count() {
+        return _count;
+    }
+
+    /**
+     * Keeps the journal's checkpoints of the given segment from now on, carrying on from the given one (null if the
+     * segment is starting from the beginning). Has to be called before anything is handed over.
+     */
+    void journal(ImportJournal journal, String segment, ImportJournal.Checkpoint from) {
+        _journal = journal;
+        _segment = segment;
+        if(from != null) {
+            _progress = new ImportProgress(from);
+            _consistencyLevel = from.consistency;
+            _lastCheckpointOffset = from.offset;
+        }
+    }
+
+    /**
+     * Says that the statements handed over from now on, up until the next call, end at the given offset in the file.
+     */
+    void position(long end) throws IOException {
+        _progress.advance(end, _consistencyLevel);
+        if(System.nanoTime() - _lastCheckpointAt >= CHECKPOINT_INTERVAL_NANOS) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Records in the journal how far the file has got - whether or not it has been a while since the last time.
+     */
+    void checkpoint() throws IOException {
+        _lastCheckpointAt = System.nanoTime();
+        ImportJournal.Checkpoint checkpoint = _progress.checkpoint();
+        if(_journal != null && checkpoint.offset != _lastCheckpointOffset) {
+            _journal.committed(_segment, checkpoint);
+            _lastCheckpointOffset = checkpoint.offset;
+        }
+    }
+
+    /**
+     * Runs every statement the splitter has left to give.
+     */
+    void executeAll(CqlStatementSplitter statements) throws IOException, InterruptedException {
+        while(statements.next()) {
+            execute(statements.statement(), statements.kind());
+        }
+    }
+
+    /**
+     * Runs every statement the splitter has left to give, each positioned where it ends in the file - the splitter
+     * having started reading the file at the given offset.
+     */
+    void executeAll(CqlStatementSplitter statements, long startOffset) throws IOException, InterruptedException {
+        while(statements.next()) {
+            position(startOffset + statements.offset());
+            execute(statements.statement(), statements.kind());
+        }
+    }
+
+    /**
+     * Runs one complete CQL statement from the dump.
+     */
+    void execute(CharSequence statement, CqlStatementSplitter.Kind kind) throws InterruptedException {
+        if(kind == CqlStatementSplitter.Kind.CONSISTENCY) {
+            //This is new code that wasn't in the python. It appears that we have to handle
+            //Consistency changes a bit more manually than just feeding them in.
+            String conLvl = statement.toString().trim().split("\\s+")[1].replace(";", "").toUpperCase();
+            ConsistencyLevel newConLvl = ConsistencyLevel.valueOf(conLvl);
+            //Only update the consistencyLevel when it actually changes.
+            if(_consistencyLevel != newConLvl) {
+                _log.accept("Updating CONSISTENCY to " + conLvl + "\n");
+                //We're changing consistency level, so anything still in flight
+                //has to finish at the prior level first
+                drainOrFail();
+                _consistencyLevel = newConLvl;
+            }
+        } else if(kind.isWrite()) {
+            long start = System.nanoTime();
+            String cql = statement.toString();
+            Statement write = writeStatement(cql);
+            _metrics.encoded(System.nanoTime() - start);
+            //An INSERT with its values spelled out can safely be sent twice, which lets --adaptive retry it. A counter UPDATE can't.
+            write(write.setIdempotent(kind == CqlStatementSplitter.Kind.INSERT), cql);
+            return; //write() does its own counting
+        } else {
+            drainOrFail();
+            if(_preparedCache != null) {
+                //Probably a schema change, which can leave cached statements pointing at a table that's gone
+                _preparedCache.clear();
+            }
+            _session.execute(_session.prepare(statement.toString()).setConsistencyLevel(_consistencyLevel).bind());
+        }
+        counted();
+    }
+
+    /**
+     * Sends a write at the current consistency level - concurrently, unless we're in --sync mode.
+     * The description is what gets reported if it fails.
+     */
+    void write(Statement statement, String description) throws InterruptedException {
+        _throttle.acquire(1, _throttle.limitsBytes() ? statement.requestSizeInBytes(_protocolVersion, _codecRegistry) : 0);
+        //The statement's place in the file isn't done with until the write is
+        final ImportProgress.Unit unit = _progress.hold();
+        Runnable onCompleted = () -> _progress.release(unit);
+        if(_batcher != null && statement instanceof BoundStatement) {
+            _batcher.add((BoundStatement) statement, description, onCompleted, _readyGroups);
+            for(PartitionBatcher.Group group : _readyGroups) {
+                send(group.statement, group.description, group.onCompleted);
+            }
+            _readyGroups.clear();
+        } else {
+            //Anything that can't be batched still has to go after whatever was before it
+            flushBatch();
+            send(statement, description, onCompleted);
+        }
+        _metrics.rows.mark();
+        _tableMetrics.rows.mark();
+        counted();
+    }
+
+    private void flushBatch() throws InterruptedException {
+        if(_batcher != null) {
+            PartitionBatcher.Group group = _batcher.flush();
+            if(group != null) {
+                send(group.statement, group.description, group.onCompleted);
+            }
+        }
+    }
+
+    private void send(Statement statement, String description, Runnable onCompleted) throws InterruptedException {
+        statement.setConsistencyLevel(_consistencyLevel);
+        //Even with --sync, this gives plain CQL a routing key, so the driver can send it straight to a replica
+        Set<Host> replicas = _router.route(statement);
+        if(_sync) {
+            executeWithRetries(statement, description);
+            onCompleted.run();
+        } else {
+            _executor.submit(statement, description, replicas, onCompleted);
+            if(_executor.hasFailures()) {
+                if(_deadLetters != null) {
+                    deadLetter(_executor.takeFailures());
+                } else {
+                    //No sense in pushing the rest of the file at the cluster once something has gone wrong
+                    drainOrFail();
+                }
+            }
+        }
+    }
+
+    //--sync's version of the retry queue: the same backoff, spent waiting right here
+    private void executeWithRetries(Statement statement, String description) throws InterruptedException {
+        int attempts = 0;
+        while(true) {
+            long start = System.nanoTime();
+            _metrics.inFlight.inc();
+            try {
+                _session.execute(statement);
+                _metrics.wrote(System.nanoTime() - start);
+                return;
+            } catch (DriverException e) {
+                boolean retry = AsyncStatementExecutor.isRetryable(statement, e) && ++attempts < AsyncStatementExecutor.MAX_ATTEMPTS;
+                _metrics.failed(e, retry);
+                if(retry) {
+                    Thread.sleep(AsyncStatementExecutor.backoffMillis(attempts));
+                } else if(_deadLetters != null) {
+                    deadLetter(Collections.singletonList(new AsyncStatementExecutor.Failure(description, e, statement, null)));
+                    return;
+                } else {
+                    throw failed(description, e);
+                }
+            } finally {
+                //With nothing else in flight, all of the time a write takes is time spent waiting on it
+                _metrics.inFlight.dec();
+                _metrics.waited(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void deadLetter(List<AsyncStatementExecutor.Failure> failures) {
+        for(AsyncStatementExecutor.Failure failure : failures) {
+            try {
+                _deadLetters.add(failure.request, failure.cause);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write to " + _deadLetters.file(), e);
+            }
+            //Only once it's safely in the file can the journal move on past it
+            if(failure.onCompleted != null) {
+                failure.onCompleted.run();
+            }
+        }
+    }
+
+    /**
+     * Waits for anything still in flight. Must be called once the whole dump has been read.
+     */
+    void finish() throws InterruptedException {
+        drainOrFail();
+        _progress.close(_consistencyLevel);
+    }
+
+    //With --prepared, writes are bound to a cached PreparedStatement where possible. Anything else is sent as plain CQL.
+    private Statement writeStatement(String statement) {
+        Statement result = null;
+        if(_preparedCache != null) {
+            result = _preparedCache.bind(statement);
+        }
+        if(result == null) {
+            result = new SimpleStatement(statement);
+        }
+        return result;
+    }
+
+    private void counted() {
+        _count++;
+        if (_count % _dotEvery == 0) {
+            _log.accept(".");
+        }
+    }
+
+    //Waits for every in-flight statement to finish. If any of them failed, they're all reported and the import is aborted,
+    //which is what the Python's execute_concurrent(raise_on_first_error=True) amounted to.
+    private void drainOrFail() throws InterruptedException {
+        //A pending batch counts as in flight too
+        flushBatch();
+        if(_executor == null) {
+            return;
+        }
+        List<AsyncStatementExecutor.Failure> failures = _executor.drain();
+        if(_deadLetters != null) {
+            deadLetter(failures);
+        } else if(!failures.isEmpty()) {
+            for(AsyncStatementExecutor.Failure failure : failures) {
+                _log.accept("Failed to import statement \"" + failure.statement + "\": " + failure.cause + "\n");
+            }
+            //The first failure is the one thrown; any others ride along with it
+            RuntimeException failed = failed(failures.get(0).statement, failures.get(0).cause);
+            for(AsyncStatementExecutor.Failure failure : failures.subList(1, failures.size())) {
+                failed.addSuppressed(failed(failure.statement, failure.cause));
+            }
+            throw failed;
+        }
+    }
+
+    private static RuntimeException failed(String statement, Throwable cause) {
+        return new RuntimeException("Failed to import statement \"" + statement + "\"", cause);
+    }
+}
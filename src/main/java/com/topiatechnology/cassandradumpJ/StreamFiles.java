@@ -0,0 +1,71 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/*
+Export and import files that are really streams: "-" for stdout or stdin, or a named pipe (or anything else that isn't
+a regular file or a directory, like /dev/stdout). A stream can only be gone through once, front to back, so there's
+no seeking back to a checkpoint and no journal - and whatever is at the other end has to keep up.
+
+The process's own stdout and stdin are left open when the export or import is done with them, since the rest of the
+program (or a test running it) may well still want them.
+ */
+final class StreamFiles {
+
+    static final String STANDARD = "-";
+
+    private StreamFiles() {
+    }
+
+    /**
+     * Whether the file is "-", for stdout or stdin.
+     */
+    static boolean isStandard(File file) {
+        return file.getPath().equals(STANDARD);
+    }
+
+    /**
+     * Whether the file can only be read or written once, front to back - "-", or something that exists but isn't a
+     * regular file or a directory.
+     */
+    static boolean isStream(File file) {
+        return isStandard(file) || (file.exists() && !file.isFile() && !file.isDirectory());
+    }
+
+    static OutputStream openOutput(File file) throws IOException {
+        if(!isStandard(file)) {
+            return new FileOutputStream(file);
+        }
+        return new FilterOutputStream(new FileOutputStream(FileDescriptor.out)) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    static InputStream openInput(File file) throws IOException {
+        if(!isStandard(file)) {
+            return new FileInputStream(file);
+        }
+        return new FilterInputStream(new FileInputStream(FileDescriptor.in)) {
+            @Override
+            public void close() {
+                //Left open
+            }
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.Row;
+
+import java.io.IOException;
+
+/*
+Turns the rows of one table into whatever the dump format calls for. Rows are collected into chunks, which can be
+filled on one thread and written to the ExportSink on another - that's how TokenRangeExporter's workers encode in parallel.
+
+Implementations are immutable, so one instance is shared by all of a table's workers. Chunks are not thread safe.
+ */
+interface TableEncoder {
+
+    Chunk newChunk();
+
+    interface Chunk {
+
+        /**
+         * Encodes the row onto the end of the chunk. Returns false if the row had nothing that could be written.
+         */
+        boolean add(Row row);
+
+        /**
+         * Roughly how much has been encoded so far (chars or bytes, depending on the format).
+         */
+        int size();
+
+        void writeTo(ExportSink sink) throws IOException;
+
+        void clear();
+    }
+}
@@ -0,0 +1,141 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Session;
+
+import java.nio.ByteBuffer;
+
+/*
+The prepared statement the rows of one table are written with, when each row comes as its values' serialized bytes -
+rows of a binary dump, or from a RowSource. The bytes are bound to it as they are.
+
+Like the CQL format, tables with a counter column become "UPDATE ... SET c = c + ? WHERE k = ?", and everything else
+an INSERT. Null columns are left unset where the protocol allows it (v4 and up), so they don't turn into tombstones.
+ */
+class TableInsert {
+
+    private static final ByteBuffer ZERO_COUNTER = ByteBuffer.wrap(new byte[8]);
+
+    final String name;
+    private final PreparedStatement _statement;
+    private final int[] _bindIndex; //Column of the row -> bind marker of the statement
+    private final boolean[] _isCounter;
+    private final boolean _hasCounters;
+    private final boolean _canLeaveUnset;
+
+    private TableInsert(String name, PreparedStatement statement, int[] bindIndex, boolean[] isCounter, boolean hasCounters, boolean canLeaveUnset) {
+        this.name = name;
+        _statement = statement;
+        _bindIndex = bindIndex;
+        _isCounter = isCounter;
+        _hasCounters = hasCounters;
+        _canLeaveUnset = canLeaveUnset;
+    }
+
+    /**
+     * Prepares the statement for rows of the given columns, whose values were serialized from the given types (as CQL
+     * type names). Fails if the table's columns in the cluster are of different types.
+     */
+    static TableInsert prepare(Session session, String keyspace, String table, String[] names, String[] types) {
+        int columnCount = names.length;
+        boolean[] isCounter = new boolean[columnCount];
+        boolean hasCounters = false;
+        for(int i = 0; i < columnCount; i++) {
+            isCounter[i] = types[i].equals("counter");
+            hasCounters |= isCounter[i];
+        }
+
+        String quotedTable = Metadata.quote(keyspace) + "." + Metadata.quote(table);
+        int[] bindIndex = new int[columnCount];
+        StringBuilder cql = new StringBuilder();
+        if(hasCounters) {
+            //The counters come first in the statement, then the primary key
+            StringBuilder where = new StringBuilder();
+            int counters = 0;
+            for(int i = 0; i < columnCount; i++) {
+                if(isCounter[i]) {
+                    counters++;
+                }
+            }
+            int nextCounter = 0;
+            int nextKey = counters;
+            for(int i = 0; i < columnCount; i++) {
+                String quoted = Metadata.quote(names[i]);
+                if(isCounter[i]) {
+                    cql.append(nextCounter == 0 ? "" : ", ").append(quoted).append(" = ").append(quoted).append(" + ?");
+                    bindIndex[i] = nextCounter++;
+                } else {
+                    where.append(nextKey == counters ? "" : " AND ").append(quoted).append(" = ?");
+                    bindIndex[i] = nextKey++;
+                }
+            }
+            cql.insert(0, "UPDATE " + quotedTable + " SET ").append(" WHERE ").append(where);
+        } else {
+            StringBuilder markers = new StringBuilder();
+            for(int i = 0; i < columnCount; i++) {
+                cql.append(i == 0 ? "" : ", ").append(Metadata.quote(names[i]));
+                markers.append(i == 0 ? "?" : ", ?");
+                bindIndex[i] = i;
+            }
+            cql.insert(0, "INSERT INTO " + quotedTable + " (").append(") VALUES (").append(markers).append(")");
+        }
+
+        PreparedStatement statement = session.prepare(cql.toString());
+        //The bytes are only meaningful to a column of the same type they were serialized from
+        ColumnDefinitions variables = statement.getVariables();
+        for(int i = 0; i < columnCount; i++) {
+            String targetType = variables.getType(bindIndex[i]).toString();
+            if(!sameType(targetType, types[i])) {
+                throw new RuntimeException("Column " + quotedTable + "." + Metadata.quote(names[i]) + " was exported as "
+                        + types[i] + " but is " + targetType + " in the cluster");
+            }
+        }
+        ProtocolVersion protocolVersion = session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
+        return new TableInsert(quotedTable, statement, bindIndex, isCounter, hasCounters, protocolVersion.compareTo(ProtocolVersion.V4) >= 0);
+    }
+
+    int columnCount() {
+        return _bindIndex.length;
+    }
+
+    /**
+     * The row's values bound to the statement, or null if there's nothing to write - a counter row with no counters.
+     */
+    BoundStatement bind(ByteBuffer[] values) {
+        BoundStatement bound = _statement.bind();
+        boolean anyCounter = false;
+        for(int i = 0; i < _bindIndex.length; i++) {
+            ByteBuffer value = values[i];
+            if(_isCounter[i]) {
+                anyCounter |= value != null;
+                //Adding nothing is the same as leaving the counter alone
+                bound.setBytesUnsafe(_bindIndex[i], value != null ? value : ZERO_COUNTER.duplicate());
+            } else if(value != null) {
+                bound.setBytesUnsafe(_bindIndex[i], value);
+            } else if(!_canLeaveUnset) {
+                bound.setToNull(_bindIndex[i]);
+            }
+        }
+        if(_hasCounters && !anyCounter) {
+            //Same as the CQL format - there's nothing to increment
+            return null;
+        }
+        //Counter increments are the only writes that can't safely be sent twice
+        bound.setIdempotent(!_hasCounters);
+        return bound;
+    }
+
+    //Table metadata and prepared statement metadata don't always agree on what's frozen, or whether it's text or varchar -
+    //neither of which changes the bytes
+    private static boolean sameType(String a, String b) {
+        return normalizeType(a).equals(normalizeType(b));
+    }
+
+    private static String normalizeType(String type) {
+        return type.replace("frozen<", "").replace(">", "").replace(" ", "").replaceAll("\\bvarchar\\b", "text");
+    }
+}
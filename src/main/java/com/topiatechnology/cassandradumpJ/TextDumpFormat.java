@@ -0,0 +1,40 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+
+import java.io.IOException;
+
+/*
+The original format, and still the default: the whole dump is a CQL script that cqlsh could run just as well as we can.
+ */
+class TextDumpFormat implements DumpFormat {
+
+    private final boolean _writeTimes;
+
+    TextDumpFormat() {
+        this(true);
+    }
+
+    /**
+     * writeTimes says whether rows are written USING the write times they were selected with (--write-times).
+     */
+    TextDumpFormat(boolean writeTimes) {
+        _writeTimes = writeTimes;
+    }
+
+    @Override
+    public void begin(ExportSink sink) {
+        //Nothing - it's just CQL from the first line on
+    }
+
+    @Override
+    public void statements(ExportSink sink, String cql) throws IOException {
+        sink.write(cql);
+    }
+
+    @Override
+    public TableEncoder beginTable(ExportSink sink, String keyspace, String table, ExportColumns columns, CodecRegistry codecRegistry) throws IOException {
+        sink.write("CONSISTENCY ONE;\n");
+        return new RowEncoder(keyspace, table, columns, codecRegistry, _writeTimes);
+    }
+}
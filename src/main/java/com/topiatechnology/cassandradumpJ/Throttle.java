@@ -0,0 +1,39 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/*
+--max-rows-per-sec and --max-mb-per-sec. Both are token buckets (Guava's RateLimiter), taken from by whoever is about
+to move rows: the thread writing an export, or the thread reading an import file. Making that one thread wait is enough
+to slow the whole thing down - export workers stall once the writer stops taking their chunks, and an import only
+sends what has been read.
+
+A limit of zero (or less) is no limit. Thread safe.
+ */
+class Throttle {
+
+    private final RateLimiter _rows;
+    private final RateLimiter _bytes;
+
+    Throttle(int rowsPerSecond, double megabytesPerSecond) {
+        _rows = rowsPerSecond > 0 ? RateLimiter.create(rowsPerSecond) : null;
+        _bytes = megabytesPerSecond > 0 ? RateLimiter.create(megabytesPerSecond * 1024 * 1024) : null;
+    }
+
+    boolean limitsBytes() {
+        return _bytes != null;
+    }
+
+    /**
+     * Waits until the given number of rows and bytes may go through.
+     */
+    void acquire(int rows, long bytes) {
+        if(_rows != null && rows > 0) {
+            _rows.acquire(rows);
+        }
+        if(_bytes != null && bytes > 0) {
+            //RateLimiter counts in ints - a single chunk is never anywhere near that big, but better safe than sorry
+            _bytes.acquire((int) Math.min(bytes, Integer.MAX_VALUE));
+        }
+    }
+}
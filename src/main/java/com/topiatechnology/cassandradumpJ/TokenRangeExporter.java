@@ -0,0 +1,311 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TokenRange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/*
+A plain "SELECT * FROM ks.table" is one query, paged through one coordinator, and encoded on one thread.
+For a big table that's the bottleneck long before the cluster is.
+
+This instead cuts the ring up into token ranges (the ones from Metadata.getTokenRanges(), each split further into
+splitsPerRange pieces), and scans every piece with its own "WHERE token(pk) > ? AND token(pk) <= ?" query
+on a pool of worker threads. Each scan is sent straight to a replica that owns its range, so the work
+is spread across the whole cluster instead of funneled through whichever node we happened to connect to.
+
+Workers encode their rows (with the table's one shared TableEncoder) into chunks, and the calling thread is the only one that ever touches the ExportSink -
+it just takes finished chunks off a bounded queue and writes them. The order of rows in the output follows
+whichever range finishes first, but every row of a range is still written contiguously within its chunks.
+
+--max-rows-per-sec and --max-mb-per-sec are applied by the writing thread, before each chunk goes out - once it slows
+down, the queue fills up and the workers stop paging. With --adaptive, the number of ranges being scanned at once is
+an AdaptiveConcurrency (up to the number of workers), and a page that times out is fetched again after a back-off.
+
+When the export is being checkpointed (--segmented), a chunk is cut at every page boundary and nowhere else, and
+carries the PagingState of the page after it. So once the writer has written a chunk, every range is in the output up
+to the end of one of its pages, which it can record - and on --resume, finished ranges are skipped and the rest carry
+on from their last recorded page.
+
+The scan can be narrowed down to a slice of the ring (--token-range), and/or a sample of it (--sample). A sample is a
+random choice of the pieces, so the cluster only reads that fraction of the table - and since Murmur3 spreads
+partitions evenly over the ring, that's about the same fraction of its rows, from all over it. The ring is cut finely
+enough for a sample to have at least SAMPLE_PIECES pieces. The choice is seeded by the table's name, so a table comes
+out the same from run to run (and a resumed export picks the same pieces as before).
+ */
+class TokenRangeExporter {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int SAMPLE_PIECES = 256;
+    private static final int MAX_SAMPLE_PIECES = 64 * 1024; //Before sampling - past this, a tiny fraction just gets fewer pieces
+
+    private static class Chunk {
+        final int range;
+        final TableEncoder.Chunk encoded; //Null for the final chunk of a range
+        final int rows;
+        final PagingState next; //When checkpointing, where the range carries on after this chunk
+        final boolean last;
+        final Throwable error;
+
+        Chunk(int range, TableEncoder.Chunk encoded, int rows, PagingState next, boolean last, Throwable error) {
+            this.range = range;
+            this.encoded = encoded;
+            this.rows = rows;
+            this.next = next;
+            this.last = last;
+            this.error = error;
+        }
+    }
+
+    private final Session _session;
+    private final Metadata _metadata;
+    private final int _splitsPerRange;
+    private final int _workers;
+    private final int _fetchSize;
+    private final ExecutorService _executor;
+    private final Throttle _throttle;
+    private final AdaptiveConcurrency _adaptive; //Null unless --adaptive
+    private final DumpMetrics _metrics;
+    private final TokenRange _slice; //Null for the whole ring
+    private final double _sample;
+
+    /**
+     * Exports the part of each table in the slice (null for all of it), or a sample of that part - a fraction of 1 is
+     * all of it.
+     */
+    TokenRangeExporter(Session session, int workers, int splitsPerRange, int fetchSize, Throttle throttle, boolean adaptive, DumpMetrics metrics,
+                       TokenRange slice, double sample) {
+        _session = session;
+        _metadata = session.getCluster().getMetadata();
+        _workers = workers;
+        _splitsPerRange = splitsPerRange;
+        _fetchSize = fetchSize;
+        _executor = Executors.newFixedThreadPool(workers);
+        _throttle = throttle;
+        _adaptive = adaptive ? new AdaptiveConcurrency(workers) : null;
+        _metrics = metrics;
+        _slice = slice;
+        _sample = sample;
+    }
+
+    /**
+     * Scans every row of the table into the sink, returning the number of rows written.
+     * The progress callback gets the row count of each chunk as it's written, on the calling thread.
+     * With checkpoints (which may be null), progress is recorded as it's made, and a resumed segment picks up where it left off.
+     * What's written is counted towards the given table's metrics, as well as the run's.
+     */
+    long export(TableMetadata table, String columnList, final TableEncoder encoder, ExportSink out, IntConsumer progress,
+                ExportJournal.Checkpoints checkpoints, DumpMetrics.Table tableMetrics) throws IOException, InterruptedException {
+        final String keyspace = Metadata.quote(table.getKeyspace().getName());
+        StringBuilder partitionKey = new StringBuilder();
+        for(ColumnMetadata column : table.getPartitionKey()) {
+            if(partitionKey.length() > 0) {
+                partitionKey.append(", ");
+            }
+            partitionKey.append(Metadata.quote(column.getName()));
+        }
+        String select = "SELECT " + columnList + " FROM " + keyspace + "." + Metadata.quote(table.getName()) + " WHERE token(" + partitionKey + ") > ?";
+        //Ranges that run to the end of the ring get a query without an upper bound - see scanRange()
+        final PreparedStatement boundedScan = _session.prepare(select + " AND token(" + partitionKey + ") <= ?");
+        final PreparedStatement unboundedScan = _session.prepare(select);
+
+        List<TokenRange> ranges = ranges(table.getKeyspace().getName() + "." + table.getName());
+
+        final boolean pageAligned = checkpoints != null;
+        if(checkpoints != null) {
+            checkpoints.begin(ranges.size());
+        }
+
+        final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(_workers * 4);
+        List<Future<?>> futures = new ArrayList<>(ranges.size());
+        for(int i = 0; i < ranges.size(); i++) {
+            if(checkpoints != null && checkpoints.isFinished(i)) {
+                continue;
+            }
+            final TokenRange range = ranges.get(i);
+            final int rangeIndex = i;
+            final PagingState resumeFrom = checkpoints == null ? null : checkpoints.resumeFrom(i);
+            futures.add(_executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Throwable error = null;
+                    try {
+                        if(_adaptive != null) {
+                            _adaptive.acquire();
+                        }
+                        try {
+                            scanRange(keyspace, range, rangeIndex, boundedScan, unboundedScan, encoder, chunks, resumeFrom, pageAligned);
+                        } finally {
+                            if(_adaptive != null) {
+                                _adaptive.release();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        return; //We've been cancelled - nobody is waiting for the last chunk anymore
+                    } catch (Throwable t) {
+                        error = t;
+                    }
+                    try {
+                        chunks.put(new Chunk(rangeIndex, null, 0, null, true, error));
+                    } catch (InterruptedException e) {
+                        //Cancelled
+                    }
+                }
+            }));
+        }
+
+        long rowCount = 0;
+        int rangesRemaining = futures.size();
+        try {
+            while(rangesRemaining > 0) {
+                Chunk chunk = chunks.take();
+                if(chunk.error != null) {
+                    throw new RuntimeException("Failed to export a token range of " + keyspace + "." + Metadata.quote(table.getName()), chunk.error);
+                }
+                if(chunk.encoded != null) {
+                    _throttle.acquire(chunk.rows, chunk.encoded.size());
+                    chunk.encoded.writeTo(out);
+                    _metrics.rows.mark(chunk.rows);
+                    _metrics.bytes.mark(chunk.encoded.size());
+                    tableMetrics.rows.mark(chunk.rows);
+                    tableMetrics.bytes.mark(chunk.encoded.size());
+                    rowCount += chunk.rows;
+                    progress.accept(chunk.rows);
+                }
+                if(checkpoints != null && (chunk.last || chunk.next != null)) {
+                    checkpoints.pageWritten(chunk.range, chunk.last ? null : chunk.next);
+                }
+                if(chunk.last) {
+                    rangesRemaining--;
+                }
+            }
+        } finally {
+            if(rangesRemaining > 0) {
+                for(Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+        return rowCount;
+    }
+
+    //The pieces of the ring to scan, in ring order
+    private List<TokenRange> ranges(String tableName) {
+        List<TokenRange> ringRanges = new ArrayList<>();
+        for(TokenRange range : _metadata.getTokenRanges()) {
+            if(_slice == null) {
+                ringRanges.add(range);
+                continue;
+            }
+            for(TokenRange piece : range.unwrap()) {
+                for(TokenRange slicePiece : _slice.unwrap()) {
+                    if(piece.intersects(slicePiece)) {
+                        ringRanges.addAll(piece.intersectWith(slicePiece));
+                    }
+                }
+            }
+        }
+        if(ringRanges.isEmpty()) {
+            return ringRanges;
+        }
+
+        int splits = _splitsPerRange;
+        if(_sample < 1) {
+            int wanted = (int) Math.min(MAX_SAMPLE_PIECES, Math.ceil(SAMPLE_PIECES / _sample));
+            splits = Math.max(splits, (wanted + ringRanges.size() - 1) / ringRanges.size());
+        }
+        List<TokenRange> ranges = new ArrayList<>();
+        for(TokenRange range : ringRanges) {
+            for(TokenRange split : range.splitEvenly(splits)) {
+                ranges.addAll(split.unwrap());
+            }
+        }
+        if(_sample >= 1) {
+            return ranges;
+        }
+
+        List<Integer> chosen = new ArrayList<>(ranges.size());
+        for(int i = 0; i < ranges.size(); i++) {
+            chosen.add(i);
+        }
+        Collections.shuffle(chosen, new Random(tableName.hashCode()));
+        chosen = chosen.subList(0, (int) Math.max(1, Math.round(_sample * ranges.size())));
+        Collections.sort(chosen);
+        List<TokenRange> sample = new ArrayList<>(chosen.size());
+        for(int i : chosen) {
+            sample.add(ranges.get(i));
+        }
+        return sample;
+    }
+
+    private void scanRange(String keyspace, TokenRange range, int rangeIndex, PreparedStatement boundedScan, PreparedStatement unboundedScan,
+                           TableEncoder encoder, BlockingQueue<Chunk> chunks, PagingState resumeFrom, boolean pageAligned) throws InterruptedException {
+        //After unwrap(), the only way a range can have its start at or after its end is (start, minToken] -
+        //i.e. "everything after start". A "token <= minToken" condition would match nothing, so leave it off.
+        BoundStatement statement;
+        if(range.getStart().compareTo(range.getEnd()) >= 0) {
+            statement = unboundedScan.bind().setToken(0, range.getStart());
+        } else {
+            statement = boundedScan.bind().setToken(0, range.getStart()).setToken(1, range.getEnd());
+        }
+        //Spread the ranges across their replicas, skipping any that are down. If none are up, leave it to the load balancer.
+        List<Host> replicas = new ArrayList<>();
+        for(Host host : _metadata.getReplicas(keyspace, range)) {
+            if(host.isUp()) {
+                replicas.add(host);
+            }
+        }
+        if(!replicas.isEmpty()) {
+            statement.setHost(replicas.get(rangeIndex % replicas.size()));
+        }
+
+        statement.setFetchSize(_fetchSize);
+        if(resumeFrom != null) {
+            statement.setPagingState(resumeFrom);
+        }
+        TableEncoder.Chunk encoded = encoder.newChunk();
+        int rowsInChunk = 0;
+        PrefetchingRows rows = new PrefetchingRows(_session, statement, _adaptive, _metrics);
+        for(Row row : rows) {
+            long start = System.nanoTime();
+            if(encoded.add(row)) {
+                rowsInChunk++;
+            }
+            _metrics.encoded(System.nanoTime() - start);
+            if(pageAligned ? rows.endOfPage() : encoded.size() >= CHUNK_SIZE) {
+                //Handed over to the writing thread, so the next rows need a chunk of their own
+                chunks.put(new Chunk(rangeIndex, encoded, rowsInChunk, pageAligned ? rows.pagingState() : null, false, null));
+                encoded = encoder.newChunk();
+                rowsInChunk = 0;
+            }
+            if(Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        if(rowsInChunk > 0) {
+            chunks.put(new Chunk(rangeIndex, encoded, rowsInChunk, null, false, null));
+        }
+    }
+
+    void shutdown() {
+        _executor.shutdownNow();
+    }
+}
@@ -0,0 +1,76 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.AbstractGettableData;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Token;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/*
+A fetched row with some of its values replaced by RowTransformers. The encoders only know how to read a Row, so this
+is one: its first columns read the transformed values, and anything after them (the write times) reads the row as it was
+fetched. The driver's AbstractGettableData does all the typed getters on top of the raw values.
+ */
+final class TransformedRow extends AbstractGettableData implements Row {
+
+    private final Row _row;
+    private final List<ByteBuffer> _values;
+    private final CodecRegistry _codecRegistry;
+
+    TransformedRow(Row row, List<ByteBuffer> values, ProtocolVersion protocolVersion, CodecRegistry codecRegistry) {
+        super(protocolVersion);
+        _row = row;
+        _values = values;
+        _codecRegistry = codecRegistry;
+    }
+
+    @Override
+    protected DataType getType(int i) {
+        return _row.getColumnDefinitions().getType(i);
+    }
+
+    @Override
+    protected String getName(int i) {
+        return _row.getColumnDefinitions().getName(i);
+    }
+
+    @Override
+    protected ByteBuffer getValue(int i) {
+        return i < _values.size() ? _values.get(i) : _row.getBytesUnsafe(i);
+    }
+
+    @Override
+    protected CodecRegistry getCodecRegistry() {
+        return _codecRegistry;
+    }
+
+    @Override
+    protected int getIndexOf(String name) {
+        return _row.getColumnDefinitions().getIndexOf(name);
+    }
+
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+        return _row.getColumnDefinitions();
+    }
+
+    @Override
+    public Token getToken(int i) {
+        return _row.getToken(i);
+    }
+
+    @Override
+    public Token getToken(String name) {
+        return _row.getToken(name);
+    }
+
+    @Override
+    public Token getPartitionKeyToken() {
+        return _row.getPartitionKeyToken();
+    }
+}
@@ -0,0 +1,86 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+The transformation stage of an export: runs each row through the table's RowTransformers, in order, and hands what
+comes out to the encoder. Rows are copied only as far as their value buffers, which the transformers swap out rather
+than change.
+ */
+final class TransformingEncoder implements TableEncoder {
+
+    private final TableEncoder _encoder;
+    private final int _columnCount;
+    private final List<RowTransformer.Table> _transformers;
+    private final ProtocolVersion _protocolVersion;
+    private final CodecRegistry _codecRegistry;
+
+    private TransformingEncoder(TableEncoder encoder, int columnCount, List<RowTransformer.Table> transformers,
+                                ProtocolVersion protocolVersion, CodecRegistry codecRegistry) {
+        _encoder = encoder;
+        _columnCount = columnCount;
+        _transformers = transformers;
+        _protocolVersion = protocolVersion;
+        _codecRegistry = codecRegistry;
+    }
+
+    /**
+     * The encoder with the transformers in front of it - or just the encoder, if none of them do anything to the table.
+     */
+    static TableEncoder of(TableEncoder encoder, String keyspace, String table, ExportColumns columns, List<RowTransformer> transformers,
+                           ProtocolVersion protocolVersion, CodecRegistry codecRegistry) {
+        List<RowTransformer.Table> tableTransformers = new ArrayList<>();
+        for(RowTransformer transformer : transformers) {
+            RowTransformer.Table tableTransformer = transformer.forTable(keyspace, table, columns.names, columns.types);
+            if(tableTransformer != null) {
+                tableTransformers.add(tableTransformer);
+            }
+        }
+        if(tableTransformers.isEmpty()) {
+            return encoder;
+        }
+        return new TransformingEncoder(encoder, columns.size(), tableTransformers, protocolVersion, codecRegistry);
+    }
+
+    @Override
+    public Chunk newChunk() {
+        final Chunk chunk = _encoder.newChunk();
+        return new Chunk() {
+            @Override
+            public boolean add(Row row) {
+                ByteBuffer[] values = new ByteBuffer[_columnCount];
+                for(int i = 0; i < _columnCount; i++) {
+                    values[i] = row.getBytesUnsafe(i);
+                }
+                List<ByteBuffer> valueList = Arrays.asList(values);
+                for(RowTransformer.Table transformer : _transformers) {
+                    transformer.transform(valueList);
+                }
+                return chunk.add(new TransformedRow(row, valueList, _protocolVersion, _codecRegistry));
+            }
+
+            @Override
+            public int size() {
+                return chunk.size();
+            }
+
+            @Override
+            public void writeTo(ExportSink sink) throws IOException {
+                chunk.writeTo(sink);
+            }
+
+            @Override
+            public void clear() {
+                chunk.clear();
+            }
+        };
+    }
+}
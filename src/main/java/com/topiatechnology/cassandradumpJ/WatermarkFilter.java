@@ -0,0 +1,94 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.Row;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+The row filter of an incremental export (--incremental). Every row is still read - Cassandra can't be asked for rows by
+write time - but one whose newest cell was written at or before the table's watermark is dropped here, on the client,
+instead of being encoded. Along the way it keeps track of the newest write time it has seen, which is where the next
+watermark comes from.
+
+A row with no write times at all (nothing but its primary key, or collections) can't be told apart from a new one, so
+it's always kept.
+
+Shared by every worker exporting the table, so the tracking is thread safe.
+ */
+final class WatermarkFilter implements TableEncoder {
+
+    private final TableEncoder _encoder;
+    private final ExportColumns _columns;
+    private final long _after;
+    private final LongAccumulator _newest = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    private final LongAdder _skipped = new LongAdder();
+
+    /**
+     * Keeps the rows with a cell written after the given write time - Long.MIN_VALUE keeps all of them. The columns
+     * have to have their write times.
+     */
+    WatermarkFilter(TableEncoder encoder, ExportColumns columns, long after) {
+        _encoder = encoder;
+        _columns = columns;
+        _after = after;
+    }
+
+    /**
+     * The newest write time of any row seen so far, or Long.MIN_VALUE if none had one.
+     */
+    long newest() {
+        return _newest.get();
+    }
+
+    long skipped() {
+        return _skipped.sum();
+    }
+
+    @Override
+    public Chunk newChunk() {
+        final Chunk chunk = _encoder.newChunk();
+        return new Chunk() {
+            @Override
+            public boolean add(Row row) {
+                long newest = newest(row);
+                if(newest == Long.MIN_VALUE) {
+                    return chunk.add(row);
+                }
+                _newest.accumulate(newest);
+                if(newest <= _after) {
+                    _skipped.increment();
+                    return false;
+                }
+                return chunk.add(row);
+            }
+
+            @Override
+            public int size() {
+                return chunk.size();
+            }
+
+            @Override
+            public void writeTo(ExportSink sink) throws IOException {
+                chunk.writeTo(sink);
+            }
+
+            @Override
+            public void clear() {
+                chunk.clear();
+            }
+        };
+    }
+
+    private long newest(Row row) {
+        long newest = Long.MIN_VALUE;
+        for(int i = 0; i < _columns.size(); i++) {
+            int writeTime = _columns.writeTimeIndex(i);
+            if(writeTime >= 0 && !row.isNull(writeTime)) {
+                newest = Math.max(newest, row.getLong(writeTime));
+            }
+        }
+        return newest;
+    }
+}
@@ -0,0 +1,96 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.exceptions.InvalidTypeException;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+
+/*
+Works out which replicas a write belongs to, so the import can keep a separate in-flight limit per replica set.
+
+Bound statements (--prepared, --batch-rows, binary dumps) already carry their partition key, and the driver's
+TokenAwarePolicy sends them straight to a replica. Plain CQL text doesn't - the driver has no idea what partition an
+INSERT is for, so it goes to whichever node is next in line, which then has to forward it. For those, the partition
+key literals are picked out of the statement, serialized the way Cassandra would, and set as the statement's routing
+key - after which it gets routed like any bound statement.
+
+Without the cluster's metadata (a session that has none, like the benchmarks' stub), nothing is routed.
+
+Not thread safe - it belongs to whichever thread is reading the import file.
+ */
+class WriteRouter {
+
+    private final Metadata _metadata;
+    private final ProtocolVersion _protocolVersion;
+    private final CodecRegistry _codecRegistry;
+
+    WriteRouter(Metadata metadata, ProtocolVersion protocolVersion, CodecRegistry codecRegistry) {
+        _metadata = metadata;
+        _protocolVersion = protocolVersion;
+        _codecRegistry = codecRegistry;
+    }
+
+    /**
+     * The replicas that own the statement's partition, or null if there's no telling. Gives plain CQL writes a
+     * routing key (and keyspace) along the way, where one can be worked out.
+     */
+    Set<Host> route(Statement statement) {
+        if(statement instanceof SimpleStatement && statement.getKeyspace() == null) {
+            setRoutingKey((SimpleStatement) statement);
+        }
+        String keyspace = statement.getKeyspace();
+        ByteBuffer key = statement.getRoutingKey(_protocolVersion, _codecRegistry);
+        if(keyspace == null || key == null || _metadata == null) {
+            return null;
+        }
+        Set<Host> replicas = _metadata.getReplicas(Metadata.quote(keyspace), key);
+        return replicas.isEmpty() ? null : replicas;
+    }
+
+    private void setRoutingKey(SimpleStatement statement) {
+        WriteStatementParser.ParsedWrite parsed = WriteStatementParser.parse(statement.getQueryString());
+        if(parsed == null) {
+            return;
+        }
+        KeyspaceMetadata keyspace = _metadata == null ? null : _metadata.getKeyspace(parsed.keyspace);
+        TableMetadata table = keyspace == null ? null : keyspace.getTable(parsed.table);
+        if(table == null) {
+            return;
+        }
+        List<ColumnMetadata> partitionKey = table.getPartitionKey();
+        ByteBuffer[] components = new ByteBuffer[partitionKey.size()];
+        for(int i = 0; i < parsed.columns.size(); i++) {
+            ColumnMetadata column = table.getColumn(parsed.columns.get(i));
+            int component = column == null ? -1 : partitionKey.indexOf(column);
+            if(component < 0) {
+                continue;
+            }
+            TypeCodec<Object> codec = _codecRegistry.codecFor(column.getType());
+            try {
+                Object value = codec.parse(parsed.literals.get(i));
+                components[component] = value == null ? null : codec.serialize(value, _protocolVersion);
+            } catch (InvalidTypeException | IllegalArgumentException e) {
+                return;
+            }
+        }
+        for(ByteBuffer component : components) {
+            if(component == null) {
+                //Cassandra will reject it anyway, and it'll say why better than we could
+                return;
+            }
+        }
+        statement.setKeyspace(keyspace.getName());
+        statement.setRoutingKey(components);
+    }
+}
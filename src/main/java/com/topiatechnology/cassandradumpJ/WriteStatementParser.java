@@ -0,0 +1,313 @@
+package com.topiatechnology.cassandradumpJ;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Picks apart the two kinds of data statement that tableToCQLFile writes out:
+
+    INSERT INTO "ks"."t" ("a", "b") VALUES (<literal>, <literal>) [USING TIMESTAMP <literal> [AND TTL <literal>]];
+    UPDATE "ks"."t" SET c = c + <literal>, ... WHERE k = <literal> AND ...;
+
+into the table, the column list, and the still-encoded CQL literals (the USING clause only comes from --write-times). This is deliberately not a general CQL parser -
+it only has to understand what TypeCodec.format() produces, and anything it doesn't recognize comes back as null so
+the caller can fall back to sending the statement text as-is.
+ */
+class WriteStatementParser {
+
+    static class ParsedWrite {
+        final String keyspace;
+        final String table;
+        final boolean counterUpdate;
+        //For a counter UPDATE, the SET columns come first, followed by the WHERE columns - i.e. bind order
+        final List<String> columns;
+        final List<String> literals;
+        final int setColumnCount;
+        //The literals of the USING clause, or null - bound after the columns, timestamp first
+        final String timestamp;
+        final String ttl;
+
+        ParsedWrite(String keyspace, String table, boolean counterUpdate, List<String> columns, List<String> literals, int setColumnCount,
+                    String timestamp, String ttl) {
+            this.keyspace = keyspace;
+            this.table = table;
+            this.counterUpdate = counterUpdate;
+            this.columns = columns;
+            this.literals = literals;
+            this.setColumnCount = setColumnCount;
+            this.timestamp = timestamp;
+            this.ttl = ttl;
+        }
+
+        /**
+         * The same statement with every literal replaced by a bind marker. Two rows of the same table with
+         * the same set of columns come out identical, which is what makes this usable as a cache key.
+         */
+        String toPreparableCQL() {
+            StringBuilder sb = new StringBuilder();
+            if(counterUpdate) {
+                sb.append("UPDATE ").append(keyspace).append('.').append(table).append(" SET ");
+                for(int i = 0; i < setColumnCount; i++) {
+                    if(i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(columns.get(i)).append(" = ").append(columns.get(i)).append(" + ?");
+                }
+                sb.append(" WHERE ");
+                for(int i = setColumnCount; i < columns.size(); i++) {
+                    if(i > setColumnCount) {
+                        sb.append(" AND ");
+                    }
+                    sb.append(columns.get(i)).append(" = ?");
+                }
+            } else {
+                sb.append("INSERT INTO ").append(keyspace).append('.').append(table).append(" (");
+                for(int i = 0; i < columns.size(); i++) {
+                    if(i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(columns.get(i));
+                }
+                sb.append(") VALUES (");
+                for(int i = 0; i < columns.size(); i++) {
+                    sb.append(i > 0 ? ", ?" : "?");
+                }
+                sb.append(')');
+                if(timestamp != null) {
+                    sb.append(" USING TIMESTAMP ?");
+                }
+                if(ttl != null) {
+                    sb.append(timestamp != null ? " AND TTL ?" : " USING TTL ?");
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private final String _cql;
+    private int _pos = 0;
+
+    private WriteStatementParser(String cql) {
+        _cql = cql;
+    }
+
+    /**
+     * Returns null when the statement isn't an INSERT/UPDATE in the shape tableToCQLFile produces.
+     * Identifiers are kept exactly as written (quotes and all), so they can be pasted straight back into CQL
+     * or handed to the driver's metadata lookups, which understand the quoting.
+     */
+    static ParsedWrite parse(String cql) {
+        WriteStatementParser parser = new WriteStatementParser(cql);
+        try {
+            ParsedWrite parsed;
+            if(parser.acceptKeyword("INSERT")) {
+                parsed = parser.parseInsert();
+            } else if(parser.acceptKeyword("UPDATE")) {
+                parsed = parser.parseUpdate();
+            } else {
+                return null;
+            }
+            parser.skipWhitespace();
+            if(parser.peek() == ';') {
+                parser._pos++;
+                parser.skipWhitespace();
+            }
+            return parser.atEnd() ? parsed : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private ParsedWrite parseInsert() {
+        expectKeyword("INTO");
+        String keyspace = readIdentifier();
+        expect('.');
+        String table = readIdentifier();
+        List<String> columns = new ArrayList<>();
+        expect('(');
+        do {
+            columns.add(readIdentifier());
+        } while(accept(','));
+        expect(')');
+        expectKeyword("VALUES");
+        List<String> literals = new ArrayList<>();
+        expect('(');
+        do {
+            literals.add(readLiteral());
+        } while(accept(','));
+        expect(')');
+        if(columns.size() != literals.size()) {
+            throw new IllegalArgumentException("Column/value count mismatch");
+        }
+        String timestamp = null;
+        String ttl = null;
+        if(acceptKeyword("USING")) {
+            do {
+                if(timestamp == null && acceptKeyword("TIMESTAMP")) {
+                    timestamp = readLiteral();
+                } else if(ttl == null && acceptKeyword("TTL")) {
+                    ttl = readLiteral();
+                } else {
+                    throw new IllegalArgumentException("Expected TIMESTAMP or TTL at " + _pos);
+                }
+            } while(acceptKeyword("AND"));
+        }
+        return new ParsedWrite(keyspace, table, false, columns, literals, columns.size(), timestamp, ttl);
+    }
+
+    private ParsedWrite parseUpdate() {
+        String keyspace = readIdentifier();
+        expect('.');
+        String table = readIdentifier();
+        expectKeyword("SET");
+        List<String> columns = new ArrayList<>();
+        List<String> literals = new ArrayList<>();
+        do {
+            String column = readIdentifier();
+            expect('=');
+            if(!readIdentifier().equals(column)) {
+                throw new IllegalArgumentException("Not a counter increment");
+            }
+            expect('+');
+            columns.add(column);
+            literals.add(readLiteral());
+        } while(accept(','));
+        int setColumnCount = columns.size();
+        expectKeyword("WHERE");
+        do {
+            columns.add(readIdentifier());
+            expect('=');
+            literals.add(readLiteral());
+        } while(acceptKeyword("AND"));
+        return new ParsedWrite(keyspace, table, true, columns, literals, setColumnCount, null, null);
+    }
+
+    private boolean atEnd() {
+        return _pos >= _cql.length();
+    }
+
+    private char peek() {
+        return atEnd() ? '\0' : _cql.charAt(_pos);
+    }
+
+    private void skipWhitespace() {
+        while(!atEnd() && Character.isWhitespace(_cql.charAt(_pos))) {
+            _pos++;
+        }
+    }
+
+    private boolean accept(char c) {
+        skipWhitespace();
+        if(peek() == c) {
+            _pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if(!accept(c)) {
+            throw new IllegalArgumentException("Expected '" + c + "' at " + _pos);
+        }
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        skipWhitespace();
+        int end = _pos + keyword.length();
+        if(end > _cql.length() || !_cql.regionMatches(true, _pos, keyword, 0, keyword.length())) {
+            return false;
+        }
+        //Make sure we matched a whole word, not the start of an identifier
+        if(end < _cql.length() && isIdentifierChar(_cql.charAt(end))) {
+            return false;
+        }
+        _pos = end;
+        return true;
+    }
+
+    private void expectKeyword(String keyword) {
+        if(!acceptKeyword(keyword)) {
+            throw new IllegalArgumentException("Expected " + keyword + " at " + _pos);
+        }
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private String readIdentifier() {
+        skipWhitespace();
+        int start = _pos;
+        if(peek() == '"') {
+            _pos++;
+            while(true) {
+                if(atEnd()) {
+                    throw new IllegalArgumentException("Unterminated quoted identifier");
+                }
+                char c = _cql.charAt(_pos++);
+                if(c == '"') {
+                    if(peek() == '"') { //An escaped "" inside the identifier
+                        _pos++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+        } else {
+            while(!atEnd() && isIdentifierChar(_cql.charAt(_pos))) {
+                _pos++;
+            }
+        }
+        if(_pos == start) {
+            throw new IllegalArgumentException("Expected identifier at " + _pos);
+        }
+        return _cql.substring(start, _pos);
+    }
+
+    //A literal as written by TypeCodec.format() never has whitespace, commas or a closing paren at the top level -
+    //those only ever show up inside quotes or nested collection/tuple/UDT brackets
+    private String readLiteral() {
+        skipWhitespace();
+        int start = _pos;
+        int depth = 0;
+        while(!atEnd()) {
+            char c = _cql.charAt(_pos);
+            if(c == '\'') {
+                skipStringLiteral();
+                continue;
+            }
+            if(c == '(' || c == '[' || c == '{') {
+                depth++;
+            } else if(c == ')' || c == ']' || c == '}') {
+                if(depth == 0) {
+                    break;
+                }
+                depth--;
+            } else if(depth == 0 && (c == ',' || c == ';' || Character.isWhitespace(c))) {
+                break;
+            }
+            _pos++;
+        }
+        if(_pos == start || depth != 0) {
+            throw new IllegalArgumentException("Expected literal at " + start);
+        }
+        return _cql.substring(start, _pos);
+    }
+
+    private void skipStringLiteral() {
+        _pos++; //opening quote
+        while(true) {
+            if(atEnd()) {
+                throw new IllegalArgumentException("Unterminated string literal");
+            }
+            char c = _cql.charAt(_pos++);
+            if(c == '\'') {
+                if(peek() == '\'') { //An escaped '' inside the string
+                    _pos++;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.topiatechnology.cassandradumpJ;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.WriteType;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyTest {
+
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void testHalvesOnOverloadOncePerWindow() {
+        AdaptiveConcurrency adaptive = new AdaptiveConcurrency(64);
+        adaptive.onOverload();
+        Assert.assertEquals(32, adaptive.limit());
+        //The rest of what was in flight reports the same trouble - that shouldn't halve it again straight away
+        for(int i = 0; i < 31; i++) {
+            adaptive.onOverload();
+        }
+        Assert.assertEquals(32, adaptive.limit());
+        adaptive.onOverload();
+        Assert.assertEquals(16, adaptive.limit());
+        Assert.assertEquals(2, adaptive.decreases());
+        for(int i = 0; i < 100; i++) {
+            adaptive.onOverload();
+        }
+        Assert.assertTrue(adaptive.limit() >= 1);
+    }
+
+    @Test
+    public void testGrowsBackOnePerWindow() {
+        AdaptiveConcurrency adaptive = new AdaptiveConcurrency(8);
+        adaptive.onOverload();
+        Assert.assertEquals(4, adaptive.limit());
+        for(int i = 0; i < 4; i++) {
+            adaptive.onSuccess(MILLIS);
+        }
+        Assert.assertEquals(5, adaptive.limit());
+        for(int i = 0; i < 1000; i++) {
+            adaptive.onSuccess(MILLIS);
+        }
+        Assert.assertEquals(8, adaptive.limit());
+    }
+
+    @Test
+    public void testBacksOffWhenLatencyRises() {
+        AdaptiveConcurrency adaptive = new AdaptiveConcurrency(16);
+        for(int i = 0; i < 100; i++) {
+            adaptive.onSuccess(MILLIS);
+        }
+        Assert.assertEquals(16, adaptive.limit());
+        for(int i = 0; i < 100; i++) {
+            adaptive.onSuccess(20 * MILLIS);
+        }
+        Assert.assertTrue(adaptive.limit() < 16);
+    }
+
+    @Test
+    public void testIsOverload() {
+        Assert.assertTrue(AdaptiveConcurrency.isOverload(new WriteTimeoutException(ConsistencyLevel.ONE, WriteType.SIMPLE, 0, 1)));
+        Assert.assertFalse(AdaptiveConcurrency.isOverload(new IllegalStateException()));
+    }
+}
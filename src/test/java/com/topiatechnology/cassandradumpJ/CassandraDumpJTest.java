@@ -6,11 +6,17 @@ import com.datastax.driver.core.CodecRegistry;
 import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.KeyspaceMetadata;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.TypeCodec;
 import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.google.common.hash.Hashing;
 import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -19,18 +25,30 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 
 public class CassandraDumpJTest {
@@ -268,6 +286,27 @@ public class CassandraDumpJTest {
         Assert.assertTrue(allTestKeyspaceTables.isEmpty());
     }
 
+    @Test
+    public void testExportSingleTable() throws IOException {
+        //--cf on its own exports that table and nothing else - not every keyspace as well
+        File exportFile = new File("target/testExportOneTableFile.txt");
+        String[] args = {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--cf", "keyspace_1.table_1",
+                "--export-file", exportFile.getAbsolutePath()};
+        CassandraDumpJ.main(args);
+        List<String> tables = new ArrayList<>();
+        for(String line : Files.readAllLines(exportFile.toPath(), StandardCharsets.UTF_8)) {
+            if(line.startsWith("CREATE TABLE ")) {
+                tables.add(line.split(" ")[2]);
+            }
+        }
+        Assert.assertEquals(Collections.singletonList("keyspace_1.table_1"), tables);
+        Assert.assertEquals(countLinesStartingWith(exportFile, "INSERT INTO"),
+                countLinesStartingWith(exportFile, "INSERT INTO \"keyspace_1\".\"table_1\""));
+    }
+
     @Test
     public void testExportAndImportSingleKeyspace() {
         File exportFile = new File("target/testExportOneKeyspaceFile2.txt");
@@ -303,6 +342,1101 @@ public class CassandraDumpJTest {
         Assert.assertEquals("testStrData", result);
     }
 
+    @Test
+    public void testExportAndImportSingleKeyspaceAsync() {
+        File exportFile = new File("target/testExportOneKeyspaceFile3.txt");
+        if(exportFile.exists()) {
+            exportFile.delete();
+        }
+        String[] args = {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--keyspace", "keyspace_1",
+                "--export-file", exportFile.getAbsolutePath()};
+        CassandraDumpJ.main(args);
+        Assert.assertTrue(exportFile.exists());
+
+        //No --sync this time, and a small in-flight limit so that the backpressure actually kicks in
+        args = new String[] {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--import-file", exportFile.getAbsolutePath(),
+                "--concurrency", "2"};
+        _session.execute("DROP KEYSPACE keyspace_1");
+        Assert.assertNull(_cluster.getMetadata().getKeyspace("keyspace_1"));
+        CassandraDumpJ.main(args);
+        Assert.assertNotNull(_cluster.getMetadata().getKeyspace("keyspace_1"));
+        ResultSet rs = _session.execute("SELECT string FROM keyspace_1.table_1");
+        Assert.assertEquals("testStrData", rs.one().get(0, String.class));
+        rs = _session.execute("SELECT count FROM keyspace_1.table_2");
+        Assert.assertEquals(2L, (long) rs.one().get(0, Long.class));
+    }
+
+    @Test
+    public void testExportAndImportSingleKeyspacePrepared() {
+        File exportFile = new File("target/testExportOneKeyspaceFile4.txt");
+        if(exportFile.exists()) {
+            exportFile.delete();
+        }
+        String[] args = {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--keyspace", "keyspace_1",
+                "--export-file", exportFile.getAbsolutePath()};
+        CassandraDumpJ.main(args);
+        Assert.assertTrue(exportFile.exists());
+
+        args = new String[] {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--import-file", exportFile.getAbsolutePath(),
+                "--prepared"};
+        _session.execute("DROP KEYSPACE keyspace_1");
+        Assert.assertNull(_cluster.getMetadata().getKeyspace("keyspace_1"));
+        CassandraDumpJ.main(args);
+        ResultSet rs = _session.execute("SELECT string, integer, long FROM keyspace_1.table_1");
+        Row row = rs.one();
+        Assert.assertEquals("testStrData", row.getString("string"));
+        Assert.assertEquals(7, row.getInt("integer"));
+        Assert.assertEquals(8888L, row.getLong("long"));
+        rs = _session.execute("SELECT count FROM keyspace_1.table_2");
+        Assert.assertEquals(2L, (long) rs.one().get(0, Long.class));
+    }
+
+    @Test
+    public void testParallelExportAndImport() {
+        //A keyspace of its own, with enough rows that they land in plenty of different token ranges
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS parallel_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS parallel_keyspace.wide (pk int, ck int, val text, PRIMARY KEY (pk, ck))");
+        try {
+            PreparedStatement insert = _session.prepare("INSERT INTO parallel_keyspace.wide (pk, ck, val) VALUES (?, ?, ?)");
+            for(int i = 0; i < 500; i++) {
+                _session.execute(insert.bind(i % 50, i, "row" + i));
+            }
+            File exportFile = new File("target/testParallelExportFile1.txt");
+            if(exportFile.exists()) {
+                exportFile.delete();
+            }
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "parallel_keyspace",
+                    "--export-workers", "4",
+                    "--splits-per-range", "3",
+                    "--export-file", exportFile.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            Assert.assertTrue(exportFile.exists());
+
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--import-file", exportFile.getAbsolutePath()};
+            _session.execute("DROP KEYSPACE parallel_keyspace");
+            CassandraDumpJ.main(args);
+            ResultSet rs = _session.execute("SELECT count(*) FROM parallel_keyspace.wide");
+            Assert.assertEquals(500L, rs.one().getLong(0));
+            rs = _session.execute("SELECT val FROM parallel_keyspace.wide WHERE pk = 7 AND ck = 107");
+            Assert.assertEquals("row107", rs.one().getString(0));
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS parallel_keyspace");
+        }
+    }
+
+    @Test
+    public void testExportWithSmallFetchSize() {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS paged_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS paged_keyspace.paged (id int PRIMARY KEY, val text)");
+        try {
+            PreparedStatement insert = _session.prepare("INSERT INTO paged_keyspace.paged (id, val) VALUES (?, ?)");
+            for(int i = 0; i < 100; i++) {
+                //Every tenth row has no value, which should leave the column out of its INSERT rather than write a NULL
+                _session.execute(insert.bind(i, i % 10 == 0 ? null : "row" + i));
+            }
+            File exportFile = new File("target/testPagedExportFile1.txt");
+            if(exportFile.exists()) {
+                exportFile.delete();
+            }
+            //7 doesn't divide 100, so the last page is a partial one
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "paged_keyspace",
+                    "--fetch-size", "7",
+                    "--export-file", exportFile.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            Assert.assertEquals(100, countLinesStartingWith(exportFile, "INSERT INTO \"paged_keyspace\".\"paged\""));
+            Assert.assertEquals(10, countLinesStartingWith(exportFile, "INSERT INTO \"paged_keyspace\".\"paged\" (\"id\") VALUES ("));
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS paged_keyspace");
+        }
+    }
+
+    @Test
+    public void testCompressedExportAndImport() {
+        for(String compression : new String[] {"gzip", "lz4", "zstd"}) {
+            File exportFile = new File("target/testCompressedExportFile." + compression);
+            if(exportFile.exists()) {
+                exportFile.delete();
+            }
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "keyspace_2",
+                    "--compress", compression,
+                    "--export-file", exportFile.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            Assert.assertTrue(exportFile.exists());
+
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--import-file", exportFile.getAbsolutePath()};
+            _session.execute("DROP KEYSPACE keyspace_2");
+            CassandraDumpJ.main(args);
+            ResultSet rs = _session.execute("SELECT string FROM keyspace_2.table_3");
+            Assert.assertEquals("testStrData2", rs.one().getString(0));
+        }
+    }
+
+    @Test
+    public void testBinaryExportAndImport() {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS binary_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS binary_keyspace.typed (id int PRIMARY KEY, data blob, tags map<text, int>, at timestamp, val text)");
+        try {
+            PreparedStatement insert = _session.prepare("INSERT INTO binary_keyspace.typed (id, data, tags, at, val) VALUES (?, ?, ?, ?, ?)");
+            Map<String, Integer> tags = new HashMap<>();
+            tags.put("a", 1);
+            tags.put("b", 2);
+            for(int i = 0; i < 50; i++) {
+                _session.execute(insert.bind(i, ByteBuffer.wrap(new byte[] {(byte) i, 0, (byte) 0xff}), tags, new Date(1000L * i), i % 10 == 0 ? null : "row" + i));
+            }
+            for(String workers : new String[] {"1", "3"}) {
+                File exportFile = new File("target/testBinaryExportFile" + workers + ".bin");
+                if(exportFile.exists()) {
+                    exportFile.delete();
+                }
+                String[] args = {
+                        "--host", _cassandraAddress,
+                        "--port", "" + _cassandraPort,
+                        "--keyspace", "keyspace_1",
+                        "--keyspace", "binary_keyspace",
+                        "--format", "binary",
+                        "--export-workers", workers,
+                        "--export-file", exportFile.getAbsolutePath()};
+                CassandraDumpJ.main(args);
+                Assert.assertTrue(exportFile.exists());
+
+                args = new String[] {
+                        "--host", _cassandraAddress,
+                        "--port", "" + _cassandraPort,
+                        "--import-file", exportFile.getAbsolutePath()};
+                _session.execute("DROP KEYSPACE keyspace_1");
+                _session.execute("DROP KEYSPACE binary_keyspace");
+                CassandraDumpJ.main(args);
+                ResultSet rs = _session.execute("SELECT string FROM keyspace_1.table_1");
+                Assert.assertEquals("testStrData", rs.one().getString(0));
+                rs = _session.execute("SELECT count FROM keyspace_1.table_2");
+                Assert.assertEquals(2L, rs.one().getLong(0));
+                rs = _session.execute("SELECT count(*) FROM binary_keyspace.typed");
+                Assert.assertEquals(50L, rs.one().getLong(0));
+                Row row = _session.execute("SELECT data, tags, at, val FROM binary_keyspace.typed WHERE id = 7").one();
+                Assert.assertEquals(ByteBuffer.wrap(new byte[] {7, 0, (byte) 0xff}), row.getBytes("data"));
+                Assert.assertEquals(tags, row.getMap("tags", String.class, Integer.class));
+                Assert.assertEquals(new Date(7000L), row.getTimestamp("at"));
+                Assert.assertEquals("row7", row.getString("val"));
+                Assert.assertTrue(_session.execute("SELECT val FROM binary_keyspace.typed WHERE id = 20").one().isNull("val"));
+            }
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS binary_keyspace");
+        }
+    }
+
+    @Test
+    public void testSegmentedExport() throws IOException {
+        File exportDir = new File("target/testSegmentedExport1");
+        deleteRecursively(exportDir);
+        String[] args = {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--keyspace", "keyspace_1",
+                "--keyspace", "keyspace_2",
+                "--segmented",
+                "--table-workers", "2",
+                "--export-file", exportDir.getAbsolutePath()};
+        CassandraDumpJ.main(args);
+        List<String> manifest = Files.readAllLines(new File(exportDir, "manifest.txt").toPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(Arrays.asList(
+                "cassandradumpJ-segments 1",
+                "schema 0000-schema.cql",
+                "data 0001-keyspace_1.table_1.cql keyspace_1.table_1",
+                "data 0002-keyspace_1.table_2.cql keyspace_1.table_2",
+                "data 0003-keyspace_2.table_3.cql keyspace_2.table_3"), manifest);
+        long table1Rows = _session.execute("SELECT count(*) FROM keyspace_1.table_1").one().getLong(0);
+        Assert.assertEquals(table1Rows, countLinesStartingWith(new File(exportDir, "0001-keyspace_1.table_1.cql"), "INSERT INTO \"keyspace_1\".\"table_1\""));
+        Assert.assertEquals(0, countLinesStartingWith(new File(exportDir, "0000-schema.cql"), "INSERT"));
+
+        //The segments, one after another in manifest order, are the same thing as a single export file
+        File combined = new File("target/testSegmentedExport1.cql");
+        try (OutputStream out = new FileOutputStream(combined)) {
+            for(String line : manifest.subList(1, manifest.size())) {
+                Files.copy(new File(exportDir, line.split(" ")[1]).toPath(), out);
+            }
+        }
+        args = new String[] {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--import-file", combined.getAbsolutePath()};
+        _session.execute("DROP KEYSPACE keyspace_1");
+        _session.execute("DROP KEYSPACE keyspace_2");
+        CassandraDumpJ.main(args);
+        Assert.assertEquals("testStrData", _session.execute("SELECT string FROM keyspace_1.table_1").one().getString(0));
+        Assert.assertEquals(2L, _session.execute("SELECT count FROM keyspace_1.table_2").one().getLong(0));
+        Assert.assertEquals("testStrData2", _session.execute("SELECT string FROM keyspace_2.table_3").one().getString(0));
+    }
+
+    @Test
+    public void testSegmentedExportAndImport() {
+        for(String format : new String[] {"cql", "binary"}) {
+            File exportDir = new File("target/testSegmentedExport2-" + format);
+            deleteRecursively(exportDir);
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "keyspace_1",
+                    "--keyspace", "keyspace_2",
+                    "--segmented",
+                    "--format", format,
+                    "--compress", "lz4",
+                    "--export-file", exportDir.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--import-workers", "2",
+                    "--import-file", exportDir.getAbsolutePath()};
+            _session.execute("DROP KEYSPACE keyspace_1");
+            _session.execute("DROP KEYSPACE keyspace_2");
+            CassandraDumpJ.main(args);
+            Assert.assertEquals("testStrData", _session.execute("SELECT string FROM keyspace_1.table_1").one().getString(0));
+            Assert.assertEquals(2L, _session.execute("SELECT count FROM keyspace_1.table_2").one().getLong(0));
+            Assert.assertEquals("testStrData2", _session.execute("SELECT string FROM keyspace_2.table_3").one().getString(0));
+        }
+    }
+
+    @Test
+    public void testMetricsJson() throws IOException {
+        File exportFile = new File("target/testMetricsJson.cql");
+        File metricsFile = new File("target/testMetricsJson-export.json");
+        String[] args = {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--keyspace", "keyspace_2",
+                "--no-create",
+                "--export-workers", "2",
+                "--metrics-json", metricsFile.getAbsolutePath(),
+                "--export-file", exportFile.getAbsolutePath()};
+        CassandraDumpJ.main(args);
+        //The report made at the end is the last line, and has everything that was exported in it
+        List<String> reports = Files.readAllLines(metricsFile.toPath(), StandardCharsets.UTF_8);
+        String last = reports.get(reports.size() - 1);
+        long table3Rows = _session.execute("SELECT count(*) FROM keyspace_2.table_3").one().getLong(0);
+        Assert.assertTrue(last, last.contains("\"tables.keyspace_2.table_3.rows\":{\"count\":" + table3Rows + ","));
+        //Every byte of the file but the table's CONSISTENCY line is a row
+        Assert.assertTrue(last, last.contains("\"bytes\":{\"count\":" + (exportFile.length() - "CONSISTENCY ONE;\n".length()) + ","));
+        Assert.assertTrue(last, last.contains("\"page-fetches\":{\"count\":"));
+        Assert.assertTrue(last, last.contains("\"driver.requests\":{"));
+
+        metricsFile = new File("target/testMetricsJson-import.json");
+        args = new String[] {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--metrics-json", metricsFile.getAbsolutePath(),
+                "--import-file", exportFile.getAbsolutePath()};
+        CassandraDumpJ.main(args);
+        reports = Files.readAllLines(metricsFile.toPath(), StandardCharsets.UTF_8);
+        last = reports.get(reports.size() - 1);
+        Assert.assertTrue(last, last.contains("\"rows\":{\"count\":" + table3Rows + ","));
+        Assert.assertTrue(last, last.contains("\"tables.testMetricsJson.cql.bytes\":{\"count\":" + exportFile.length() + ","));
+        Assert.assertTrue(last, last.contains("\"in-flight\":0,"));
+        Assert.assertTrue(last, last.contains("\"failures\":0,"));
+    }
+
+    @Test
+    public void testLibraryJobs() throws Exception {
+        //Rows streamed out of one table by an ExportJob, and back into it by an ImportJob, all on the test's session
+        final List<List<ByteBuffer>> rows = new ArrayList<>();
+        final List<String> columns = new ArrayList<>();
+        final List<DataType> types = new ArrayList<>();
+        ExportJob export = ExportJob.builder(_session)
+                .keyspace("keyspace_2")
+                .workers(2)
+                .to(new RowSink() {
+                    @Override
+                    public void beginTable(String keyspace, String table, List<String> names, List<DataType> dataTypes) {
+                        columns.addAll(names);
+                        types.addAll(dataTypes);
+                    }
+
+                    @Override
+                    public void row(List<ByteBuffer> values) {
+                        rows.add(values);
+                    }
+                })
+                .build();
+        export.run();
+        long expected = _session.execute("SELECT count(*) FROM keyspace_2.table_3").one().getLong(0);
+        Assert.assertEquals(expected, rows.size());
+        Assert.assertEquals(expected, export.metrics().meter("rows").getCount());
+
+        _session.execute("TRUNCATE keyspace_2.table_3");
+        ImportJob.builder(_session)
+                .from(new RowSource() {
+                    @Override
+                    public void readInto(RowSink sink) throws IOException {
+                        sink.beginTable("keyspace_2", "table_3", columns, types);
+                        for(List<ByteBuffer> values : rows) {
+                            sink.row(values);
+                        }
+                    }
+                })
+                .build()
+                .run();
+        Assert.assertEquals(expected, _session.execute("SELECT count(*) FROM keyspace_2.table_3").one().getLong(0));
+        //The session is only borrowed
+        Assert.assertFalse(_session.isClosed());
+
+        try {
+            ExportJob.builder(_session).table("keyspace_2", "table_3").build();
+            Assert.fail("An export with nowhere to go was built");
+        } catch (IllegalStateException e) {
+            //Expected
+        }
+        //A statement that fails is in the job's exception, rather than printed
+        File failing = new File("target/testLibraryFailedImport.cql");
+        Files.write(failing.toPath(), "INSERT INTO keyspace_2.missing (id) VALUES (1);\n".getBytes(StandardCharsets.UTF_8));
+        try {
+            ImportJob.builder(_session).fromFile(failing).build().run();
+            Assert.fail("An import of a missing table succeeded");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains("INSERT INTO keyspace_2.missing"));
+            Assert.assertNotNull(e.getCause());
+        }
+        //stdout can't be a segmented export's directory
+        try {
+            ExportJob.builder(_session).keyspace("keyspace_2").segmented(true).toFile(new File("-")).build();
+            Assert.fail("A segmented export to stdout was built");
+        } catch (IllegalStateException e) {
+            //Expected
+        }
+        //stdin is a file to import like any other, as long as it isn't resumed
+        ImportJob.builder(_session).fromFile(new File("-")).build();
+        try {
+            ImportJob.builder(_session).fromFile(new File("-")).resume(true).build();
+            Assert.fail("A resumed import from stdin was built");
+        } catch (IllegalStateException e) {
+            //Expected
+        }
+    }
+
+    @Test
+    public void testBatchedImport() {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS batch_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS batch_keyspace.wide (pk int, ck int, val text, PRIMARY KEY (pk, ck))");
+        _session.execute("CREATE TABLE IF NOT EXISTS batch_keyspace.counts (pk int, ck int, n counter, PRIMARY KEY (pk, ck))");
+        try {
+            PreparedStatement insert = _session.prepare("INSERT INTO batch_keyspace.wide (pk, ck, val) VALUES (?, ?, ?)");
+            PreparedStatement increment = _session.prepare("UPDATE batch_keyspace.counts SET n = n + ? WHERE pk = ? AND ck = ?");
+            for(int i = 0; i < 500; i++) {
+                _session.execute(insert.bind(i % 5, i, "row" + i));
+                _session.execute(increment.bind((long) i, i % 5, i));
+            }
+            for(String format : new String[] {"cql", "binary"}) {
+                File exportFile = new File("target/testBatchedImportFile." + format);
+                if(exportFile.exists()) {
+                    exportFile.delete();
+                }
+                String[] args = {
+                        "--host", _cassandraAddress,
+                        "--port", "" + _cassandraPort,
+                        "--keyspace", "batch_keyspace",
+                        "--format", format,
+                        "--export-file", exportFile.getAbsolutePath()};
+                CassandraDumpJ.main(args);
+
+                //A byte limit small enough that it cuts batches before the row limit does
+                args = new String[] {
+                        "--host", _cassandraAddress,
+                        "--port", "" + _cassandraPort,
+                        "--batch-rows", "50",
+                        "--batch-bytes", "2000",
+                        "--import-file", exportFile.getAbsolutePath()};
+                _session.execute("DROP KEYSPACE batch_keyspace");
+                CassandraDumpJ.main(args);
+                Assert.assertEquals(500L, _session.execute("SELECT count(*) FROM batch_keyspace.wide").one().getLong(0));
+                Assert.assertEquals("row123", _session.execute("SELECT val FROM batch_keyspace.wide WHERE pk = 3 AND ck = 123").one().getString(0));
+                Assert.assertEquals(500L, _session.execute("SELECT count(*) FROM batch_keyspace.counts").one().getLong(0));
+                Assert.assertEquals(123L, _session.execute("SELECT n FROM batch_keyspace.counts WHERE pk = 3 AND ck = 123").one().getLong(0));
+            }
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS batch_keyspace");
+        }
+    }
+
+    @Test
+    public void testWriteTimes() throws IOException {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS writetime_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS writetime_keyspace.cells (pk int, ck int, a text, b text, tags set<text>, PRIMARY KEY (pk, ck))");
+        try {
+            //Cells of one row written at different times, one with a TTL, and rows with nothing but collections or a key
+            _session.execute("INSERT INTO writetime_keyspace.cells (pk, ck, a, b) VALUES (1, 1, 'a1', 'b1') USING TIMESTAMP 1000 AND TTL 100000");
+            _session.execute("UPDATE writetime_keyspace.cells USING TIMESTAMP 2000 SET b = 'b2' WHERE pk = 1 AND ck = 1");
+            _session.execute("INSERT INTO writetime_keyspace.cells (pk, ck, a, tags) VALUES (1, 2, 'a3', {'x'}) USING TIMESTAMP 3000");
+            _session.execute("INSERT INTO writetime_keyspace.cells (pk, ck, tags) VALUES (1, 3, {'y'}) USING TIMESTAMP 4000");
+            _session.execute("INSERT INTO writetime_keyspace.cells (pk, ck) VALUES (1, 4) USING TIMESTAMP 5000");
+
+            for(String prepared : new String[] {"--sync", "--prepared"}) {
+                File exportFile = new File("target/testWriteTimes.cql");
+                String[] args = {
+                        "--host", _cassandraAddress,
+                        "--port", "" + _cassandraPort,
+                        "--keyspace", "writetime_keyspace",
+                        "--export-workers", "2",
+                        "--write-times",
+                        "--export-file", exportFile.getAbsolutePath()};
+                CassandraDumpJ.main(args);
+                String exported = new String(Files.readAllBytes(exportFile.toPath()), StandardCharsets.UTF_8);
+                Assert.assertTrue(exported, exported.contains("(\"pk\", \"ck\", \"a\") VALUES (1, 1, 'a1') USING TIMESTAMP 1000 AND TTL "));
+                Assert.assertTrue(exported, exported.contains("(\"pk\", \"ck\", \"b\") VALUES (1, 1, 'b2') USING TIMESTAMP 2000;"));
+                Assert.assertTrue(exported, exported.contains("(\"pk\", \"ck\", \"a\", \"tags\") VALUES (1, 2, 'a3', {'x'}) USING TIMESTAMP 3000;"));
+                Assert.assertTrue(exported, exported.contains("(\"pk\", \"ck\", \"tags\") VALUES (1, 3, {'y'});"));
+
+                _session.execute("DROP KEYSPACE writetime_keyspace");
+                args = new String[] {
+                        "--host", _cassandraAddress,
+                        "--port", "" + _cassandraPort,
+                        prepared,
+                        "--import-file", exportFile.getAbsolutePath()};
+                CassandraDumpJ.main(args);
+                Row row = _session.execute("SELECT a, WRITETIME(a), TTL(a), b, WRITETIME(b), TTL(b) FROM writetime_keyspace.cells WHERE pk = 1 AND ck = 1").one();
+                Assert.assertEquals("a1", row.getString(0));
+                Assert.assertEquals(1000L, row.getLong(1));
+                Assert.assertTrue(row.getInt(2) > 90000);
+                Assert.assertEquals("b2", row.getString(3));
+                Assert.assertEquals(2000L, row.getLong(4));
+                Assert.assertTrue(row.isNull(5));
+                row = _session.execute("SELECT a, WRITETIME(a), tags FROM writetime_keyspace.cells WHERE pk = 1 AND ck = 2").one();
+                Assert.assertEquals(3000L, row.getLong(1));
+                Assert.assertEquals(Collections.singleton("x"), row.getSet(2, String.class));
+                Assert.assertEquals(4L, _session.execute("SELECT count(*) FROM writetime_keyspace.cells").one().getLong(0));
+            }
+
+            try {
+                ExportJob.builder(_session).keyspace("writetime_keyspace").writeTimes(true).binary(true).toFile(new File("target/testWriteTimes.bin")).build();
+                Assert.fail("A binary export with write times was built");
+            } catch (IllegalStateException e) {
+                //Expected
+            }
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS writetime_keyspace");
+        }
+    }
+
+    @Test
+    public void testIncrementalExport() throws Exception {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS incremental_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS incremental_keyspace.rows (pk int PRIMARY KEY, v text)");
+        _session.execute("CREATE TABLE IF NOT EXISTS incremental_keyspace.counts (pk int PRIMARY KEY, n counter)");
+        File manifest = new File("target/testIncrementalExport.manifest");
+        File base = new File("target/testIncrementalExport-base.cql");
+        File delta = new File("target/testIncrementalExport-delta.cql");
+        manifest.delete();
+        try {
+            for(int i = 1; i <= 3; i++) {
+                _session.execute("INSERT INTO incremental_keyspace.rows (pk, v) VALUES (" + i + ", 'v" + i + "') USING TIMESTAMP " + i * 1000);
+            }
+            _session.execute("UPDATE incremental_keyspace.counts SET n = n + 5 WHERE pk = 1");
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "incremental_keyspace",
+                    "--incremental", manifest.getAbsolutePath(),
+                    "--export-file", base.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            List<String> lines = Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+            Assert.assertEquals(Arrays.asList(IncrementalManifest.HEADER, "export " + base.getName(),
+                    "watermark 3000 incremental_keyspace.rows"), lines);
+
+            //Only the changed and new rows make it into the delta, which leaves the schema and counters to the base
+            _session.execute("UPDATE incremental_keyspace.rows USING TIMESTAMP 4000 SET v = 'changed' WHERE pk = 2");
+            _session.execute("INSERT INTO incremental_keyspace.rows (pk, v) VALUES (4, 'v4') USING TIMESTAMP 5000");
+            _session.execute("UPDATE incremental_keyspace.counts SET n = n + 1 WHERE pk = 1");
+            //A table that's new since the base has its schema in the delta
+            _session.execute("CREATE TABLE incremental_keyspace.later (pk int PRIMARY KEY, v text)");
+            _session.execute("INSERT INTO incremental_keyspace.later (pk, v) VALUES (10, 'new')");
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "incremental_keyspace",
+                    "--export-workers", "2",
+                    "--incremental", manifest.getAbsolutePath(),
+                    "--export-file", delta.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            String exported = new String(Files.readAllBytes(delta.toPath()), StandardCharsets.UTF_8);
+            Assert.assertTrue(exported, exported.contains("VALUES (2, 'changed');"));
+            Assert.assertTrue(exported, exported.contains("VALUES (4, 'v4');"));
+            Assert.assertFalse(exported, exported.contains("VALUES (1,"));
+            Assert.assertFalse(exported, exported.contains("DROP"));
+            Assert.assertFalse(exported, exported.contains("counts"));
+            Assert.assertTrue(exported, exported.contains("CREATE KEYSPACE IF NOT EXISTS incremental_keyspace"));
+            Assert.assertTrue(exported, exported.contains("CREATE TABLE IF NOT EXISTS incremental_keyspace.later"));
+            Assert.assertFalse(exported, exported.contains("CREATE TABLE IF NOT EXISTS incremental_keyspace.rows"));
+            lines = Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8);
+            Assert.assertEquals("watermark 5000 incremental_keyspace.rows", lines.get(lines.size() - 1));
+
+            //An export of the chain can't be overwritten by a later run
+            try {
+                ExportJob.builder(_session).keyspace("incremental_keyspace").incremental(manifest).toFile(base).build().run();
+                Assert.fail("An export already in the chain was overwritten");
+            } catch (IOException e) {
+                //Expected
+            }
+
+            //Nor can a run read only part of a table, since its watermark would have later deltas skip the rest
+            try {
+                ExportJob.builder(_session).table("incremental_keyspace", "rows").limit(1).incremental(manifest).toFile(delta).build();
+                Assert.fail("An incremental run with a limit was allowed");
+            } catch (IllegalStateException e) {
+                //Expected
+            }
+
+            //The manifest replays the base and then the delta
+            _session.execute("DROP KEYSPACE incremental_keyspace");
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--import-file", manifest.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            Assert.assertEquals(4L, _session.execute("SELECT count(*) FROM incremental_keyspace.rows").one().getLong(0));
+            Assert.assertEquals("changed", _session.execute("SELECT v FROM incremental_keyspace.rows WHERE pk = 2").one().getString(0));
+            Assert.assertEquals(5L, _session.execute("SELECT n FROM incremental_keyspace.counts WHERE pk = 1").one().getLong(0));
+            Assert.assertEquals("new", _session.execute("SELECT v FROM incremental_keyspace.later WHERE pk = 10").one().getString(0));
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS incremental_keyspace");
+        }
+    }
+
+    @Test
+    public void testBulkConnection() {
+        //Two contact points (one of them not a node at all), the local datacenter by name, and everything --bulk tunes
+        File exportFile = new File("target/testBulkConnection.cql");
+        String[] args = {
+                "--host", "127.0.0.2, " + _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--local-dc", "datacenter1",
+                "--bulk",
+                "--io-threads", "2",
+                "--read-timeout", "30",
+                "--keyspace", "keyspace_2",
+                "--export-file", exportFile.getAbsolutePath()};
+        CassandraDumpJ.main(args);
+        long rows = _session.execute("SELECT count(*) FROM keyspace_2.table_3").one().getLong(0);
+
+        args = new String[] {
+                "--host", _cassandraAddress,
+                "--port", "" + _cassandraPort,
+                "--bulk",
+                "--max-requests-per-connection", "4096",
+                "--import-file", exportFile.getAbsolutePath()};
+        _session.execute("DROP KEYSPACE keyspace_2");
+        CassandraDumpJ.main(args);
+        Assert.assertEquals(rows, _session.execute("SELECT count(*) FROM keyspace_2.table_3").one().getLong(0));
+    }
+
+    @Test
+    public void testSampleAndTokenRange() {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS sample_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS sample_keyspace.rows (id int PRIMARY KEY, val text)");
+        try {
+            PreparedStatement insert = _session.prepare("INSERT INTO sample_keyspace.rows (id, val) VALUES (?, ?)");
+            for(int i = 0; i < 1000; i++) {
+                _session.execute(insert.bind(i, "row" + i));
+            }
+
+            //A fifth of the ring should hold about a fifth of the rows, and the same fifth every time
+            File sampleFile = new File("target/testSample.cql");
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "sample_keyspace",
+                    "--no-create",
+                    "--sample", "0.2",
+                    "--export-file", sampleFile.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            int sampled = countLinesStartingWith(sampleFile, "INSERT INTO");
+            Assert.assertTrue("sampled " + sampled + " rows", sampled > 100 && sampled < 300);
+            CassandraDumpJ.main(args);
+            Assert.assertEquals(sampled, countLinesStartingWith(sampleFile, "INSERT INTO"));
+
+            File sliceFile = new File("target/testTokenRange.cql");
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "sample_keyspace",
+                    "--no-create",
+                    "--token-range", "-9223372036854775808:0",
+                    "--export-file", sliceFile.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            long inSlice = _session.execute("SELECT count(*) FROM sample_keyspace.rows WHERE token(id) > -9223372036854775808 AND token(id) <= 0").one().getLong(0);
+            Assert.assertEquals(inSlice, countLinesStartingWith(sliceFile, "INSERT INTO"));
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS sample_keyspace");
+        }
+    }
+
+    @Test
+    public void testColumnsAndTransformers() throws IOException {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS staging_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS staging_keyspace.people (id int PRIMARY KEY, email text, bio text, photo blob, rating int)");
+        try {
+            PreparedStatement insert = _session.prepare("INSERT INTO staging_keyspace.people (id, email, bio, photo, rating) VALUES (?, ?, ?, ?, ?)");
+            for(int i = 0; i < 50; i++) {
+                _session.execute(insert.bind(i, "person" + i + "@example.com", "A rather long biography of person " + i,
+                        ByteBuffer.wrap(new byte[] {(byte) i, 1, 2, 3}), i));
+            }
+
+            File exportFile = new File("target/testColumnsAndTransformers.cql");
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "staging_keyspace",
+                    "--exclude-columns", "staging_keyspace.people:photo",
+                    "--mask", "staging_keyspace.people.email",
+                    "--truncate", "staging_keyspace.people.bio:8",
+                    "--transformer", ZeroRatings.class.getName(),
+                    "--export-file", exportFile.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            String export = new String(Files.readAllBytes(exportFile.toPath()), StandardCharsets.UTF_8);
+            Assert.assertFalse(export.contains("\"photo\") VALUES"));
+            Assert.assertFalse(export.contains("@example.com"));
+
+            _session.execute("DROP KEYSPACE staging_keyspace");
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--import-file", exportFile.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            Row row = _session.execute("SELECT * FROM staging_keyspace.people WHERE id = 7").one();
+            Assert.assertEquals(Hashing.sha256().hashString("person7@example.com", StandardCharsets.UTF_8).toString(), row.getString("email"));
+            Assert.assertEquals("A rather", row.getString("bio"));
+            Assert.assertTrue(row.isNull("photo"));
+            Assert.assertEquals(0, row.getInt("rating"));
+            Assert.assertEquals(50, _session.execute("SELECT count(*) FROM staging_keyspace.people").one().getLong(0));
+
+            //The primary key can't be left out
+            try {
+                ExportJob.builder(_session)
+                        .table("staging_keyspace", "people")
+                        .columns("staging_keyspace", "people", "email")
+                        .excludeColumns("staging_keyspace", "people", "id")
+                        .to(new RowSink() {
+                            @Override
+                            public void beginTable(String keyspace, String table, List<String> columns, List<DataType> types) {
+                            }
+
+                            @Override
+                            public void row(List<ByteBuffer> values) {
+                            }
+                        })
+                        .build()
+                        .run();
+                Assert.fail("Excluded the primary key");
+            } catch (IllegalArgumentException e) {
+                //Expected
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS staging_keyspace");
+        }
+    }
+
+    //A --transformer: every rating becomes 0
+    public static class ZeroRatings implements RowTransformer {
+        @Override
+        public Table forTable(String keyspace, String table, List<String> columns, List<DataType> types) {
+            final int rating = columns.indexOf("rating");
+            if(rating < 0) {
+                return null;
+            }
+            return values -> values.set(rating, TypeCodec.cint().serialize(0, ProtocolVersion.NEWEST_SUPPORTED));
+        }
+    }
+
+    @Test
+    public void testPipesAndCopy() throws IOException, InterruptedException {
+        File pipe = new File("target/testPipes.pipe");
+        pipe.delete();
+        Assume.assumeTrue("mkfifo is needed for a named pipe", new ProcessBuilder("mkfifo", pipe.getAbsolutePath()).start().waitFor() == 0);
+        try {
+            long rows = _session.execute("SELECT count(*) FROM keyspace_2.table_3").one().getLong(0);
+
+            //Export into the pipe, with something at the other end to read it
+            final ByteArrayOutputStream exported = new ByteArrayOutputStream();
+            Thread reader = new Thread(() -> {
+                try {
+                    Files.copy(pipe.toPath(), exported);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            reader.start();
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "keyspace_2",
+                    "--export-file", pipe.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            reader.join();
+            Assert.assertTrue(exported.size() > 0);
+
+            //And import from it, with something at the other end to write it
+            _session.execute("DROP KEYSPACE keyspace_2");
+            Thread writer = new Thread(() -> {
+                try (OutputStream out = new FileOutputStream(pipe)) {
+                    exported.writeTo(out);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writer.start();
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--import-file", pipe.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            writer.join();
+            Assert.assertEquals(rows, _session.execute("SELECT count(*) FROM keyspace_2.table_3").one().getLong(0));
+        } finally {
+            pipe.delete();
+        }
+
+        //There's only the one cluster to copy to, so the copy goes back into the same table - with every rating zeroed
+        //on the way, which only the target side could have written
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS copy_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS copy_keyspace.ratings (id int PRIMARY KEY, rating int)");
+        try {
+            File copyDeadLetters = new File("target/testCopyDeadLetters.cql");
+            PreparedStatement insert = _session.prepare("INSERT INTO copy_keyspace.ratings (id, rating) VALUES (?, ?)");
+            for(int i = 0; i < 2000; i++) {
+                _session.execute(insert.bind(i, i + 1));
+            }
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "copy_keyspace",
+                    "--no-create",
+                    "--transformer", ZeroRatings.class.getName(),
+                    "--copy-to", _cassandraAddress,
+                    "--copy-queue-rows", "100",
+                    "--concurrency", "16",
+                    "--dead-letter-file", copyDeadLetters.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            Assert.assertEquals(2000, _session.execute("SELECT count(*) FROM copy_keyspace.ratings").one().getLong(0));
+            Assert.assertEquals(0, countLinesStartingWith(copyDeadLetters, "-- Failed"));
+            for(Row row : _session.execute("SELECT rating FROM copy_keyspace.ratings")) {
+                Assert.assertEquals(0, row.getInt("rating"));
+            }
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS copy_keyspace");
+        }
+    }
+
+    @Test
+    public void testRoutedImport() {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS routed_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS routed_keyspace.composite (a int, b text, c int, val text, PRIMARY KEY ((a, b), c))");
+        try {
+            PreparedStatement insert = _session.prepare("INSERT INTO routed_keyspace.composite (a, b, c, val) VALUES (?, ?, ?, ?)");
+            for(int i = 0; i < 300; i++) {
+                _session.execute(insert.bind(i % 7, "b" + (i % 3), i, "row" + i));
+            }
+
+            //A plain CQL write should end up with the same routing key the driver works out for a bound one
+            ProtocolVersion protocolVersion = _cluster.getConfiguration().getProtocolOptions().getProtocolVersion();
+            CodecRegistry codecRegistry = _cluster.getConfiguration().getCodecRegistry();
+            WriteRouter router = new WriteRouter(_cluster.getMetadata(), protocolVersion, codecRegistry);
+            SimpleStatement plain = new SimpleStatement("INSERT INTO routed_keyspace.\"composite\" (\"a\", \"b\", \"c\", \"val\") VALUES (4, 'b1', 7, 'x');");
+            Assert.assertNotNull(router.route(plain));
+            Assert.assertEquals("routed_keyspace", plain.getKeyspace());
+            Assert.assertEquals(insert.bind(4, "b1", 7, "x").getRoutingKey(protocolVersion, codecRegistry),
+                    plain.getRoutingKey(protocolVersion, codecRegistry));
+            Assert.assertNull(router.route(new SimpleStatement("INSERT INTO nowhere.nothing (a) VALUES (1);")));
+
+            File exportFile = new File("target/testRoutedImportFile.cql");
+            if(exportFile.exists()) {
+                exportFile.delete();
+            }
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "routed_keyspace",
+                    "--export-file", exportFile.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--concurrency", "8",
+                    "--replica-concurrency", "1",
+                    "--import-file", exportFile.getAbsolutePath()};
+            _session.execute("DROP KEYSPACE routed_keyspace");
+            CassandraDumpJ.main(args);
+            Assert.assertEquals(300L, _session.execute("SELECT count(*) FROM routed_keyspace.composite").one().getLong(0));
+            Assert.assertEquals("row123", _session.execute("SELECT val FROM routed_keyspace.composite WHERE a = 4 AND b = 'b0' AND c = 123").one().getString(0));
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS routed_keyspace");
+        }
+    }
+
+    @Test
+    public void testThrottledAdaptiveExportAndImport() {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS throttled_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS throttled_keyspace.t (pk int PRIMARY KEY, val text)");
+        try {
+            PreparedStatement insert = _session.prepare("INSERT INTO throttled_keyspace.t (pk, val) VALUES (?, ?)");
+            for(int i = 0; i < 200; i++) {
+                _session.execute(insert.bind(i, "row" + i));
+            }
+            File exportFile = new File("target/testThrottledFile.cql");
+            if(exportFile.exists()) {
+                exportFile.delete();
+            }
+            //200 rows at 400/s should take about half a second - allow some slack for the first permits, which go through at once
+            long start = System.nanoTime();
+            String[] args = {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--keyspace", "throttled_keyspace",
+                    "--export-workers", "2",
+                    "--max-rows-per-sec", "400",
+                    "--adaptive",
+                    "--export-file", exportFile.getAbsolutePath()};
+            CassandraDumpJ.main(args);
+            Assert.assertTrue(System.nanoTime() - start >= 400 * 1000000L);
+            Assert.assertEquals(200, countLinesStartingWith(exportFile, "INSERT INTO \"throttled_keyspace\""));
+
+            start = System.nanoTime();
+            args = new String[] {
+                    "--host", _cassandraAddress,
+                    "--port", "" + _cassandraPort,
+                    "--max-rows-per-sec", "400",
+                    "--max-mb-per-sec", "0.5",
+                    "--adaptive",
+                    "--import-file", exportFile.getAbsolutePath()};
+            _session.execute("DROP KEYSPACE throttled_keyspace");
+            CassandraDumpJ.main(args);
+            Assert.assertTrue(System.nanoTime() - start >= 400 * 1000000L);
+            Assert.assertEquals(200L, _session.execute("SELECT count(*) FROM throttled_keyspace.t").one().getLong(0));
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS throttled_keyspace");
+        }
+    }
+
+    @Test
+    public void testResumedSegmentedExport() throws IOException {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS resume_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS resume_keyspace.t (pk int PRIMARY KEY, val text)");
+        try {
+            PreparedStatement insert = _session.prepare("INSERT INTO resume_keyspace.t (pk, val) VALUES (?, ?)");
+            for(int i = 0; i < 3000; i++) {
+                _session.execute(insert.bind(i, "row" + i));
+            }
+            //The single query path uncompressed, and the token range path compressed
+            for(String[] options : new String[][] {{"1", "none"}, {"2", "gzip"}}) {
+                File exportDir = new File("target/testResumedExport-" + options[1]);
+                deleteRecursively(exportDir);
+                String[] args = {
+                        "--host", _cassandraAddress,
+                        "--port", "" + _cassandraPort,
+                        "--keyspace", "resume_keyspace",
+                        "--segmented",
+                        "--fetch-size", "100",
+                        "--export-workers", options[0],
+                        "--compress", options[1],
+                        "--export-file", exportDir.getAbsolutePath()};
+                CassandraDumpJ.main(args);
+                File manifest = new File(exportDir, SegmentManifest.FILE_NAME);
+                File journal = new File(exportDir, ExportJournal.FILE_NAME);
+                Assert.assertTrue(manifest.isFile());
+                String segment = "0001-resume_keyspace.t.cql" + (options[1].equals("none") ? "" : ".gz");
+                File segmentFile = new File(exportDir, segment);
+
+                //Make it look like the export died partway through the table: no manifest, the segment cut short,
+                //and the journal with half its checkpoints (some of them past the end of what's left of the segment)
+                List<String> lines = Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8);
+                List<String> kept = new ArrayList<>();
+                long cutAt = -1;
+                int checkpoints = 0;
+                for(String line : lines) {
+                    if(line.startsWith("page " + segment) || line.startsWith("range " + segment)) {
+                        checkpoints++;
+                    }
+                }
+                int seen = 0;
+                for(String line : lines) {
+                    if(line.startsWith("done " + segment)) {
+                        continue;
+                    }
+                    if(line.startsWith("page " + segment) || line.startsWith("range " + segment)) {
+                        seen++;
+                        if(seen > checkpoints / 2 + 3) {
+                            continue;
+                        }
+                        if(seen == checkpoints / 2) {
+                            cutAt = Long.parseLong(line.split(" ")[2]);
+                        }
+                    }
+                    kept.add(line);
+                }
+                Assert.assertTrue(cutAt > 0);
+                Files.write(journal.toPath(), (String.join("\n", kept) + "\npage " + segment + " 12").getBytes(StandardCharsets.UTF_8));
+                manifest.delete();
+                try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+                    //Uncompressed, a few bytes past a checkpoint; compressed, wherever half the file ends
+                    file.setLength(options[1].equals("none") ? cutAt + 10 : file.length() / 2);
+                }
+
+                args = Arrays.copyOf(args, args.length + 1);
+                args[args.length - 1] = "--resume";
+                CassandraDumpJ.main(args);
+                Assert.assertTrue(manifest.isFile());
+
+                //Every row exactly once
+                Set<String> inserts = new HashSet<>();
+                int count = 0;
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        Compression.decompressing(new FileInputStream(segmentFile)), StandardCharsets.UTF_8))) {
+                    String line = reader.readLine();
+                    while(line != null) {
+                        if(line.startsWith("INSERT INTO")) {
+                            inserts.add(line);
+                            count++;
+                        }
+                        line = reader.readLine();
+                    }
+                }
+                Assert.assertEquals(3000, count);
+                Assert.assertEquals(3000, inserts.size());
+            }
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS resume_keyspace");
+        }
+    }
+
+    @Test
+    public void testResumedImportWithDeadLetters() throws IOException {
+        _session.execute("CREATE KEYSPACE IF NOT EXISTS resume_import_keyspace WITH REPLICATION={'class':'SimpleStrategy', 'replication_factor':1}");
+        _session.execute("CREATE TABLE IF NOT EXISTS resume_import_keyspace.t (pk int PRIMARY KEY, val text)");
+        try {
+            //Half the rows are in before the checkpoint, and one of those after it writes to a table that isn't there
+            StringBuilder cql = new StringBuilder();
+            int checkpoint = 0;
+            for(int i = 0; i < 1000; i++) {
+                if(i == 500) {
+                    checkpoint = cql.toString().getBytes(StandardCharsets.UTF_8).length;
+                }
+                if(i == 700) {
+                    cql.append("INSERT INTO resume_import_keyspace.missing (pk, val) VALUES (700, 'caf\u00e9');\n");
+                }
+                cql.append("INSERT INTO resume_import_keyspace.t (pk, val) VALUES (").append(i).append(", 'caf\u00e9 ").append(i).append("');\n");
+            }
+            for(boolean compressed : new boolean[] {false, true}) {
+                File importFile = new File("target/testResumedImport" + (compressed ? ".cql.gz" : ".cql"));
+                try (OutputStream out = compressed ? new GZIPOutputStream(new FileOutputStream(importFile)) : new FileOutputStream(importFile)) {
+                    out.write(cql.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                //As if the first import had got halfway, and died writing its next checkpoint
+                File journal = new File(importFile.getPath() + ".import.journal");
+                Files.write(journal.toPath(), (ImportJournal.HEADER + "\nat " + checkpoint + " QUORUM " + importFile.getName() + "\nat 12")
+                        .getBytes(StandardCharsets.UTF_8));
+                File deadLetters = new File("target/testResumedImport-dead.cql");
+                deadLetters.delete();
+                //Nor one left behind by an earlier run, which would pass for one this import kept
+                ImportJournal.journalFile(deadLetters).delete();
+                _session.execute("TRUNCATE resume_import_keyspace.t");
+                String[] args = {
+                        "--host", _cassandraAddress,
+                        "--port", "" + _cassandraPort,
+                        "--resume",
+                        "--dead-letter-file", deadLetters.getAbsolutePath(),
+                        "--import-file", importFile.getAbsolutePath()};
+                CassandraDumpJ.main(args);
+                //Only what was after the checkpoint, and the bad write didn't stop the rest
+                Assert.assertEquals(500L, _session.execute("SELECT count(*) FROM resume_import_keyspace.t").one().getLong(0));
+                Assert.assertEquals(0L, _session.execute("SELECT count(*) FROM resume_import_keyspace.t WHERE pk = 499").one().getLong(0));
+                Assert.assertEquals(1, countLinesStartingWith(deadLetters, "-- Failed"));
+                Assert.assertEquals(1, countLinesStartingWith(deadLetters, "INSERT INTO resume_import_keyspace.missing"));
+                //It's all done now, so the journal's gone, and importing again starts from the beginning
+                Assert.assertFalse(journal.exists());
+                _session.execute("TRUNCATE resume_import_keyspace.t");
+                CassandraDumpJ.main(args);
+                Assert.assertEquals(1000L, _session.execute("SELECT count(*) FROM resume_import_keyspace.t").one().getLong(0));
+                Assert.assertFalse(journal.exists());
+
+                //And once the table is there, the dead letters import like any other dump
+                _session.execute("CREATE TABLE IF NOT EXISTS resume_import_keyspace.missing (pk int PRIMARY KEY, val text)");
+                CassandraDumpJ.main(new String[] {
+                        "--host", _cassandraAddress,
+                        "--port", "" + _cassandraPort,
+                        "--import-file", deadLetters.getAbsolutePath()});
+                Assert.assertEquals("caf\u00e9", _session.execute("SELECT val FROM resume_import_keyspace.missing WHERE pk = 700").one().getString(0));
+                //Without --resume, no journal is kept at all
+                Assert.assertFalse(ImportJournal.journalFile(deadLetters).exists());
+                _session.execute("DROP TABLE resume_import_keyspace.missing");
+            }
+
+            //Prepared writes are turned back into CQL
+            File deadLetters = new File("target/testResumedImport-prepared.cql");
+            ProtocolVersion protocolVersion = _cluster.getConfiguration().getProtocolOptions().getProtocolVersion();
+            try (DeadLetterFile file = new DeadLetterFile(deadLetters, false, protocolVersion, CodecRegistry.DEFAULT_INSTANCE)) {
+                file.add(_session.prepare("INSERT INTO resume_import_keyspace.t (pk, val) VALUES (?, ?)").bind(1, "it's"),
+                        new RuntimeException("no\nway"));
+            }
+            Assert.assertEquals(Arrays.asList("-- Failed: java.lang.RuntimeException: no way",
+                    "INSERT INTO resume_import_keyspace.t (pk, val) VALUES (1, 'it''s');"),
+                    Files.readAllLines(deadLetters.toPath(), StandardCharsets.UTF_8));
+        } finally {
+            _session.execute("DROP KEYSPACE IF EXISTS resume_import_keyspace");
+        }
+    }
+
+    private void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if(children != null) {
+            for(File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private int countLinesStartingWith(File file, String prefix) {
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            while(line != null) {
+                if(line.startsWith(prefix)) {
+                    count++;
+                }
+                line = reader.readLine();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return count;
+    }
+
     @Test
     public void testIsCodecRegAddingExtraQuotes() {
         CodecRegistry codecRegistry = _cluster.getConfiguration().getCodecRegistry();
@@ -0,0 +1,40 @@
+package com.topiatechnology.cassandradumpJ;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+public class ChannelExportSinkTest {
+
+    @Test
+    public void testWritesUtf8AcrossBufferBoundaries() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        //A buffer this small means plenty of multi-byte characters land right on a boundary
+        ChannelExportSink sink = new ChannelExportSink(Channels.newChannel(out), 16);
+        StringBuilder expected = new StringBuilder();
+        StringBuilder line = new StringBuilder();
+        for(int i = 0; i < 200; i++) {
+            line.setLength(0);
+            line.append("INSERT INTO \"ks\".\"t\" (\"a\") VALUES ('caf\u00e9 \u6f22\u5b57 \ud83d\ude00 ").append(i).append("');\n");
+            expected.append(line);
+            sink.write(line);
+        }
+        sink.close();
+        Assert.assertEquals(expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testNothingReachesTheChannelUntilTheBufferFills() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChannelExportSink sink = new ChannelExportSink(Channels.newChannel(out), 1024);
+        sink.write("CONSISTENCY ONE;\n");
+        Assert.assertEquals(0, out.size());
+        sink.flush();
+        Assert.assertEquals("CONSISTENCY ONE;\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        sink.close();
+    }
+}
@@ -0,0 +1,61 @@
+package com.topiatechnology.cassandradumpJ;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+public class CompressionTest {
+
+    private static String sampleDump() {
+        StringBuilder dump = new StringBuilder("CONSISTENCY ONE;\n");
+        for(int i = 0; i < 5000; i++) {
+            dump.append("INSERT INTO \"ks\".\"t\" (\"id\", \"val\") VALUES (").append(i).append(", 'value ").append(i).append("');\n");
+        }
+        return dump.toString();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n = in.read(buffer);
+        while(n >= 0) {
+            out.write(buffer, 0, n);
+            n = in.read(buffer);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTripThroughCompressingChannel() throws IOException {
+        String dump = sampleDump();
+        for(Compression compression : Compression.values()) {
+            ByteArrayOutputStream file = new ByteArrayOutputStream();
+            ChannelExportSink sink = new ChannelExportSink(new CompressingChannel(compression.compress(file), 4096), 4096);
+            sink.write(dump);
+            sink.close();
+            if(compression != Compression.NONE) {
+                Assert.assertTrue(compression + " should shrink a repetitive dump", file.size() < dump.length() / 4);
+            }
+
+            InputStream in = new ByteArrayInputStream(file.toByteArray());
+            Assert.assertEquals(compression + " should be detected", dump, new String(readAll(Compression.decompressing(in)), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testPlainTextIsNotMistakenForCompressed() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        ChannelExportSink sink = new ChannelExportSink(Channels.newChannel(file), 1024);
+        sink.write("DROP KEYSPACE IF EXISTS \"ks\";\n");
+        sink.close();
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(file.toByteArray()));
+        Assert.assertEquals(Compression.NONE, Compression.detect(in));
+    }
+}
@@ -0,0 +1,83 @@
+package com.topiatechnology.cassandradumpJ;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CqlStatementSplitterTest {
+
+    private static List<String> split(String cql, int bufferChars, List<CqlStatementSplitter.Kind> kinds) throws IOException {
+        CqlStatementSplitter splitter = new CqlStatementSplitter(new StringReader(cql), bufferChars);
+        List<String> statements = new ArrayList<>();
+        while(splitter.next()) {
+            statements.add(splitter.statement().toString());
+            if(kinds != null) {
+                kinds.add(splitter.kind());
+            }
+        }
+        return statements;
+    }
+
+    @Test
+    public void testSplitsAndClassifies() throws IOException {
+        List<CqlStatementSplitter.Kind> kinds = new ArrayList<>();
+        List<String> statements = split("CONSISTENCY ALL;\n" +
+                "CREATE TABLE \"ks\".\"t\" (\n    id int PRIMARY KEY,\n    val text\n);\n" +
+                "insert into \"ks\".\"t\" (id) VALUES (1);\n" +
+                "UPDATE \"ks\".\"c\" SET n = n + 1 WHERE id = 1;\n" +
+                "INSERTED_NOTHING;\n", 16, kinds);
+        Assert.assertEquals(Arrays.asList(
+                "CONSISTENCY ALL;",
+                "CREATE TABLE \"ks\".\"t\" (\n    id int PRIMARY KEY,\n    val text\n);",
+                "insert into \"ks\".\"t\" (id) VALUES (1);",
+                "UPDATE \"ks\".\"c\" SET n = n + 1 WHERE id = 1;",
+                "INSERTED_NOTHING;"), statements);
+        Assert.assertEquals(Arrays.asList(
+                CqlStatementSplitter.Kind.CONSISTENCY,
+                CqlStatementSplitter.Kind.OTHER,
+                CqlStatementSplitter.Kind.INSERT,
+                CqlStatementSplitter.Kind.UPDATE,
+                CqlStatementSplitter.Kind.OTHER), kinds);
+    }
+
+    @Test
+    public void testOffsetsAreUtf8Bytes() throws IOException {
+        String first = "INSERT INTO t (a) VALUES ('h\u00e9llo \u20ac \ud83d\ude00');";
+        String second = "\n-- \u00fc\nINSERT INTO t (a) VALUES ('x');";
+        String cql = first + second + "\n";
+        CqlStatementSplitter splitter = new CqlStatementSplitter(new StringReader(cql), 16);
+        Assert.assertTrue(splitter.next());
+        Assert.assertEquals(first.getBytes(StandardCharsets.UTF_8).length, splitter.offset());
+        Assert.assertTrue(splitter.next());
+        Assert.assertEquals((first + second).getBytes(StandardCharsets.UTF_8).length, splitter.offset());
+        Assert.assertFalse(splitter.next());
+    }
+
+    @Test
+    public void testSemicolonsInsideQuotesAndComments() throws IOException {
+        String cql = "INSERT INTO t (a, \"b;\") VALUES ('ends with;\n', 'it''s; fine');\n" +
+                "-- a comment; with a semicolon\n" +
+                "// another;\n" +
+                "/* and a block;\n comment */ CREATE FUNCTION f() RETURNS NULL ON NULL INPUT RETURNS int LANGUAGE java AS $$ return 1; $$;\n";
+        //A tiny buffer, so statements keep running off the end of it
+        for(int bufferChars : new int[] {16, 1024}) {
+            Assert.assertEquals(Arrays.asList(
+                    "INSERT INTO t (a, \"b;\") VALUES ('ends with;\n', 'it''s; fine');",
+                    "CREATE FUNCTION f() RETURNS NULL ON NULL INPUT RETURNS int LANGUAGE java AS $$ return 1; $$;"),
+                    split(cql, bufferChars, null));
+        }
+    }
+
+    @Test
+    public void testLeftoverWithoutSemicolon() throws IOException {
+        Assert.assertEquals(Arrays.asList("DROP TABLE t;", "DROP TABLE u"), split("DROP TABLE t;\nDROP TABLE u  \n", 16, null));
+        Assert.assertEquals(Arrays.asList("DROP TABLE t;"), split("DROP TABLE t;\n;\n-- trailing comment\n", 16, null));
+        Assert.assertEquals(new ArrayList<String>(), split("", 16, null));
+    }
+}
@@ -0,0 +1,66 @@
+package com.topiatechnology.cassandradumpJ;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class WriteStatementParserTest {
+
+    @Test
+    public void testParseInsert() {
+        WriteStatementParser.ParsedWrite parsed = WriteStatementParser.parse(
+                "INSERT INTO \"ks\".\"t\" (\"id\", \"string\", \"tags\") VALUES (7, 'it''s, (not) a problem', ['a', 'b']);");
+        Assert.assertNotNull(parsed);
+        Assert.assertFalse(parsed.counterUpdate);
+        Assert.assertEquals("\"ks\"", parsed.keyspace);
+        Assert.assertEquals("\"t\"", parsed.table);
+        Assert.assertEquals(Arrays.asList("\"id\"", "\"string\"", "\"tags\""), parsed.columns);
+        Assert.assertEquals(Arrays.asList("7", "'it''s, (not) a problem'", "['a', 'b']"), parsed.literals);
+        Assert.assertEquals("INSERT INTO \"ks\".\"t\" (\"id\", \"string\", \"tags\") VALUES (?, ?, ?)", parsed.toPreparableCQL());
+    }
+
+    @Test
+    public void testParseCounterUpdate() {
+        WriteStatementParser.ParsedWrite parsed = WriteStatementParser.parse(
+                "UPDATE \"ks\".\"t\" SET count = count + -2, other = other + 5 WHERE id = 3d2c2b3e-5f1c-4c3a-9a43-5a3b5f7f3e11 AND name = 'a AND b';");
+        Assert.assertNotNull(parsed);
+        Assert.assertTrue(parsed.counterUpdate);
+        Assert.assertEquals(2, parsed.setColumnCount);
+        Assert.assertEquals(Arrays.asList("count", "other", "id", "name"), parsed.columns);
+        Assert.assertEquals(Arrays.asList("-2", "5", "3d2c2b3e-5f1c-4c3a-9a43-5a3b5f7f3e11", "'a AND b'"), parsed.literals);
+        Assert.assertEquals("UPDATE \"ks\".\"t\" SET count = count + ?, other = other + ? WHERE id = ? AND name = ?", parsed.toPreparableCQL());
+    }
+
+    @Test
+    public void testParseInsertUsing() {
+        WriteStatementParser.ParsedWrite parsed = WriteStatementParser.parse(
+                "INSERT INTO \"ks\".\"t\" (\"id\", \"v\") VALUES (7, 'x') USING TIMESTAMP 1500000000000000 AND TTL 3600;");
+        Assert.assertNotNull(parsed);
+        Assert.assertEquals(Arrays.asList("7", "'x'"), parsed.literals);
+        Assert.assertEquals("1500000000000000", parsed.timestamp);
+        Assert.assertEquals("3600", parsed.ttl);
+        Assert.assertEquals("INSERT INTO \"ks\".\"t\" (\"id\", \"v\") VALUES (?, ?) USING TIMESTAMP ? AND TTL ?", parsed.toPreparableCQL());
+
+        //Rows written at different times still share a statement
+        WriteStatementParser.ParsedWrite other = WriteStatementParser.parse(
+                "INSERT INTO \"ks\".\"t\" (\"id\", \"v\") VALUES (8, 'y') USING TIMESTAMP 1600000000000000 AND TTL 60;");
+        Assert.assertEquals(parsed.toPreparableCQL(), other.toPreparableCQL());
+        Assert.assertNull(WriteStatementParser.parse("INSERT INTO \"ks\".\"t\" (\"id\") VALUES (7) USING CONSISTENCY ONE;"));
+    }
+
+    @Test
+    public void testSameShapeSharesPreparableCQL() {
+        WriteStatementParser.ParsedWrite first = WriteStatementParser.parse("INSERT INTO \"ks\".\"t\" (\"a\", \"b\") VALUES (1, {'k': (1, 'x')});");
+        WriteStatementParser.ParsedWrite second = WriteStatementParser.parse("INSERT INTO \"ks\".\"t\" (\"a\", \"b\") VALUES (2, NULL);");
+        Assert.assertEquals(first.toPreparableCQL(), second.toPreparableCQL());
+    }
+
+    @Test
+    public void testRejectsOtherStatements() {
+        Assert.assertNull(WriteStatementParser.parse("CREATE TABLE \"ks\".\"t\" (a int PRIMARY KEY);"));
+        Assert.assertNull(WriteStatementParser.parse("UPDATE \"ks\".\"t\" SET a = 5 WHERE id = 1;"));
+        Assert.assertNull(WriteStatementParser.parse("INSERT INTO \"ks\".\"t\" (\"a\", \"b\") VALUES (1);"));
+        Assert.assertNull(WriteStatementParser.parse("INSERT INTO \"ks\".\"t\" (\"a\") VALUES ('unterminated);"));
+    }
+}